@@ -0,0 +1,45 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+/**
+ * Generates deterministic, valid identifiers for benchmarks.
+ */
+public final class BenchmarkData {
+
+    // Every generated ISBN starts with this 978 prefix.
+    private static final long ISBN_BASE = 978_000_000_000L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Builds the n-th valid ISBN-13, without hyphens.
+     *
+     * @param n A number below 10^9.
+     * @return A valid ISBN-13.
+     */
+    public static String isbn(long n) {
+        long prefix = ISBN_BASE + n;
+        int sum = 0;
+        long rest = prefix;
+        // The 12th digit (rightmost of the prefix) has weight 3, alternating leftwards.
+        for (int i = 0; i < 12; i++) {
+            int digit = (int) (rest % 10);
+            sum += (i & 1) == 0 ? digit * 3 : digit;
+            rest /= 10;
+        }
+        int check = (10 - sum % 10) % 10;
+        return Long.toString(prefix * 10 + check);
+    }
+
+    /**
+     * Builds the n-th valid user Id.
+     *
+     * @param n A number below 10^12.
+     * @return A 12-digit user Id.
+     */
+    public static String userId(long n) {
+        return UserIdValidator.unpack(n);
+    }
+}
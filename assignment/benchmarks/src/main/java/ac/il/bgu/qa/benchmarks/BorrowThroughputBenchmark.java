@@ -0,0 +1,106 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures borrow + return throughput when every thread works on its own ISBN.
+ * <p>
+ * {@code globalLock} serializes the whole library behind one monitor, as callers had to before;
+ * {@code lockFree} relies on {@link LockFreeBorrowStrategy}. Run with {@code -t 1,2,4,...}
+ * to see how each scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BorrowThroughputBenchmark {
+
+    // Upper bound on the number of benchmark threads.
+    static final int MAX_THREADS = 256;
+
+    Library sequentialLibrary;
+    Library lockFreeLibrary;
+    final Object globalLock = new Object();
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sequentialLibrary = newLibrary(null);
+        lockFreeLibrary = newLibrary(new LockFreeBorrowStrategy());
+    }
+
+    private static Library newLibrary(LockFreeBorrowStrategy strategy) {
+        InMemoryDatabaseService databaseService = new InMemoryDatabaseService(MAX_THREADS, MAX_THREADS);
+        ReviewService reviewService = new ReviewService() {
+            @Override
+            public List<String> getReviewsForBook(String ISBN) {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Library library = strategy == null
+                ? new Library(databaseService, reviewService)
+                : new Library(databaseService, reviewService, strategy);
+        for (int i = 0; i < MAX_THREADS; i++) {
+            library.addBook(new Book(BenchmarkData.isbn(i), "Title", "Author"));
+            library.registerUser(new User("Name", BenchmarkData.userId(i), (userId, message) -> { }));
+        }
+        return library;
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        String isbn;
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setup(BorrowThroughputBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement() % MAX_THREADS;
+            isbn = BenchmarkData.isbn(index);
+            userId = BenchmarkData.userId(index);
+        }
+    }
+
+    @Benchmark
+    public void globalLock(Borrower borrower) {
+        synchronized (globalLock) {
+            sequentialLibrary.borrowBook(borrower.isbn, borrower.userId);
+            sequentialLibrary.returnBook(borrower.isbn);
+        }
+    }
+
+    @Benchmark
+    public void lockFree(Borrower borrower) {
+        lockFreeLibrary.borrowBook(borrower.isbn, borrower.userId);
+        lockFreeLibrary.returnBook(borrower.isbn);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(BorrowThroughputBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.concurrency.RequestExecutor;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@value #BORROWERS} simulated borrowers at once through a {@link RequestExecutor}. Each borrows its
+ * own book and returns it, five database round trips of {@code latencyMicros} each against a
+ * {@link LatencyDatabaseService}. One operation is the time until every borrower finished.
+ * <p>
+ * {@code mode=auto} uses {@link RequestExecutor#create(int, int)}, which runs each borrower on a virtual
+ * thread on JDK 21 and later and otherwise falls back to the pool; {@code mode=bounded} always uses a pool
+ * of {@code threads} threads. On JDKs without virtual threads the two modes measure the same pool. Run on
+ * JDK 21 or later to compare them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BorrowerLoadBenchmark {
+
+    static final int BORROWERS = 10_000;
+
+    @Param({"auto", "bounded"})
+    String mode;
+
+    @Param({"64", "1024"})
+    int threads;
+
+    @Param({"500"})
+    long latencyMicros;
+
+    Library library;
+    RequestExecutor executor;
+    String[] isbns;
+    String[] userIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        InMemoryDatabaseService store = new InMemoryDatabaseService(BORROWERS * 2, BORROWERS * 2);
+        CountingNotificationService notificationService = new CountingNotificationService();
+        isbns = new String[BORROWERS];
+        userIds = new String[BORROWERS];
+        for (int i = 0; i < BORROWERS; i++) {
+            isbns[i] = BenchmarkData.isbn(i);
+            userIds[i] = BenchmarkData.userId(i);
+            store.addBook(isbns[i], new Book(isbns[i], "Title " + i, "Author Name"));
+            store.registerUser(userIds[i], new User("Reader", userIds[i], notificationService));
+        }
+        library = new Library(new LatencyDatabaseService(store, TimeUnit.MICROSECONDS.toNanos(latencyMicros)),
+                new InMemoryReviewService(), new LockFreeBorrowStrategy());
+        executor = mode.equals("auto")
+                ? RequestExecutor.create(threads, BORROWERS)
+                : RequestExecutor.bounded(threads, BORROWERS);
+        System.out.println("\nVirtual threads: " + executor.isVirtual());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void borrowAndReturn() {
+        CompletableFuture<?>[] borrowers = new CompletableFuture<?>[BORROWERS];
+        for (int i = 0; i < BORROWERS; i++) {
+            String isbn = isbns[i];
+            String userId = userIds[i];
+            borrowers[i] = executor.run(() -> {
+                library.borrowBook(isbn, userId);
+                library.returnBook(isbn);
+            });
+        }
+        CompletableFuture.allOf(borrowers).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BorrowerLoadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
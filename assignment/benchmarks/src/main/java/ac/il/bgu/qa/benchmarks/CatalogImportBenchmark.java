@@ -0,0 +1,71 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.CatalogImporter;
+import ac.il.bgu.qa.ImportReport;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a catalog of 1M books into an empty {@link InMemoryDatabaseService},
+ * once through {@link CatalogImporter} and once through repeated {@link Library#addBook(Book)} calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class CatalogImportBenchmark {
+
+    @Param({"1000000"})
+    public int books;
+
+    @Param({"1000", "10000"})
+    public int chunkSize;
+
+    Book[] catalog;
+    InMemoryDatabaseService databaseService;
+
+    @Setup(Level.Trial)
+    public void setupCatalog() {
+        catalog = new Book[books];
+        for (int i = 0; i < books; i++) {
+            catalog[i] = new Book(BenchmarkData.isbn(i), "Title " + i, "Author Name");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupDatabase() {
+        databaseService = new InMemoryDatabaseService();
+    }
+
+    @Benchmark
+    public ImportReport bulkImport() {
+        return new CatalogImporter(databaseService, chunkSize).importBooks(Arrays.stream(catalog));
+    }
+
+    @Benchmark
+    public Library addBookLoop() {
+        Library library = new Library(databaseService, null);
+        for (Book book : catalog) {
+            library.addBook(book);
+        }
+        return library;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CatalogImportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
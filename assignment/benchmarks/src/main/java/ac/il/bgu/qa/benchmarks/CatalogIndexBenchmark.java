@@ -0,0 +1,79 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.search.CatalogIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures paged author and title prefix queries on a {@link CatalogIndex} of 5M books.
+ * <p>
+ * Titles are three words drawn from a small vocabulary, so short prefixes match hundreds of thousands
+ * of books and a deep page has to skip over many of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CatalogIndexBenchmark {
+
+    static final String[] WORDS = {"the", "art", "of", "computer", "programming", "java", "concurrency",
+            "practice", "modern", "systems", "design", "patterns", "data", "structures", "algorithms", "deep",
+            "learning", "history", "war", "peace", "night", "garden", "river", "city", "stars", "silent"};
+
+    @Param({"5000000"})
+    public int entries;
+
+    @Param({"0", "1000"})
+    public int offset;
+
+    CatalogIndex index;
+    String[] prefixes;
+    String[] authors;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = new CatalogIndex();
+        Random random = new Random(42);
+        authors = new String[10_000];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = "Author " + (char) ('A' + i % 26) + "-" + Integer.toString(i, 26).replaceAll("[0-9]", "x");
+        }
+        prefixes = new String[1024];
+        for (int i = 0; i < entries; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            index.add(new Book(BenchmarkData.isbn(i), title, authors[random.nextInt(authors.length)]));
+            if (i < prefixes.length) {
+                prefixes[i] = title.substring(0, 3 + random.nextInt(8));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> findByAuthor() {
+        return index.findByAuthor(authors[ThreadLocalRandom.current().nextInt(authors.length)], offset, 20);
+    }
+
+    @Benchmark
+    public List<String> searchTitlePrefix() {
+        return index.searchTitlePrefix(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)], offset, 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CatalogIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A database service that counts the book and user lookups it forwards to another one,
+ * so benchmarks can report database round trips per operation.
+ */
+public final class CountingDatabaseService implements DatabaseService {
+
+    private final DatabaseService delegate;
+    private final LongAdder bookLookups = new LongAdder();
+    private final LongAdder userLookups = new LongAdder();
+
+    public CountingDatabaseService(DatabaseService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        delegate.addBook(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        bookLookups.increment();
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        bookLookups.increment();
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        userLookups.increment();
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        userLookups.increment();
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        delegate.borrowBook(ISBN, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        delegate.returnBook(ISBN);
+    }
+
+    /**
+     * Retrieves the number of book and user lookups forwarded so far.
+     *
+     * @return The number of lookups.
+     */
+    public long getLookups() {
+        return bookLookups.sum() + userLookups.sum();
+    }
+
+    /**
+     * Resets the lookup counts.
+     */
+    public void reset() {
+        bookLookups.reset();
+        userLookups.reset();
+    }
+}
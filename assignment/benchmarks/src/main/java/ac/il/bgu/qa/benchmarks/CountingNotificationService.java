@@ -0,0 +1,30 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A notification service stand-in that only counts the notifications and their length,
+ * so the message is not dead code.
+ */
+public final class CountingNotificationService implements NotificationService {
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+
+    @Override
+    public void notifyUser(String userId, String message) {
+        notifications.increment();
+        characters.add(message.length());
+    }
+
+    /**
+     * Retrieves the number of notifications sent.
+     *
+     * @return The number of notifications.
+     */
+    public long getNotifications() {
+        return notifications.sum();
+    }
+}
@@ -0,0 +1,114 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.notification.NotificationDispatcher;
+import ac.il.bgu.qa.notification.RetryPolicy;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.UserIdValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Library#getBookByISBN(String, String)} with the pipeline it replaced, which validated the
+ * request and fetched the book, then called {@link Library#notifyUserWithBookReviews(String, String)}
+ * on the caller's thread, validating and fetching the book again before fetching the user.
+ * <p>
+ * Both run against the same {@link CountingDatabaseService}. At the end of each iteration the database
+ * lookups per call are printed, once the background notifications have drained: three for the old pipeline
+ * and two for the current one. The scores are the caller's latency only, which for the current pipeline
+ * includes handing the notification to the dispatcher. The dispatcher blocks callers rather than dropping notifications, so every
+ * call is counted in full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetBookPipelineBenchmark {
+
+    static final int CATALOG = 1024;
+    static final int REVIEWS = 5;
+
+    CountingDatabaseService databaseService;
+    NotificationDispatcher dispatcher;
+    Library library;
+    long calls;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        databaseService = new CountingDatabaseService(new InMemoryDatabaseService(CATALOG * 4, CATALOG));
+        InMemoryReviewService reviewService = new InMemoryReviewService();
+        CountingNotificationService notificationService = new CountingNotificationService();
+        dispatcher = new NotificationDispatcher(Executors.newFixedThreadPool(2),
+                Executors.newSingleThreadScheduledExecutor(), RetryPolicy.DEFAULT, 1024, 1, TimeUnit.MINUTES);
+        library = new Library(databaseService, reviewService, new LockFreeBorrowStrategy(), dispatcher);
+        for (int i = 0; i < CATALOG; i++) {
+            String isbn = BenchmarkData.isbn(i);
+            library.addBook(new Book(isbn, "Title " + i, "Author Name"));
+            reviewService.addReviews(isbn, REVIEWS);
+            library.registerUser(new User("Reader", BenchmarkData.userId(i), notificationService));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        databaseService.reset();
+        calls = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() throws InterruptedException {
+        while (dispatcher.getPending() > 0) {
+            Thread.sleep(1);
+        }
+        System.out.printf("%n%.2f database lookups per call%n", (double) databaseService.getLookups() / calls);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public Book getBookByISBN() {
+        int index = next++ & (CATALOG - 1);
+        calls++;
+        return library.getBookByISBN(BenchmarkData.isbn(index), BenchmarkData.userId(index));
+    }
+
+    @Benchmark
+    public Book previousPipeline() {
+        int index = next++ & (CATALOG - 1);
+        calls++;
+        String isbn = BenchmarkData.isbn(index);
+        String userId = BenchmarkData.userId(index);
+        if (!IsbnValidator.isValid(isbn) || !UserIdValidator.isValid(userId)) {
+            throw new IllegalArgumentException();
+        }
+        Book book = databaseService.getBookByISBN(isbn);
+        if (book == null || book.isBorrowed()) {
+            throw new IllegalStateException();
+        }
+        library.notifyUserWithBookReviews(isbn, userId);
+        return book;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GetBookPipelineBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
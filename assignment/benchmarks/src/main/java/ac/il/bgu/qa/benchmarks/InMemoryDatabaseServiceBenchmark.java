@@ -0,0 +1,93 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookups and borrow/return updates on {@link InMemoryDatabaseService}
+ * against a {@code HashMap<String, Book>} at catalog scale.
+ * <p>
+ * At the default 10M entries the benchmark needs a heap of about 4 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InMemoryDatabaseServiceBenchmark {
+
+    @Param({"10000000"})
+    public int entries;
+
+    InMemoryDatabaseService databaseService;
+    Map<String, Book> hashMapBooks;
+    String[] isbns;
+    String[] userIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        databaseService = new InMemoryDatabaseService(entries, entries);
+        hashMapBooks = new HashMap<>();
+        isbns = new String[entries];
+        userIds = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            isbns[i] = BenchmarkData.isbn(i);
+            userIds[i] = BenchmarkData.userId(i);
+            Book book = new Book(isbns[i], "Title", "Author");
+            databaseService.addBook(isbns[i], book);
+            databaseService.registerUser(userIds[i], new User("Name", userIds[i], null));
+            hashMapBooks.put(isbns[i], book);
+        }
+    }
+
+    private int next() {
+        return ThreadLocalRandom.current().nextInt(entries);
+    }
+
+    @Benchmark
+    public Book getBookByISBN() {
+        return databaseService.getBookByISBN(isbns[next()]);
+    }
+
+    @Benchmark
+    public Book hashMapGetBookByISBN() {
+        return hashMapBooks.get(isbns[next()]);
+    }
+
+    @Benchmark
+    public User getUserById() {
+        return databaseService.getUserById(userIds[next()]);
+    }
+
+    @Benchmark
+    public void borrowBook() {
+        int i = next();
+        databaseService.borrowBook(isbns[i], userIds[i]);
+    }
+
+    @Benchmark
+    public void returnBook() {
+        databaseService.returnBook(isbns[next()]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InMemoryDatabaseServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,41 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A review service stand-in that serves reviews from memory, so benchmarks measure the library
+ * rather than a backend.
+ */
+public final class InMemoryReviewService implements ReviewService {
+
+    private final Map<String, List<String>> reviews = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the reviews of a book.
+     *
+     * @param ISBN  The ISBN of the book.
+     * @param count The number of reviews to generate for it.
+     */
+    public void addReviews(String ISBN, int count) {
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add("Review " + i + " of " + ISBN + ": a fair read with a few slow chapters.");
+        }
+        reviews.put(ISBN, Collections.unmodifiableList(list));
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) {
+        return reviews.getOrDefault(ISBN, Collections.emptyList());
+    }
+
+    @Override
+    public void close() {
+    }
+}
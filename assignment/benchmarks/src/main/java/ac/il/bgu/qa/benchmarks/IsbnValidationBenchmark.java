@@ -0,0 +1,71 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.utils.IsbnValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regex based ISBN-13 check that used to live in {@code Library}
+ * with the single-pass {@link IsbnValidator}.
+ * Run with the GC profiler to see the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsbnValidationBenchmark {
+
+    @Param({"978-3-16-148410-0", "9780306406157", "978-3-16-148410-5"})
+    public String isbn;
+
+    @Benchmark
+    public boolean legacy() {
+        return legacyIsISBNValid(isbn);
+    }
+
+    @Benchmark
+    public boolean singlePass() {
+        return IsbnValidator.isValid(isbn);
+    }
+
+    // Verbatim copy of the previous Library.isISBNValid, kept as the baseline.
+    private static boolean legacyIsISBNValid(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        isbn = isbn.replaceAll("-", "");
+        if (isbn.length() != 13 || !isbn.matches("\\d+")) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = Integer.parseInt(String.valueOf(isbn.charAt(i)));
+            if (i % 2 == 0) {
+                sum += digit;
+            } else {
+                sum += digit * 3;
+            }
+        }
+        int checkDigit = 10 - (sum % 10);
+        if (checkDigit == 10) {
+            checkDigit = 0;
+        }
+        return checkDigit == Integer.parseInt(String.valueOf(isbn.charAt(12)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IsbnValidationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
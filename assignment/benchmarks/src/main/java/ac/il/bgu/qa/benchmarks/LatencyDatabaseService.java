@@ -0,0 +1,62 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A database service that parks the calling thread for a fixed time before each call to another one,
+ * standing in for a remote database reached over blocking I/O.
+ */
+public final class LatencyDatabaseService implements DatabaseService {
+
+    private final DatabaseService delegate;
+    private final long latencyNanos;
+
+    public LatencyDatabaseService(DatabaseService delegate, long latencyNanos) {
+        this.delegate = delegate;
+        this.latencyNanos = latencyNanos;
+    }
+
+    private void roundTrip() {
+        LockSupport.parkNanos(latencyNanos);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        roundTrip();
+        delegate.addBook(ISBN, book);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        roundTrip();
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        roundTrip();
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        roundTrip();
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        roundTrip();
+        delegate.borrowBook(ISBN, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        roundTrip();
+        delegate.returnBook(ISBN);
+    }
+}
@@ -0,0 +1,123 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the {@link Library} hot paths against in-memory stand-ins for all three services.
+ * <p>
+ * The plain benchmarks run on one thread. The {@code contended*} ones run on {@value #CONTENDED_THREADS}
+ * threads: borrowers each work on their own book but share the library and its database, and readers
+ * all fetch the same popular book. The catalog has {@value #CATALOG} books, each with
+ * {@value #REVIEWS} reviews, and as many users.
+ * <p>
+ * {@link #main(String[])} adds the GC profiler for allocation rates and writes JSON results to
+ * {@code target/library-benchmark.json}; from the shaded jar use {@code -prof gc -rf json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryBenchmark {
+
+    static final int CATALOG = 1024;
+    static final int REVIEWS = 5;
+    static final int CONTENDED_THREADS = 4;
+    // The popular book every contended reader fetches.
+    static final String HOT_ISBN = BenchmarkData.isbn(0);
+
+    Library library;
+    CountingNotificationService notificationService;
+    // Books added by addBook are numbered from CATALOG upwards.
+    long nextNewBook;
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        InMemoryDatabaseService databaseService = new InMemoryDatabaseService(CATALOG * 4, CATALOG);
+        InMemoryReviewService reviewService = new InMemoryReviewService();
+        notificationService = new CountingNotificationService();
+        library = new Library(databaseService, reviewService, new LockFreeBorrowStrategy());
+        for (int i = 0; i < CATALOG; i++) {
+            String isbn = BenchmarkData.isbn(i);
+            library.addBook(new Book(isbn, "Title " + i, "Author Name"));
+            reviewService.addReviews(isbn, REVIEWS);
+            library.registerUser(new User("Reader", BenchmarkData.userId(i), notificationService));
+        }
+        nextNewBook = CATALOG;
+        nextThread.set(0);
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        String isbn;
+        String userId;
+
+        @Setup(Level.Iteration)
+        public void setup(LibraryBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement() % CATALOG;
+            isbn = BenchmarkData.isbn(index);
+            userId = BenchmarkData.userId(index);
+        }
+    }
+
+    @Benchmark
+    public void addBook() {
+        long n = nextNewBook++;
+        library.addBook(new Book(BenchmarkData.isbn(n), "Title", "Author Name"));
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook(Reader reader) {
+        library.borrowBook(reader.isbn, reader.userId);
+        library.returnBook(reader.isbn);
+    }
+
+    @Benchmark
+    public void notifyUserWithBookReviews(Reader reader) {
+        library.notifyUserWithBookReviews(reader.isbn, reader.userId);
+    }
+
+    @Benchmark
+    public Book getBookByISBN(Reader reader) {
+        return library.getBookByISBN(reader.isbn, reader.userId);
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public void contendedBorrowAndReturnBook(Reader reader) {
+        library.borrowBook(reader.isbn, reader.userId);
+        library.returnBook(reader.isbn);
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public Book contendedGetBookByISBN(Reader reader) {
+        return library.getBookByISBN(HOT_ISBN, reader.userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LibraryBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/library-benchmark.json")
+                .build();
+        new Runner(options).run();
+    }
+}
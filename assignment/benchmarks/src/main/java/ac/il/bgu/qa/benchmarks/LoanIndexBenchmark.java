@@ -0,0 +1,120 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.utils.LoanIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link LoanIndex} with boxed {@code HashMap}s holding the same loans: finding a book's borrower,
+ * listing a user's loans, and moving a loan from one user to another.
+ * <p>
+ * The setup prints the heap retained by each after a full GC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LoanIndexBenchmark {
+
+    // Each user holds this many books.
+    static final int LOANS_PER_USER = 5;
+
+    @Param({"1000000"})
+    public int loans;
+
+    LoanIndex index;
+    Map<Long, Long> borrowers;
+    Map<Long, Set<Long>> userLoans;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long before = usedHeap();
+        index = new LoanIndex(loans);
+        for (int i = 0; i < loans; i++) {
+            index.borrow(i, i / LOANS_PER_USER);
+        }
+        long afterIndex = usedHeap();
+        borrowers = new HashMap<>();
+        userLoans = new HashMap<>();
+        for (long i = 0; i < loans; i++) {
+            long userId = i / LOANS_PER_USER;
+            borrowers.put(i, userId);
+            userLoans.computeIfAbsent(userId, key -> new LinkedHashSet<>()).add(i);
+        }
+        long afterMaps = usedHeap();
+        System.out.printf("%nRetained heap: loan index %d MB, hash maps %d MB%n",
+                (afterIndex - before) >> 20, (afterMaps - afterIndex) >> 20);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private long nextBook() {
+        return ThreadLocalRandom.current().nextInt(loans);
+    }
+
+    @Benchmark
+    public long borrowerOf() {
+        return index.borrowerOf(nextBook());
+    }
+
+    @Benchmark
+    public Long hashMapBorrowerOf() {
+        return borrowers.get(nextBook());
+    }
+
+    @Benchmark
+    public long[] loansOf() {
+        return index.loansOf(nextBook() / LOANS_PER_USER);
+    }
+
+    @Benchmark
+    public Object[] hashMapLoansOf() {
+        return userLoans.get(nextBook() / LOANS_PER_USER).toArray();
+    }
+
+    @Benchmark
+    public long moveLoan() {
+        long ISBN = nextBook();
+        index.borrow(ISBN, ISBN % (loans / LOANS_PER_USER));
+        return index.borrow(ISBN, ISBN / LOANS_PER_USER);
+    }
+
+    @Benchmark
+    public Long hashMapMoveLoan() {
+        long ISBN = nextBook();
+        moveInMaps(ISBN, ISBN % (loans / LOANS_PER_USER));
+        return moveInMaps(ISBN, ISBN / LOANS_PER_USER);
+    }
+
+    private Long moveInMaps(long ISBN, long userId) {
+        Long previous = borrowers.put(ISBN, userId);
+        if (previous != null) {
+            userLoans.get(previous).remove(ISBN);
+        }
+        userLoans.computeIfAbsent(userId, key -> new LinkedHashSet<>()).add(ISBN);
+        return previous;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoanIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
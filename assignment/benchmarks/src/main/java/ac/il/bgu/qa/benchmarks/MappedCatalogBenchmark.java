@@ -0,0 +1,124 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.impl.MappedCatalogDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Compares a {@link MappedCatalogDatabaseService} with an {@link InMemoryDatabaseService} holding the
+ * same catalog: a lookup that reads the title, and opening the existing catalog.
+ * <p>
+ * The setup prints the heap retained by each catalog, beyond the shared ISBN array, after a full GC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MappedCatalogBenchmark {
+
+    @Param({"1000000"})
+    public int entries;
+
+    Path directory;
+    MappedCatalogDatabaseService mapped;
+    InMemoryDatabaseService inMemory;
+    String[] isbns;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("catalog-benchmark");
+        isbns = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            isbns[i] = BenchmarkData.isbn(i);
+        }
+        long before = usedHeap();
+        mapped = new MappedCatalogDatabaseService(directory, entries);
+        fill(mapped::addBooks);
+        long afterMapped = usedHeap();
+        inMemory = new InMemoryDatabaseService(entries, 16);
+        fill(inMemory::addBooks);
+        long afterInMemory = usedHeap() - (afterMapped - before);
+        System.out.printf("%nRetained heap: mapped %d MB, in-memory %d MB%n",
+                (afterMapped - before) >> 20, (afterInMemory - before) >> 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mapped.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // Adds the catalog in batches, so the Book objects only stay alive if the database keeps them.
+    private void fill(Consumer<List<Book>> database) {
+        List<Book> batch = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            batch.add(new Book(isbns[i], "The Title Of Book " + i, "Author Name " + i % 1000));
+            if (batch.size() == 10_000 || i == entries - 1) {
+                database.accept(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private int next() {
+        return ThreadLocalRandom.current().nextInt(entries);
+    }
+
+    @Benchmark
+    public String mappedGetBookByISBN() {
+        return mapped.getBookByISBN(isbns[next()]).getTitle();
+    }
+
+    @Benchmark
+    public String inMemoryGetBookByISBN() {
+        return inMemory.getBookByISBN(isbns[next()]).getTitle();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Measurement(iterations = 20)
+    public Book openCatalog() {
+        MappedCatalogDatabaseService catalog = new MappedCatalogDatabaseService(directory, entries);
+        try {
+            return catalog.getBookByISBN(isbns[next()]);
+        } finally {
+            catalog.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MappedCatalogBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,61 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.metrics.InMemoryLibraryMetrics;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the metrics cost on the borrow + return hot path.
+ * <p>
+ * {@code noop} should match a library built without metrics; {@code inMemory} adds the clock reads and
+ * histogram updates of {@link InMemoryLibraryMetrics}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    static final String ISBN = BenchmarkData.isbn(0);
+    static final String USER_ID = BenchmarkData.userId(0);
+
+    @Param({"noop", "inMemory"})
+    String metrics;
+
+    Library library;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LibraryMetrics libraryMetrics = metrics.equals("noop") ? LibraryMetrics.NOOP : new InMemoryLibraryMetrics();
+        library = new Library(new InMemoryDatabaseService(), new InMemoryReviewService(),
+                new LockFreeBorrowStrategy(), null, libraryMetrics);
+        library.addBook(new Book(ISBN, "Title", "Author Name"));
+        library.registerUser(new User("Reader", USER_ID, new CountingNotificationService()));
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook() {
+        library.borrowBook(ISBN, USER_ID);
+        library.returnBook(ISBN);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MetricsOverheadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,109 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.PooledReviewService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures a review fetch followed by {@code close()}, the pattern {@code Library} uses, against a
+ * stand-in service whose connection costs {@code connectMicros} to set up.
+ * <p>
+ * {@code closePerCall} tears the connection down after every fetch, as a plain review service does;
+ * {@code pooled} returns it to a {@link PooledReviewService} instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewPoolBenchmark {
+
+    static final String ISBN = BenchmarkData.isbn(0);
+
+    @Param({"200"})
+    long connectMicros;
+
+    PooledReviewService pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = new PooledReviewService(() -> new ConnectingReviewService(connectMicros), 16, 1, 60, 600, 60,
+                TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        ConnectingReviewService service;
+
+        @Setup(Level.Trial)
+        public void setup(ReviewPoolBenchmark benchmark) {
+            service = new ConnectingReviewService(benchmark.connectMicros);
+        }
+    }
+
+    @Benchmark
+    public List<String> closePerCall(Connection connection) {
+        try {
+            return connection.service.getReviewsForBook(ISBN);
+        } finally {
+            connection.service.close();
+        }
+    }
+
+    @Benchmark
+    public List<String> pooled() {
+        try {
+            return pool.getReviewsForBook(ISBN);
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * A review service that connects on first use and disconnects on close.
+     */
+    static final class ConnectingReviewService implements ReviewService {
+        final long connectNanos;
+        boolean connected;
+
+        ConnectingReviewService(long connectMicros) {
+            this.connectNanos = TimeUnit.MICROSECONDS.toNanos(connectMicros);
+        }
+
+        @Override
+        public List<String> getReviewsForBook(String ISBN) {
+            if (!connected) {
+                LockSupport.parkNanos(connectNanos);
+                connected = true;
+            }
+            return Collections.singletonList("Review");
+        }
+
+        @Override
+        public void close() {
+            connected = false;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReviewPoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.ShardedLibrary;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures borrow + return throughput of a {@link ShardedLibrary} with 1 to 16 in-process shards.
+ * <p>
+ * Every thread works on its own book and user, spread over the catalog, so the only shared state is
+ * the shards themselves. Run with {@code -t} set to the number of cores to see writes to different
+ * shards proceed in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ShardedLibraryBenchmark {
+
+    static final int CATALOG = 4096;
+
+    @Param({"1", "2", "4", "8", "16"})
+    int shards;
+
+    ShardedLibrary library;
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<DatabaseService> databases = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            databases.add(new InMemoryDatabaseService(CATALOG, CATALOG));
+        }
+        library = new ShardedLibrary(databases, new InMemoryReviewService(), new LockFreeBorrowStrategy());
+        CountingNotificationService notificationService = new CountingNotificationService();
+        for (int i = 0; i < CATALOG; i++) {
+            library.addBook(new Book(BenchmarkData.isbn(i), "Title", "Author Name"));
+            library.registerUser(new User("Reader", BenchmarkData.userId(i), notificationService));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        String isbn;
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setup(ShardedLibraryBenchmark benchmark) {
+            // Spread the threads over the catalog so they land on different shards.
+            int index = benchmark.nextThread.getAndIncrement() * 97 % CATALOG;
+            isbn = BenchmarkData.isbn(index);
+            userId = BenchmarkData.userId(index);
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturnBook(Borrower borrower) {
+        library.borrowBook(borrower.isbn, borrower.userId);
+        library.returnBook(borrower.isbn);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ShardedLibraryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,92 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.StripedLockBorrowStrategy;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures borrow + return throughput through {@link StripedLockBorrowStrategy} when every thread works on its
+ * own ISBN. {@code stripes=1} is a global lock around every check-then-act sequence; {@code stripes=64}
+ * spreads the books over 64 locks. At the end of each trial the share of contended acquisitions and their mean
+ * wait are printed.
+ * <p>
+ * {@link #main(String[])} runs both with 1 to 64 threads; from the shaded jar use {@code -t 1,2,4,...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedLockBenchmark {
+
+    // Upper bound on the number of benchmark threads.
+    static final int MAX_THREADS = 64;
+
+    @Param({"1", "64"})
+    int stripes;
+
+    StripedLockBorrowStrategy strategy;
+    Library library;
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        strategy = new StripedLockBorrowStrategy(stripes);
+        library = new Library(new InMemoryDatabaseService(MAX_THREADS * 4, MAX_THREADS * 4),
+                new InMemoryReviewService(), strategy);
+        for (int i = 0; i < MAX_THREADS; i++) {
+            library.addBook(new Book(BenchmarkData.isbn(i), "Title", "Author"));
+            library.registerUser(new User("Name", BenchmarkData.userId(i), new CountingNotificationService()));
+        }
+        nextThread.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long acquisitions = Math.max(1, strategy.getAcquisitions());
+        long contended = Math.max(1, strategy.getContended());
+        System.out.printf("%n%d stripes: contended %.3f%% of %d acquisitions, mean wait %.1f ns%n", stripes,
+                100.0 * strategy.getContended() / acquisitions, strategy.getAcquisitions(),
+                (double) strategy.getWaitNanos() / contended);
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        String isbn;
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setup(StripedLockBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement() % MAX_THREADS;
+            isbn = BenchmarkData.isbn(index);
+            userId = BenchmarkData.userId(index);
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Borrower borrower) {
+        library.borrowBook(borrower.isbn, borrower.userId);
+        library.returnBook(borrower.isbn);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            Options options = new OptionsBuilder()
+                    .include(StripedLockBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.utils.UserIdValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code String.matches("\\d{12}")}, which compiles a Pattern per call,
+ * with the character loop in {@link UserIdValidator}.
+ * Run with the GC profiler to see the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserIdValidationBenchmark {
+
+    @Param({"123456789012", "12345678901a"})
+    public String userId;
+
+    @Benchmark
+    public boolean regex() {
+        return userId.matches("\\d{12}");
+    }
+
+    @Benchmark
+    public boolean characterLoop() {
+        return UserIdValidator.isValid(userId);
+    }
+
+    @Benchmark
+    public long pack() {
+        return UserIdValidator.pack(userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(UserIdValidationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
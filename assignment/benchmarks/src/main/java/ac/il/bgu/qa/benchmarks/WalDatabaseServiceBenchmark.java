@@ -0,0 +1,92 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.impl.WalDatabaseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures durable borrow and return operations per second on a {@link WalDatabaseService} in a
+ * temporary directory on the local disk.
+ * <p>
+ * Every operation returns only after its log record is forced to disk. Concurrent threads share each
+ * flush, so throughput grows with the thread count until the disk, not the fsync latency, is the limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class WalDatabaseServiceBenchmark {
+
+    static final int CATALOG = 4096;
+
+    @Param({"1000000"})
+    long snapshotInterval;
+
+    Path directory;
+    WalDatabaseService databaseService;
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        CountingNotificationService notificationService = new CountingNotificationService();
+        databaseService = new WalDatabaseService(directory, userId -> notificationService,
+                WalDatabaseService.DEFAULT_SEGMENT_SIZE, snapshotInterval);
+        for (int i = 0; i < CATALOG; i++) {
+            databaseService.addBook(BenchmarkData.isbn(i), new Book(BenchmarkData.isbn(i), "Title", "Author Name"));
+            databaseService.registerUser(BenchmarkData.userId(i),
+                    new User("Reader", BenchmarkData.userId(i), notificationService));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        databaseService.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        String isbn;
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setup(WalDatabaseServiceBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement() % CATALOG;
+            isbn = BenchmarkData.isbn(index);
+            userId = BenchmarkData.userId(index);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void durableBorrowAndReturnBook(Borrower borrower) {
+        databaseService.borrowBook(borrower.isbn, borrower.userId);
+        databaseService.returnBook(borrower.isbn);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WalDatabaseServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
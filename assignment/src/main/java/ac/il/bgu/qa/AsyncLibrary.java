@@ -0,0 +1,312 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.services.*;
+import ac.il.bgu.qa.services.impl.BlockingDatabaseServiceAdapter;
+import ac.il.bgu.qa.services.impl.BlockingNotificationServiceAdapter;
+import ac.il.bgu.qa.services.impl.BlockingReviewServiceAdapter;
+import ac.il.bgu.qa.utils.IsbnValidator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A non-blocking counterpart of {@link Library} for callers on an event loop.
+ * <p>
+ * Each method validates its arguments on the caller's thread, throwing {@link IllegalArgumentException} for
+ * invalid ones as the blocking library does, and then returns a stage at once. The stage completes
+ * exceptionally with the exception the blocking method would have thrown. Lookups that do not depend on each
+ * other, such as the book and the user of a borrow, run concurrently.
+ * <p>
+ * The library talks to the asynchronous service interfaces. Blocking services can be used through the
+ * {@code Blocking*Adapter} classes, which run their calls on a dedicated executor; users whose notification
+ * service does not implement {@link AsyncNotificationService} are notified the same way. Borrow state is
+ * changed with a compare-and-set on the book and rolled back if the database fails to record the change.
+ */
+public class AsyncLibrary {
+
+    // The number of attempts to notify a user before giving up, as in the blocking library.
+    private static final int MAX_NOTIFICATION_ATTEMPTS = 5;
+
+    // Service to interact with the database
+    private final AsyncDatabaseService databaseService;
+
+    // Service to fetch reviews for a book
+    private final AsyncReviewService reviewService;
+
+    // Runs the blocking notification services of users
+    private final Executor blockingExecutor;
+
+    /**
+     * Constructs a library running blocking services on a dedicated executor.
+     *
+     * @param databaseService  Service to interact with the database.
+     * @param reviewService    Service to fetch reviews for a book.
+     * @param blockingExecutor Runs the blocking service calls, including users' notification services.
+     */
+    public AsyncLibrary(DatabaseService databaseService, ReviewService reviewService, Executor blockingExecutor) {
+        this(new BlockingDatabaseServiceAdapter(databaseService, blockingExecutor),
+                new BlockingReviewServiceAdapter(reviewService, blockingExecutor), blockingExecutor);
+    }
+
+    /**
+     * Constructs a library on asynchronous services.
+     *
+     * @param databaseService  Service to interact with the database.
+     * @param reviewService    Service to fetch reviews for a book.
+     * @param blockingExecutor Runs the notification services of users that have no asynchronous one.
+     */
+    public AsyncLibrary(AsyncDatabaseService databaseService, AsyncReviewService reviewService,
+                        Executor blockingExecutor) {
+        if (databaseService == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (reviewService == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (blockingExecutor == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        }
+        this.databaseService = databaseService;
+        this.reviewService = reviewService;
+        this.blockingExecutor = blockingExecutor;
+    }
+
+    /**
+     * Adds a book to the library's collection.
+     *
+     * @param book The book to be added.
+     * @return A stage completed once the book was added.
+     * @throws IllegalArgumentException If the book is not valid.
+     */
+    public CompletionStage<Void> addBook(Book book) {
+        String error = Library.validateBook(book);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+
+        return databaseService.getBookByISBN(book.getISBN()).thenCompose(existing -> {
+            // If book already exists in the database, fail.
+            if (existing != null) {
+                throw new IllegalArgumentException("Book already exists.");
+            }
+            return databaseService.addBook(book.getISBN(), book);
+        });
+    }
+
+    /**
+     * Registers a user with the library.
+     *
+     * @param user The user to be registered.
+     * @return A stage completed once the user was registered.
+     * @throws IllegalArgumentException If the user is not valid.
+     */
+    public CompletionStage<Void> registerUser(User user) {
+        String error = Library.validateUser(user);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+
+        return databaseService.getUserById(user.getId()).thenCompose(existing -> {
+            // If a user with the given Id is already registered, fail.
+            if (existing != null) {
+                throw new IllegalArgumentException("User already exists.");
+            }
+            return databaseService.registerUser(user.getId(), user);
+        });
+    }
+
+    /**
+     * Borrows a book for a user.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user borrowing the book.
+     * @return A stage completed once the borrowing was recorded.
+     * @throws IllegalArgumentException If the ISBN or the user Id is not valid.
+     */
+    public CompletionStage<Void> borrowBook(String ISBN, String userId) {
+        BookRequest request = BookRequest.validate(ISBN, userId);
+
+        return resolve(request).thenCompose(ignored -> {
+            Book book = request.getBook();
+
+            // Only the caller that flips the state from available to borrowed may record the transaction.
+            if (!book.tryBorrow()) {
+                throw new BookAlreadyBorrowedException("Book is already borrowed!");
+            }
+            return databaseService.borrowBook(ISBN, userId).whenComplete((done, error) -> {
+                if (error != null) {
+                    book.tryReturn();
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns a previously borrowed book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return A stage completed once the return was recorded.
+     * @throws IllegalArgumentException If the ISBN is not valid.
+     */
+    public CompletionStage<Void> returnBook(String ISBN) {
+        if (!IsbnValidator.isValid(ISBN)) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+
+        return databaseService.getBookByISBN(ISBN).thenCompose(book -> {
+            // If no book is found for the given ISBN, fail.
+            if (book == null) {
+                throw new BookNotFoundException("Book not found!");
+            }
+
+            // Only the caller that flips the state from borrowed to available may record the return.
+            if (!book.tryReturn()) {
+                throw new BookNotBorrowedException("Book wasn't borrowed!");
+            }
+            return databaseService.returnBook(ISBN).whenComplete((done, error) -> {
+                if (error != null) {
+                    book.tryBorrow();
+                }
+            });
+        });
+    }
+
+    /**
+     * Notifies a user with the reviews of a specified book, retrying a failed notification up to
+     * {@value #MAX_NOTIFICATION_ATTEMPTS} times in total.
+     *
+     * @param ISBN   The ISBN of the book whose reviews are to be sent.
+     * @param userId The Id of the user to whom the reviews are to be sent.
+     * @return A stage completed once the user was notified.
+     * @throws IllegalArgumentException If the ISBN or the user Id is not valid.
+     */
+    public CompletionStage<Void> notifyUserWithBookReviews(String ISBN, String userId) {
+        BookRequest request = BookRequest.validate(ISBN, userId);
+        return resolve(request).thenCompose(ignored -> sendReviews(request));
+    }
+
+    /**
+     * Fetches a book by its ISBN and notifies the user with its reviews in the background.
+     * The stage completes with the book without waiting for the notification, whose failure is only reported.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be fetched.
+     * @param userId The Id of the user to be notified with the book's reviews.
+     * @return A stage completed with the book.
+     * @throws IllegalArgumentException If the ISBN or the user Id is not valid.
+     */
+    public CompletionStage<Book> getBookByISBN(String ISBN, String userId) {
+        BookRequest request = BookRequest.validate(ISBN, userId);
+
+        return databaseService.getBookByISBN(ISBN).thenApply(book -> {
+            // If no book is found for the given ISBN, fail.
+            if (book == null) {
+                throw new BookNotFoundException("Book not found!");
+            }
+
+            // If the book is already borrowed, fail.
+            if (book.isBorrowed()) {
+                throw new BookAlreadyBorrowedException("Book was already borrowed!");
+            }
+            request.setBook(book);
+
+            // Notify the user with the book's reviews without holding up the result.
+            databaseService.getUserById(userId).thenCompose(user -> {
+                if (user == null) {
+                    throw new UserNotRegisteredException("User not found!");
+                }
+                request.setUser(user);
+                return sendReviews(request);
+            }).whenComplete((done, error) -> {
+                if (error != null) {
+                    System.out.println("Notification failed!");
+                }
+            });
+            return book;
+        });
+    }
+
+    // Fetches the book and the user of a request concurrently, failing if either does not exist.
+    private CompletionStage<Void> resolve(BookRequest request) {
+        CompletionStage<Book> book = databaseService.getBookByISBN(request.getISBN());
+        CompletionStage<User> user = databaseService.getUserById(request.getUserId());
+        return book.thenCombine(user, (foundBook, foundUser) -> {
+            if (foundBook == null) {
+                throw new BookNotFoundException("Book not found!");
+            } else if (foundUser == null) {
+                throw new UserNotRegisteredException("User not found!");
+            }
+            request.setBook(foundBook);
+            request.setUser(foundUser);
+            return null;
+        });
+    }
+
+    // Fetches the reviews of a resolved request, always closing the review service, and sends them to the user.
+    private CompletionStage<Void> sendReviews(BookRequest request) {
+        return reviewService.getReviewsForBookAndClose(request.getISBN())
+                .thenApply(reviews -> {
+                    if (reviews == null || reviews.isEmpty()) {
+                        throw new NoReviewsFoundException("No reviews found!");
+                    }
+                    return reviews;
+                })
+                .exceptionally(error -> {
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof ReviewException) {
+                        throw new ReviewServiceUnavailableException("Review service unavailable!");
+                    }
+                    throw error instanceof CompletionException
+                            ? (CompletionException) error : new CompletionException(cause);
+                })
+                .thenCompose(reviews -> {
+                    User user = request.getUser();
+                    String message =
+                            "Reviews for '" + request.getBook().getTitle() + "':\n" + String.join("\n", reviews);
+                    return send(notificationServiceOf(user), user.getId(), message, 1);
+                });
+    }
+
+    private AsyncNotificationService notificationServiceOf(User user) {
+        NotificationService service = user.getNotificationService();
+        if (service instanceof AsyncNotificationService) {
+            return (AsyncNotificationService) service;
+        }
+        return new BlockingNotificationServiceAdapter(service, blockingExecutor);
+    }
+
+    // Makes one delivery attempt, and on a notification failure the next one, until the attempts run out.
+    private CompletionStage<Void> send(AsyncNotificationService service, String userId, String message, int attempt) {
+        return service.notifyUser(userId, message).handle((done, error) -> {
+            if (error == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            Throwable cause = unwrap(error);
+            if (!(cause instanceof NotificationException)) {
+                return AsyncLibrary.<Void>failed(cause);
+            }
+            System.err.println("Notification failed! Retrying attempt " + attempt + "/" + MAX_NOTIFICATION_ATTEMPTS);
+            if (attempt == MAX_NOTIFICATION_ATTEMPTS) {
+                return AsyncLibrary.<Void>failed(new NotificationException("Notification failed!"));
+            }
+            return send(service, userId, message, attempt + 1);
+        }).thenCompose(Function.identity());
+    }
+
+    private static <T> CompletionStage<T> failed(Throwable error) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(error);
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,50 @@
+package ac.il.bgu.qa;
+
+import java.util.*;
+
+/**
+ * Reports the outcome of a batch borrow or return, item by item.
+ */
+public class BatchResult {
+
+    // ISBNs that were processed successfully, in request order.
+    private final List<String> succeeded = new ArrayList<>();
+    // ISBNs that were rejected, with the exception a single-item call would have thrown.
+    private final Map<String, RuntimeException> failures = new LinkedHashMap<>();
+
+    void succeeded(String ISBN) {
+        succeeded.add(ISBN);
+    }
+
+    void failed(String ISBN, RuntimeException reason) {
+        failures.put(ISBN, reason);
+    }
+
+    /**
+     * Retrieves the ISBNs that were processed successfully.
+     *
+     * @return The successful ISBNs, in request order.
+     */
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /**
+     * Retrieves the ISBNs that were rejected.
+     * A rejected ISBN that appears several times in the request is reported once.
+     *
+     * @return The rejected ISBNs, each mapped to the reason it was rejected.
+     */
+    public Map<String, RuntimeException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Checks if every item in the batch was processed successfully.
+     *
+     * @return true if no item was rejected, otherwise false.
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
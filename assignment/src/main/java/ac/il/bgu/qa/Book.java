@@ -1,5 +1,7 @@
 package ac.il.bgu.qa;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * Represents a book with its essential details and borrowing status.
  */
@@ -10,8 +12,13 @@ public class Book {
     private final String title;
     // The name of the author of the book.
     private final String author;
-    // Status to check if the book is currently borrowed or not.
-    private boolean isBorrowed;
+    // Status to check if the book is currently borrowed or not (1 when borrowed, 0 otherwise).
+    // Kept as a volatile int so the borrow state can be flipped with a compare-and-set.
+    private volatile int isBorrowed;
+
+    // Compare-and-set access to the borrow status, without a wrapper object per book.
+    private static final AtomicIntegerFieldUpdater<Book> IS_BORROWED =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "isBorrowed");
 
     /**
      * Constructs a new Book object.
@@ -24,7 +31,7 @@ public class Book {
         this.ISBN = ISBN;
         this.title = title;
         this.author = author;
-        this.isBorrowed = false;
+        this.isBorrowed = 0;
     }
 
     // Getter methods
@@ -62,7 +69,7 @@ public class Book {
      * @return true if the book is borrowed, otherwise false.
      */
     public boolean isBorrowed() {
-        return isBorrowed;
+        return isBorrowed != 0;
     }
 
     /**
@@ -70,9 +77,7 @@ public class Book {
      * Throws an exception if the book is already borrowed.
      */
     public void borrow() {
-        if (!isBorrowed) {
-            isBorrowed = true;
-        } else {
+        if (!tryBorrow()) {
             throw new IllegalStateException("Book is already borrowed!");
         }
     }
@@ -82,10 +87,27 @@ public class Book {
      * Throws an exception if the book was not previously borrowed.
      */
     public void returnBook() {
-        if (isBorrowed) {
-            isBorrowed = false;
-        } else {
+        if (!tryReturn()) {
             throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
         }
     }
+
+    /**
+     * Atomically marks the book as borrowed if it is currently available.
+     * Of several threads racing to borrow the same book, exactly one succeeds.
+     *
+     * @return true if the book was available and is now borrowed, false if it was already borrowed.
+     */
+    public boolean tryBorrow() {
+        return IS_BORROWED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Atomically marks the book as returned if it is currently borrowed.
+     *
+     * @return true if the book was borrowed and is now returned, false if it wasn't borrowed.
+     */
+    public boolean tryReturn() {
+        return IS_BORROWED.compareAndSet(this, 1, 0);
+    }
 }
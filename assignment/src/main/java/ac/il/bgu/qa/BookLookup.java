@@ -0,0 +1,40 @@
+package ac.il.bgu.qa;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The result of {@link Library#lookupBook(String, String)}: the book, available at once, and the outcome of the
+ * review notification that is still running in the background.
+ */
+public final class BookLookup {
+
+    // The book that was looked up.
+    private final Book book;
+    // Completes once the user was notified with the book's reviews.
+    private final CompletableFuture<Void> notification;
+
+    BookLookup(Book book, CompletableFuture<Void> notification) {
+        this.book = book;
+        this.notification = notification;
+    }
+
+    /**
+     * Retrieves the book that was looked up.
+     *
+     * @return The book.
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Retrieves the outcome of the review notification. Cancelling it does not stop the notification.
+     *
+     * @return A future completed once the user was notified, or completed exceptionally with the reason the
+     *         notification failed. A {@link java.util.concurrent.RejectedExecutionException} means it was dropped
+     *         because the notification queue was full.
+     */
+    public CompletableFuture<Void> getNotification() {
+        return notification;
+    }
+}
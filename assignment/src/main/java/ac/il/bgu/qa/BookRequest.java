@@ -0,0 +1,76 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+/**
+ * A request about one book on behalf of one user, carried through the stages of a {@link Library} or
+ * {@link AsyncLibrary} operation.
+ * <p>
+ * The ISBN and user Id are validated once, when the request is created. The book and the user are filled in
+ * by the stage that first looks them up, so later stages reuse them instead of fetching them again.
+ * A request belongs to one operation and each stage hands it to the next one through an executor or a future,
+ * which publishes it safely, so it needs no synchronization of its own.
+ */
+final class BookRequest {
+
+    // The International Standard Book Number of the book, as given by the caller.
+    private final String ISBN;
+    // The Id of the user, as given by the caller.
+    private final String userId;
+    // The book, once looked up.
+    private Book book;
+    // The user, once looked up.
+    private User user;
+
+    private BookRequest(String ISBN, String userId) {
+        this.ISBN = ISBN;
+        this.userId = userId;
+    }
+
+    /**
+     * Validates the inputs of a request.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user.
+     * @return The validated request.
+     * @throws IllegalArgumentException If the ISBN or the user Id is not valid.
+     */
+    static BookRequest validate(String ISBN, String userId) {
+        // Validate the ISBN. If it's invalid, throw an exception.
+        if (!IsbnValidator.isValid(ISBN)) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+
+        // Validate the user Id format (should be a 12-digit number).
+        // If it's invalid, throw an exception.
+        if (!UserIdValidator.isValid(userId)) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        return new BookRequest(ISBN, userId);
+    }
+
+    String getISBN() {
+        return ISBN;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    Book getBook() {
+        return book;
+    }
+
+    void setBook(Book book) {
+        this.book = book;
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+    }
+}
@@ -0,0 +1,135 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.LongIntHashMap;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Loads large numbers of books into the database, such as a nightly catalog feed.
+ * <p>
+ * Books are read in chunks. Each chunk is validated in parallel with the same rules as
+ * {@link Library#addBook(Book)}, deduplicated within the chunk, checked for existing entries with
+ * one batched lookup and written with one batched call. A duplicate of a book imported by an earlier
+ * chunk is therefore reported as already existing.
+ * Invalid rows are collected in an {@link ImportReport} instead of aborting the import.
+ * <p>
+ * A failure of the database service itself is rethrown; chunks written before it stay written.
+ */
+public class CatalogImporter {
+
+    // Number of books validated, looked up and written together when none is given.
+    public static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    // Service to interact with the database
+    private final DatabaseService databaseService;
+
+    // Number of books validated, looked up and written together.
+    private final int chunkSize;
+
+    /**
+     * Constructs an importer that writes in chunks of {@link #DEFAULT_CHUNK_SIZE} books.
+     *
+     * @param databaseService Service to interact with the database.
+     */
+    public CatalogImporter(DatabaseService databaseService) {
+        this(databaseService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an importer.
+     *
+     * @param databaseService Service to interact with the database.
+     * @param chunkSize       Number of books validated, looked up and written together.
+     */
+    public CatalogImporter(DatabaseService databaseService, int chunkSize) {
+        if (databaseService == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size.");
+        }
+        this.databaseService = databaseService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports all books of a stream. The stream is consumed but not closed.
+     *
+     * @param books The books to be imported.
+     * @return The summary of the import.
+     */
+    public ImportReport importBooks(Stream<Book> books) {
+        return importBooks(books.iterator());
+    }
+
+    /**
+     * Imports all remaining books of an iterator.
+     *
+     * @param books The books to be imported.
+     * @return The summary of the import.
+     */
+    public ImportReport importBooks(Iterator<Book> books) {
+        if (books == null) {
+            throw new IllegalArgumentException("Invalid book source.");
+        }
+        ImportReport report = new ImportReport();
+        // Packed ISBNs of the current chunk, so that spellings with and without hyphens count as duplicates.
+        LongIntHashMap seen = new LongIntHashMap(chunkSize);
+        Book[] chunk = new Book[chunkSize];
+        long firstRow = 0;
+        while (books.hasNext()) {
+            int size = 0;
+            while (size < chunkSize && books.hasNext()) {
+                chunk[size++] = books.next();
+            }
+            importChunk(chunk, size, firstRow, seen, report);
+            seen.clear();
+            firstRow += size;
+        }
+        return report;
+    }
+
+    private void importChunk(Book[] chunk, int size, long firstRow, LongIntHashMap seen, ImportReport report) {
+        // Validate every book of the chunk in parallel; validation has no side effects.
+        String[] errors = new String[size];
+        IntStream.range(0, size).parallel().forEach(i -> errors[i] = Library.validateBook(chunk[i]));
+
+        // Drop invalid books and books whose ISBN already appeared in this chunk.
+        List<String> ISBNs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (errors[i] == null && seen.put(IsbnValidator.pack(chunk[i].getISBN()), 0) != LongIntHashMap.MISSING) {
+                errors[i] = "Duplicate ISBN in import.";
+            }
+            if (errors[i] == null) {
+                ISBNs.add(chunk[i].getISBN());
+            }
+        }
+
+        // Check which of the remaining books already exist with a single request.
+        Map<String, Book> existing = ISBNs.isEmpty()
+                ? Collections.<String, Book>emptyMap()
+                : databaseService.getBooksByISBN(ISBNs);
+
+        List<Book> accepted = new ArrayList<>(ISBNs.size());
+        for (int i = 0; i < size; i++) {
+            if (errors[i] == null && existing.containsKey(chunk[i].getISBN())) {
+                errors[i] = "Book already exists.";
+            }
+            if (errors[i] == null) {
+                accepted.add(chunk[i]);
+            } else {
+                report.rejected(firstRow + i, chunk[i], errors[i]);
+            }
+            chunk[i] = null;
+        }
+
+        // Write the chunk with a single request.
+        if (!accepted.isEmpty()) {
+            databaseService.addBooks(accepted);
+            report.imported(accepted.size());
+        }
+    }
+}
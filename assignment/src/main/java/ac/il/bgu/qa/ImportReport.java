@@ -0,0 +1,92 @@
+package ac.il.bgu.qa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summarizes a bulk catalog import: how many books were added and which rows were rejected and why.
+ */
+public class ImportReport {
+
+    // Number of books written to the database.
+    private long imported;
+    // Rows that were not imported, in input order.
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    void imported(int count) {
+        imported += count;
+    }
+
+    void rejected(long row, Book book, String reason) {
+        rejections.add(new Rejection(row, book == null ? null : book.getISBN(), reason));
+    }
+
+    /**
+     * Retrieves the number of books that were added to the database.
+     *
+     * @return The number of imported books.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Retrieves the rows that were not imported.
+     *
+     * @return The rejected rows, in input order.
+     */
+    public List<Rejection> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    /**
+     * Represents a row of the import that was not added to the database.
+     */
+    public static class Rejection {
+        // Zero-based position of the row in the input.
+        private final long row;
+        // The ISBN of the rejected book, or null if the row held no book.
+        private final String ISBN;
+        // Why the row was rejected, using the same messages as Library.addBook.
+        private final String reason;
+
+        Rejection(long row, String ISBN, String reason) {
+            this.row = row;
+            this.ISBN = ISBN;
+            this.reason = reason;
+        }
+
+        /**
+         * Retrieves the position of the row in the input.
+         *
+         * @return The zero-based row number.
+         */
+        public long getRow() {
+            return row;
+        }
+
+        /**
+         * Retrieves the ISBN of the rejected book.
+         *
+         * @return The ISBN as given in the input, or null if the row held no book.
+         */
+        public String getISBN() {
+            return ISBN;
+        }
+
+        /**
+         * Retrieves why the row was rejected.
+         *
+         * @return The rejection reason.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + row + " (" + ISBN + "): " + reason;
+        }
+    }
+}
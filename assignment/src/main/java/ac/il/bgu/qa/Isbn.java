@@ -0,0 +1,110 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.utils.IsbnValidator;
+
+/**
+ * Represents a validated ISBN-13 in canonical form.
+ * <p>
+ * The 13 digits are packed into a single {@code long}, so hyphenated and plain
+ * spellings of the same ISBN are equal and share the same primitive key.
+ */
+public final class Isbn implements Comparable<Isbn> {
+
+    // The numeric value of the 13 ISBN digits.
+    private final long value;
+
+    private Isbn(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Parses an ISBN-13, ignoring hyphens.
+     *
+     * @param isbn The International Standard Book Number to be parsed.
+     * @return The canonical ISBN.
+     * @throws IllegalArgumentException If the input is not a valid ISBN-13.
+     */
+    public static Isbn of(CharSequence isbn) {
+        long packed = IsbnValidator.pack(isbn);
+        if (packed == IsbnValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return new Isbn(packed);
+    }
+
+    /**
+     * Wraps a packed ISBN-13.
+     *
+     * @param packed The numeric value of the 13 ISBN digits.
+     * @return The canonical ISBN.
+     * @throws IllegalArgumentException If the value is not a valid ISBN-13.
+     */
+    public static Isbn valueOf(long packed) {
+        if (!IsbnValidator.isValid(packed)) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return new Isbn(packed);
+    }
+
+    /**
+     * Packs an ISBN-13 into a primitive key without allocating.
+     *
+     * @param isbn The International Standard Book Number to be packed.
+     * @return The packed key, or {@link IsbnValidator#INVALID} if the ISBN is not valid.
+     */
+    public static long pack(CharSequence isbn) {
+        return IsbnValidator.pack(isbn);
+    }
+
+    /**
+     * Formats a packed ISBN-13 as its 13 digits, without hyphens.
+     *
+     * @param packed The numeric value of the 13 ISBN digits.
+     * @return The canonical String form of the ISBN.
+     */
+    public static String toString(long packed) {
+        if (packed < 0 || packed > IsbnValidator.MAX_PACKED) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        char[] digits = new char[IsbnValidator.LENGTH];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Retrieves the packed value of the ISBN.
+     *
+     * @return The numeric value of the 13 ISBN digits.
+     */
+    public long longValue() {
+        return value;
+    }
+
+    @Override
+    public int compareTo(Isbn other) {
+        return Long.compare(value, other.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Isbn && ((Isbn) o).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    /**
+     * Retrieves the canonical form of the ISBN.
+     *
+     * @return The 13 ISBN digits, without hyphens.
+     */
+    @Override
+    public String toString() {
+        return toString(value);
+    }
+}
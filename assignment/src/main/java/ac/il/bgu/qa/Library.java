@@ -1,10 +1,24 @@
 package ac.il.bgu.qa;
 
+import ac.il.bgu.qa.concurrency.BorrowStrategy;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.metrics.DownstreamCall;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import ac.il.bgu.qa.metrics.Operation;
+import ac.il.bgu.qa.notification.Notification;
+import ac.il.bgu.qa.notification.NotificationDispatcher;
+import ac.il.bgu.qa.notification.RetryPolicy;
 import ac.il.bgu.qa.services.DatabaseService;
 import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.utils.AuthorValidator;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.UserIdValidator;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Represents a library which manages a collection of books and users.
@@ -17,10 +31,71 @@ public class Library {
     // Service to fetch reviews for a book
     private final ReviewService reviewService;
 
+    // Held across each fetch from and close of the review service, which may run on dispatcher threads
+    private final Object reviewLock = new Object();
+
+    // Dispatcher for asynchronous notifications; null until first use if the library owns it
+    private volatile NotificationDispatcher notificationDispatcher;
+
+    // Commit action for batch operations, which record their transactions in one request afterwards
+    private static final Runnable NO_COMMIT = () -> { };
+
+    // Strategy that changes a book's borrow state and records it in the database
+    private final BorrowStrategy borrowStrategy;
+
+    // Receives the latency, failure and retry measurements of every operation
+    private final LibraryMetrics metrics;
+
     // Constructor for Library, initializes both services
     public Library(DatabaseService databaseService, ReviewService reviewService) {
+        this(databaseService, reviewService, new SequentialBorrowStrategy());
+    }
+
+    /**
+     * Constructs a library that borrows and returns books through the given strategy.
+     * Use a {@link LockFreeBorrowStrategy} to make borrow and return atomic per book
+     * when the library is shared between threads.
+     *
+     * @param databaseService Service to interact with the database.
+     * @param reviewService   Service to fetch reviews for a book.
+     * @param borrowStrategy  Strategy that changes a book's borrow state.
+     */
+    public Library(DatabaseService databaseService, ReviewService reviewService, BorrowStrategy borrowStrategy) {
+        this(databaseService, reviewService, borrowStrategy, null);
+    }
+
+    /**
+     * Constructs a library that sends asynchronous notifications through the given dispatcher.
+     *
+     * @param databaseService        Service to interact with the database.
+     * @param reviewService          Service to fetch reviews for a book.
+     * @param borrowStrategy         Strategy that changes a book's borrow state.
+     * @param notificationDispatcher Dispatcher for asynchronous notifications, or null for a dispatcher of
+     *                               this library's own, created on first use.
+     */
+    public Library(DatabaseService databaseService, ReviewService reviewService, BorrowStrategy borrowStrategy,
+                   NotificationDispatcher notificationDispatcher) {
+        this(databaseService, reviewService, borrowStrategy, notificationDispatcher, LibraryMetrics.NOOP);
+    }
+
+    /**
+     * Constructs a library that reports its measurements to the given metrics.
+     *
+     * @param databaseService        Service to interact with the database.
+     * @param reviewService          Service to fetch reviews for a book.
+     * @param borrowStrategy         Strategy that changes a book's borrow state.
+     * @param notificationDispatcher Dispatcher for asynchronous notifications, or null for a dispatcher of
+     *                               this library's own, created on first use.
+     * @param metrics                Receives operation latencies, failures, retries and downstream call
+     *                               latencies; {@link LibraryMetrics#NOOP} to record nothing.
+     */
+    public Library(DatabaseService databaseService, ReviewService reviewService, BorrowStrategy borrowStrategy,
+                   NotificationDispatcher notificationDispatcher, LibraryMetrics metrics) {
         this.databaseService = databaseService;
         this.reviewService = reviewService;
+        this.borrowStrategy = borrowStrategy;
+        this.notificationDispatcher = notificationDispatcher;
+        this.metrics = metrics != null ? metrics : LibraryMetrics.NOOP;
     }
 
     /**
@@ -29,25 +104,51 @@ public class Library {
      * @param book The book to be added.
      */
     public void addBook(Book book) {
-        // Multiple checks to validate the book object's properties
+        long start = metrics.startTimer();
+        try {
+            // Multiple checks to validate the book object's properties
+            String error = validateBook(book);
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+
+            // If book already exists in the database, throw exception
+            if (fetchBook(book.getISBN()) != null)
+                throw new IllegalArgumentException("Book already exists.");
+
+            // If all checks pass, add the book to the database
+            long addStart = metrics.startTimer();
+            databaseService.addBook(book.getISBN(), book);
+            metrics.recordDownstream(DownstreamCall.DATABASE_ADD_BOOK, addStart);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.ADD_BOOK, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.ADD_BOOK, start);
+        }
+    }
+
+    /**
+     * Validates the properties of a book about to be added to the collection.
+     * Shared with the bulk catalog import and the asynchronous library so they reject the same books for the
+     * same reasons.
+     *
+     * @param book The book to be validated.
+     * @return The reason the book is invalid, or null if it is valid.
+     */
+    static String validateBook(Book book) {
         if (book == null) {
-            throw new IllegalArgumentException("Invalid book.");
-        } else if (!isISBNValid(book.getISBN())){
-            throw new IllegalArgumentException("Invalid ISBN.");
+            return "Invalid book.";
+        } else if (!IsbnValidator.isValid(book.getISBN())) {
+            return "Invalid ISBN.";
         } else if (book.getTitle() == null || book.getTitle().equals("")) {
-            throw new IllegalArgumentException("Invalid title.");
-        } else if (!isAuthorValid(book.getAuthor())) {
-            throw new IllegalArgumentException("Invalid author.");
+            return "Invalid title.";
+        } else if (!AuthorValidator.isValid(book.getAuthor())) {
+            return "Invalid author.";
         } else if (book.isBorrowed()) {
-            throw new IllegalArgumentException("Book with invalid borrowed state.");
+            return "Book with invalid borrowed state.";
         }
-
-        // If book already exists in the database, throw exception
-        if (databaseService.getBookByISBN(book.getISBN()) != null)
-            throw new IllegalArgumentException("Book already exists.");
-
-        // If all checks pass, add the book to the database
-        databaseService.addBook(book.getISBN(), book);
+        return null;
     }
 
     /**
@@ -57,192 +158,464 @@ public class Library {
      *  @return true if valid, false otherwise.
     */
     private boolean isISBNValid(String isbn) {
-        // Check if the ISBN is null, return false if it is
-        if (isbn == null) {
-            return false;
+        // Single-pass check that skips hyphens and verifies the ISBN-13 checksum without allocating.
+        return IsbnValidator.isValid(isbn);
+    }
+
+    /**
+     * Registers a user with the library.
+     *
+     * @param user The user to be registered.
+     */
+    public void registerUser(User user) {
+        long start = metrics.startTimer();
+        try {
+            // Multiple checks to validate the user object's properties.
+            String error = validateUser(user);
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+
+            // Before registering, check if a user with the given Id already exists.
+            // If such a user is found, throw an exception.
+            if (fetchUser(user.getId()) != null)
+                throw new IllegalArgumentException("User already exists.");
+
+            // If all checks have passed, call the database service to register the user.
+            long registerStart = metrics.startTimer();
+            databaseService.registerUser(user.getId(), user);
+            metrics.recordDownstream(DownstreamCall.DATABASE_REGISTER_USER, registerStart);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.REGISTER_USER, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.REGISTER_USER, start);
         }
+    }
 
-        // Remove any hyphen characters from the ISBN for standardization
-        isbn = isbn.replaceAll("-", "");
 
-        // Check if the sanitized ISBN is of length 13 and if contains only digits
-        if (isbn.length() != 13 || !isbn.matches("\\d+")) {
-            return false;
+    /**
+     * Validates the properties of a user about to be registered.
+     * Shared with the asynchronous library so both reject the same users for the same reasons.
+     *
+     * @param user The user to be validated.
+     * @return The reason the user is invalid, or null if it is valid.
+     */
+    static String validateUser(User user) {
+        if (user == null) {
+            return "Invalid user.";
+        } else if (!UserIdValidator.isValid(user.getId())) {
+            return "Invalid user Id.";
+        } else if (user.getName() == null || user.getName().equals("")) {
+            return "Invalid user name.";
+        } else if (user.getNotificationService() == null) {
+            return "Invalid notification service.";
         }
+        return null;
+    }
 
-        // Calculate the sum based on the ISBN-13 rules:
-        // Odd position numbers are multiplied by 1
-        // Even position numbers are multiplied by 3
-        int sum = 0;
-        for (int i = 0; i < 12; i++) {
-            int digit = Integer.parseInt(String.valueOf(isbn.charAt(i)));
-            if (i % 2 == 0) {
-                sum += digit;
-            } else {
-                sum += digit * 3;
+    /**
+     * Borrows a book for a user.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user borrowing the book.
+     */
+    public void borrowBook(String ISBN, String userId) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the ISBN. If it's invalid, throw an exception.
+            if (!isISBNValid(ISBN)) {
+                throw new IllegalArgumentException("Invalid ISBN.");
             }
-        }
 
-        // Calculate the check digit
-        int checkDigit = 10 - (sum % 10);
-        if (checkDigit == 10) {
-            checkDigit = 0;
+            // Mark the book as borrowed, failing if it is already borrowed, and record the borrowing
+            // transaction in the database by associating the book's ISBN with the user's Id. The book and
+            // the user are looked up through the strategy, so it can guard the lookups with the change.
+            borrowStrategy.borrow(ISBN, () -> {
+                // Retrieve the book associated with the ISBN from the database.
+                Book book = fetchBook(ISBN);
+
+                // If no book is found for the given ISBN, throw an exception.
+                if (book == null) {
+                    throw new BookNotFoundException("Book not found!");
+                }
+
+                // Validate the user Id's format (should be a 12-digit number).
+                // If it's invalid, throw an exception.
+                if (!UserIdValidator.isValid(userId)) {
+                    throw new IllegalArgumentException("Invalid user Id.");
+                }
+
+                // Check if the user Id's corresponds to a registered user in the database.
+                // If not, throw an exception indicating the user is not registered.
+                if (fetchUser(userId) == null) {
+                    throw new UserNotRegisteredException("User not found!");
+                }
+                return book;
+            }, () -> commitBorrow(ISBN, userId));
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.BORROW_BOOK, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.BORROW_BOOK, start);
         }
-
-        // Check if the calculated check digit matches the last digit of the ISBN
-        return checkDigit == Integer.parseInt(String.valueOf(isbn.charAt(12)));
     }
 
     /**
-     *  Validates if author name given as input is of valid format.
+     * Returns a previously borrowed book.
      *
-     *  @param name The name of the author.
-     *  @return true if valid, false otherwise.
-    */
-    private boolean isAuthorValid(String name) {
-        /*
-         * Three key criteria for a valid author name:
-         * 1) The name should only consist of alphabetic characters, hyphens, spaces, dots, and apostrophes.
-         * 2) The name should start and end with an alphabetic character.
-         * 3) The name should not contain consecutive special characters like "--" or "''".
-         */
-
-        // If the name is null or empty, it's invalid.
-        if (name == null || name.isEmpty()) {
-            return false;
-        }
+     * @param ISBN The International Standard Book Number of the book.
+     */
+    //gili
+    public void returnBook(String ISBN) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the ISBN. If it's not valid, throw an exception.
+            if (!isISBNValid(ISBN)) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
 
-        // Ensure the name starts and finishes with an alphabetic character.
-        if (!Character.isLetter(name.charAt(0)) || !Character.isLetter(name.charAt(name.length() - 1))) {
-            return false;
+            // Change the status of the book to not borrowed, failing if it wasn't borrowed,
+            // and update the database to reflect the returned status of the book.
+            borrowStrategy.returnBook(ISBN, () -> {
+                // Retrieve the book associated with the ISBN from the database.
+                Book book = fetchBook(ISBN);
+
+                // If no book is found for the given ISBN, throw a book not found exception.
+                if (book == null) {
+                    throw new BookNotFoundException("Book not found!");
+                }
+                return book;
+            }, () -> commitReturn(ISBN));
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.RETURN_BOOK, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.RETURN_BOOK, start);
         }
+    }
 
-        // Check the content of the name for valid characters and consecutive special characters.
-        for (int i = 0; i < name.length() - 1; i++) {
-            char current = name.charAt(i);
-            char next = name.charAt(i + 1);
+    /**
+     * Lists the books a user currently has on loan.
+     *
+     * @param userId The Id of the user.
+     * @return The borrowed books, in the order they were borrowed.
+     * @throws IllegalArgumentException      If the user Id is not valid.
+     * @throws UserNotRegisteredException    If no user with the given Id is registered.
+     * @throws UnsupportedOperationException If the database service does not track loans; see
+     *                                       {@link DatabaseService#getLoansByUserId(String)}.
+     */
+    public List<Book> getLoans(String userId) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the user Id's format (should be a 12-digit number).
+            if (!UserIdValidator.isValid(userId)) {
+                throw new IllegalArgumentException("Invalid user Id.");
+            }
 
-            // Check if the current character is not one of the valid characters.
-            if (!Character.isLetter(current) && current != '-' && current != ' ' && current != '\'' && current != '.') {
-                return false;
+            // Check that the user is registered.
+            if (fetchUser(userId) == null) {
+                throw new UserNotRegisteredException("User not found!");
             }
 
-            // Check for consecutive special characters.
-            if ((current == '-' && next == '-')
-                    || (current == '\'' && next == '\'')) {
-                return false;
+            // Look the loans up in the database's loan index, then fetch the books in one request.
+            List<String> ISBNs;
+            long loansStart = metrics.startTimer();
+            try {
+                ISBNs = databaseService.getLoansByUserId(userId);
+            } finally {
+                metrics.recordDownstream(DownstreamCall.DATABASE_GET_LOANS, loansStart);
+            }
+            if (ISBNs.isEmpty()) {
+                return new ArrayList<>();
             }
+            Map<String, Book> books = fetchBooks(ISBNs);
+            List<Book> loans = new ArrayList<>(ISBNs.size());
+            for (String ISBN : ISBNs) {
+                Book book = books.get(ISBN);
+                if (book != null) {
+                    loans.add(book);
+                }
+            }
+            return loans;
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.GET_LOANS, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.GET_LOANS, start);
         }
-
-        // If all checks have passed, the author name is valid.
-        return true;
     }
 
-
     /**
-     * Registers a user with the library.
+     * Finds the user currently borrowing a book.
      *
-     * @param user The user to be registered.
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The borrower, or null if the book is not borrowed.
+     * @throws IllegalArgumentException      If the ISBN is not valid.
+     * @throws BookNotFoundException         If no book with the given ISBN exists.
+     * @throws UnsupportedOperationException If the database service does not track loans; see
+     *                                       {@link DatabaseService#getBorrowerId(String)}.
      */
-    public void registerUser(User user) {
-        // Multiple checks to validate the user object's properties.
-        if (user == null) {
-            throw new IllegalArgumentException("Invalid user.");
-        } else if (user.getId() == null || !user.getId().matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        } else if (user.getName() == null || user.getName().equals("")) {
-            throw new IllegalArgumentException("Invalid user name.");
-        } else if (user.getNotificationService() == null) {
-            throw new IllegalArgumentException("Invalid notification service.");
-        }
+    public User getBorrower(String ISBN) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the ISBN. If it's invalid, throw an exception.
+            if (!isISBNValid(ISBN)) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
 
-        // Before registering, check if a user with the given Id already exists.
-        // If such a user is found, throw an exception.
-        if (databaseService.getUserById(user.getId()) != null)
-            throw new IllegalArgumentException("User already exists.");
+            // If no book is found for the given ISBN, throw an exception.
+            if (fetchBook(ISBN) == null) {
+                throw new BookNotFoundException("Book not found!");
+            }
 
-        // If all checks have passed, call the database service to register the user.
-        databaseService.registerUser(user.getId(), user);
+            // Look the borrower up in the database's loan index.
+            String userId;
+            long borrowerStart = metrics.startTimer();
+            try {
+                userId = databaseService.getBorrowerId(ISBN);
+            } finally {
+                metrics.recordDownstream(DownstreamCall.DATABASE_GET_BORROWER, borrowerStart);
+            }
+            return userId == null ? null : fetchUser(userId);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.GET_BORROWER, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.GET_BORROWER, start);
+        }
     }
 
-
     /**
-     * Borrows a book for a user.
+     * Borrows several books for a user, such as a self-checkout basket.
+     * <p>
+     * All inputs are validated up front, the books are fetched with one batched database call and the
+     * borrowing transactions are recorded with one batched call. Books that cannot be borrowed are
+     * reported in the result instead of aborting the whole batch. A book listed more than once is
+     * borrowed and reported once. The lookups, the borrowing and the batched commit run as one
+     * {@link BorrowStrategy#batch(Collection, Runnable) batch} of the borrow strategy.
      *
-     * @param ISBN   The International Standard Book Number of the book.
-     * @param userId The Id of the user borrowing the book.
+     * @param ISBNs  The International Standard Book Numbers of the books.
+     * @param userId The Id of the user borrowing the books.
+     * @return The per-book outcome of the batch.
      */
-    public void borrowBook(String ISBN, String userId) {
+    public BatchResult borrowBooks(Collection<String> ISBNs, String userId) {
+        long start = metrics.startTimer();
+        try {
+            BatchResult result = new BatchResult();
 
-        // Validate the ISBN. If it's invalid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
-        }
+            // Validate the ISBN list and each ISBN. Invalid ISBNs are reported, not thrown.
+            List<String> validISBNs = validateISBNs(ISBNs, result);
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+            // Validate the user Id's format (should be a 12-digit number).
+            // If it's invalid, throw an exception since no book can be borrowed.
+            if (!UserIdValidator.isValid(userId)) {
+                throw new IllegalArgumentException("Invalid user Id.");
+            }
 
-        // If no book is found for the given ISBN, throw an exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            // Fetch, mark and record the books as one unit of the borrow strategy.
+            borrowStrategy.batch(validISBNs, () -> borrowFetched(validISBNs, userId, result));
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.BORROW_BOOKS, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.BORROW_BOOKS, start);
         }
+    }
+
+    /**
+     * Returns several previously borrowed books.
+     * <p>
+     * All ISBNs are validated up front, the books are fetched with one batched database call and the
+     * returns are recorded with one batched call. Books that cannot be returned are reported in the
+     * result instead of aborting the whole batch. A book listed more than once is returned and reported once.
+     * The lookups, the returns and the batched commit run as one
+     * {@link BorrowStrategy#batch(Collection, Runnable) batch} of the borrow strategy.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books.
+     * @return The per-book outcome of the batch.
+     */
+    public BatchResult returnBooks(Collection<String> ISBNs) {
+        long start = metrics.startTimer();
+        try {
+            BatchResult result = new BatchResult();
+
+            // Validate the ISBN list and each ISBN. Invalid ISBNs are reported, not thrown.
+            List<String> validISBNs = validateISBNs(ISBNs, result);
 
-        // Validate the user Id's format (should be a 12-digit number).
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
+            // Fetch, mark and record the books as one unit of the borrow strategy.
+            borrowStrategy.batch(validISBNs, () -> returnFetched(validISBNs, result));
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.RETURN_BOOKS, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.RETURN_BOOKS, start);
         }
+    }
+
+    // Fetches the books of a batch borrow, marks the available ones as borrowed and records them together.
+    private void borrowFetched(List<String> validISBNs, String userId, BatchResult result) {
+        // Retrieve all the books in a single request.
+        Map<String, Book> books = validISBNs.isEmpty()
+                ? Collections.<String, Book>emptyMap()
+                : fetchBooks(validISBNs);
 
         // Check if the user Id's corresponds to a registered user in the database.
         // If not, throw an exception indicating the user is not registered.
-        if (databaseService.getUserById(userId) == null) {
+        if (fetchUser(userId) == null) {
             throw new UserNotRegisteredException("User not found!");
         }
 
-        // If the book is already borrowed, throw an exception.
-        if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+        // Mark each available book as borrowed. The transactions are recorded together below.
+        List<String> borrowedISBNs = new ArrayList<>();
+        List<Book> borrowedBooks = new ArrayList<>();
+        for (String ISBN : validISBNs) {
+            Book book = books.get(ISBN);
+            if (book == null) {
+                result.failed(ISBN, new BookNotFoundException("Book not found!"));
+                continue;
+            }
+            try {
+                borrowStrategy.borrow(ISBN, book, NO_COMMIT);
+                borrowedISBNs.add(ISBN);
+                borrowedBooks.add(book);
+            } catch (BookAlreadyBorrowedException e) {
+                result.failed(ISBN, e);
+            }
+        }
+
+        // Record all the borrowing transactions in a single request.
+        // If that fails, none of the books is borrowed.
+        if (!borrowedISBNs.isEmpty()) {
+            try {
+                long commitStart = metrics.startTimer();
+                databaseService.borrowBooks(borrowedISBNs, userId);
+                metrics.recordDownstream(DownstreamCall.DATABASE_BORROW_BOOKS, commitStart);
+            } catch (RuntimeException e) {
+                for (Book book : borrowedBooks) {
+                    book.tryReturn();
+                }
+                throw e;
+            }
+        }
+        for (String ISBN : borrowedISBNs) {
+            result.succeeded(ISBN);
         }
+    }
 
-        // Mark the book as borrowed.
-        book.borrow();
+    // Fetches the books of a batch return, marks the borrowed ones as returned and records them together.
+    private void returnFetched(List<String> validISBNs, BatchResult result) {
+        // Retrieve all the books in a single request.
+        Map<String, Book> books = validISBNs.isEmpty()
+                ? Collections.<String, Book>emptyMap()
+                : fetchBooks(validISBNs);
+
+        // Mark each borrowed book as returned. The returns are recorded together below.
+        List<String> returnedISBNs = new ArrayList<>();
+        List<Book> returnedBooks = new ArrayList<>();
+        for (String ISBN : validISBNs) {
+            Book book = books.get(ISBN);
+            if (book == null) {
+                result.failed(ISBN, new BookNotFoundException("Book not found!"));
+                continue;
+            }
+            try {
+                borrowStrategy.returnBook(ISBN, book, NO_COMMIT);
+                returnedISBNs.add(ISBN);
+                returnedBooks.add(book);
+            } catch (BookNotBorrowedException e) {
+                result.failed(ISBN, e);
+            }
+        }
 
-        // Record the borrowing transaction in the database by associating the book's ISBN with the user's Id.
-        databaseService.borrowBook(ISBN, userId);
+        // Record all the returns in a single request. If that fails, none of the books is returned.
+        if (!returnedISBNs.isEmpty()) {
+            try {
+                long commitStart = metrics.startTimer();
+                databaseService.returnBooks(returnedISBNs);
+                metrics.recordDownstream(DownstreamCall.DATABASE_RETURN_BOOKS, commitStart);
+            } catch (RuntimeException e) {
+                for (Book book : returnedBooks) {
+                    book.tryBorrow();
+                }
+                throw e;
+            }
+        }
+        for (String ISBN : returnedISBNs) {
+            result.succeeded(ISBN);
+        }
     }
 
-    /**
-     * Returns a previously borrowed book.
-     *
-     * @param ISBN The International Standard Book Number of the book.
-     */
-    //gili
-    public void returnBook(String ISBN) {
-        
-        // Validate the ISBN. If it's not valid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+    // Retrieves a book from the database, timing the call.
+    private Book fetchBook(String ISBN) {
+        long start = metrics.startTimer();
+        try {
+            return databaseService.getBookByISBN(ISBN);
+        } finally {
+            metrics.recordDownstream(DownstreamCall.DATABASE_GET_BOOK, start);
         }
+    }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+    // Retrieves several books from the database in one request, timing the call.
+    private Map<String, Book> fetchBooks(List<String> ISBNs) {
+        long start = metrics.startTimer();
+        try {
+            return databaseService.getBooksByISBN(ISBNs);
+        } finally {
+            metrics.recordDownstream(DownstreamCall.DATABASE_GET_BOOKS, start);
+        }
+    }
 
-        // If no book is found for the given ISBN, throw a book not found exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+    // Retrieves a user from the database, timing the call.
+    private User fetchUser(String userId) {
+        long start = metrics.startTimer();
+        try {
+            return databaseService.getUserById(userId);
+        } finally {
+            metrics.recordDownstream(DownstreamCall.DATABASE_GET_USER, start);
         }
+    }
 
-        // Check if the book is currently borrowed. If not, it means it was never borrowed
-        // or it has already been returned, therefore throw an exception.
-        if (!book.isBorrowed()) {
-            throw new BookNotBorrowedException("Book wasn't borrowed!");
+    // Records a borrowing transaction in the database, timing the call.
+    private void commitBorrow(String ISBN, String userId) {
+        long start = metrics.startTimer();
+        try {
+            databaseService.borrowBook(ISBN, userId);
+        } finally {
+            metrics.recordDownstream(DownstreamCall.DATABASE_BORROW_BOOK, start);
         }
+    }
 
-        // Change the status of the book to not borrowed.
-        book.returnBook();
+    // Records a return in the database, timing the call.
+    private void commitReturn(String ISBN) {
+        long start = metrics.startTimer();
+        try {
+            databaseService.returnBook(ISBN);
+        } finally {
+            metrics.recordDownstream(DownstreamCall.DATABASE_RETURN_BOOK, start);
+        }
+    }
 
-        // Update the database to reflect the returned status of the book.
-        databaseService.returnBook(ISBN);
+    // Splits a batch into valid ISBNs and ISBNs reported as invalid. A book named more than once, in either
+    // spelling of its ISBN, is only kept the first time, so it is processed and reported once.
+    private List<String> validateISBNs(Collection<String> ISBNs, BatchResult result) {
+        if (ISBNs == null) {
+            throw new IllegalArgumentException("Invalid ISBN list.");
+        }
+        List<String> validISBNs = new ArrayList<>(ISBNs.size());
+        Set<Long> seen = new HashSet<>();
+        for (String ISBN : ISBNs) {
+            if (isISBNValid(ISBN)) {
+                if (seen.add(Isbn.pack(ISBN))) {
+                    validISBNs.add(ISBN);
+                }
+            } else {
+                result.failed(ISBN, new IllegalArgumentException("Invalid ISBN."));
+            }
+        }
+        return validISBNs;
     }
 
     /**
@@ -253,72 +626,153 @@ public class Library {
      */
     //gili
     public void notifyUserWithBookReviews(String ISBN, String userId) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the inputs, fetch the book, the user and the reviews, and build the message.
+            Notification notification = prepareReviewNotification(BookRequest.validate(ISBN, userId));
+
+            // Attempt to send the notification to the user. If it fails, retry up to 5 times.
+            int retryCount = 0;
+            while (retryCount < 5) {
+                try {
+                    long sendStart = metrics.startTimer();
+                    try {
+                        notification.getRecipient().sendNotification(notification.getMessage());
+                    } finally {
+                        metrics.recordDownstream(DownstreamCall.NOTIFICATION_SEND, sendStart);
+                    }
+                    return;
+                } catch (NotificationException e) {
+                    retryCount++;
+                    metrics.recordRetry(Operation.NOTIFY_USER_WITH_BOOK_REVIEWS);
+                    System.err.println("Notification failed! Retrying attempt " + retryCount + "/5");
+                }
+            }
 
-        // Validate the ISBN. If it's invalid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+            // If all retry attempts fail, throw a notification exception.
+            throw new NotificationException("Notification failed!");
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.NOTIFY_USER_WITH_BOOK_REVIEWS, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.NOTIFY_USER_WITH_BOOK_REVIEWS, start);
         }
+    }
 
-        // Validate the user Id format (should be a 12-digit number).
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        }
+    /**
+     * Notifies a user with the reviews of a specified book without blocking the caller.
+     * <p>
+     * The inputs are validated immediately. Fetching the book, the user and the reviews, and delivering
+     * the notification, happen on the notification dispatcher, which retries failed deliveries with
+     * exponential backoff instead of in a tight loop. The library fetches reviews and closes the review
+     * service for one request at a time, so the review service need not be thread-safe.
+     *
+     * @param ISBN   The ISBN of the book whose reviews are to be sent.
+     * @param userId The Id of the user to whom the reviews are to be sent.
+     * @return A future completed once the user was notified, or completed exceptionally with the exception
+     *         {@link #notifyUserWithBookReviews(String, String)} would have thrown.
+     */
+    public CompletableFuture<Void> notifyUserWithBookReviewsAsync(String ISBN, String userId) {
+        BookRequest request = BookRequest.validate(ISBN, userId);
+        return dispatcher().dispatch(() -> prepareReviewNotification(request));
+    }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+    // Builds the review notification for a validated request, ready to be sent. The book and the user are
+    // only fetched if an earlier stage of the request has not already done so.
+    private Notification prepareReviewNotification(BookRequest request) {
+        Book book = resolveBook(request);
+        User user = resolveUser(request);
 
-        // If no book is found for the given ISBN, throw a book not found exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+        // Fetch the list of reviews for the specified book using the review service. Preparations run on
+        // dispatcher threads, so one fetch-then-close is allowed at a time, and a close never tears down
+        // another request's fetch.
+        List<String> reviews;
+        synchronized (reviewLock) {
+            long reviewsStart = metrics.startTimer();
+            try {
+                reviews = reviewService.getReviewsForBook(request.getISBN());
+
+                // If no reviews are found or the review list is empty, throw an exception.
+                if (reviews == null || reviews.isEmpty()) {
+                    throw new NoReviewsFoundException("No reviews found!");
+                }
+            } catch (ReviewException e) {
+                // If there's an issue fetching the reviews, throw a service unavailable exception.
+                throw new ReviewServiceUnavailableException("Review service unavailable!");
+            } finally {
+                metrics.recordDownstream(DownstreamCall.REVIEW_GET_REVIEWS, reviewsStart);
+
+                // Always close the review service connection after attempting to fetch the reviews.
+                long closeStart = metrics.startTimer();
+                reviewService.close();
+                metrics.recordDownstream(DownstreamCall.REVIEW_CLOSE, closeStart);
+            }
         }
 
-        // Retrieve the user associated with the user Id from the database.
-        User user = databaseService.getUserById(userId);
-
-        // If the user is not found in the database, throw an exception.
-        if (user == null) {
-            throw new UserNotRegisteredException("User not found!");
-        }
+        // Construct the notification message containing the book's title and its reviews.
+        String notificationMessage = "Reviews for '" + book.getTitle() + "':\n" + String.join("\n", reviews);
+        return new Notification(user, notificationMessage);
+    }
 
-        // Fetch the list of reviews for the specified book using the review service.
-        List<String> reviews;
-        try {
-            reviews = reviewService.getReviewsForBook(ISBN);
+    // Retrieves the book of a request from the database, unless an earlier stage already did.
+    private Book resolveBook(BookRequest request) {
+        Book book = request.getBook();
+        if (book == null) {
+            // Retrieve the book associated with the ISBN from the database.
+            book = fetchBook(request.getISBN());
 
-            // If no reviews are found or the review list is empty, throw an exception.
-            if (reviews == null || reviews.isEmpty()) {
-                throw new NoReviewsFoundException("No reviews found!");
+            // If no book is found for the given ISBN, throw a book not found exception.
+            if (book == null) {
+                throw new BookNotFoundException("Book not found!");
             }
-        } catch (ReviewException e) {
-            // If there's an issue fetching the reviews, throw a service unavailable exception.
-            throw new ReviewServiceUnavailableException("Review service unavailable!");
-        } finally {
-            // Always close the review service connection after attempting to fetch the reviews.
-            reviewService.close();
+            request.setBook(book);
         }
+        return book;
+    }
 
-        // Construct the notification message containing the book's title and its reviews.
-        String notificationMessage = "Reviews for '" + book.getTitle() + "':\n" + String.join("\n", reviews);
+    // Retrieves the user of a request from the database, unless an earlier stage already did.
+    private User resolveUser(BookRequest request) {
+        User user = request.getUser();
+        if (user == null) {
+            // Retrieve the user associated with the user Id from the database.
+            user = fetchUser(request.getUserId());
 
-        // Attempt to send the notification to the user. If it fails, retry up to 5 times.
-        int retryCount = 0;
-        while (retryCount < 5) {
-            try {
-                user.sendNotification(notificationMessage);
-                return;
-            } catch (NotificationException e) {
-                retryCount++;
-                System.err.println("Notification failed! Retrying attempt " + retryCount + "/5");
+            // If the user is not found in the database, throw an exception.
+            if (user == null) {
+                throw new UserNotRegisteredException("User not found!");
             }
+            request.setUser(user);
         }
+        return user;
+    }
 
-        // If all retry attempts fail, throw a notification exception.
-        throw new NotificationException("Notification failed!");
+    // Retrieves the library's dispatcher, creating its own on first use so that the backlog of an unrelated
+    // library can never delay or drop this one's notifications.
+    private NotificationDispatcher dispatcher() {
+        NotificationDispatcher dispatcher = notificationDispatcher;
+        if (dispatcher == null) {
+            synchronized (this) {
+                dispatcher = notificationDispatcher;
+                if (dispatcher == null) {
+                    dispatcher = NotificationDispatcher.create(Runtime.getRuntime().availableProcessors(),
+                            1_024, RetryPolicy.DEFAULT);
+                    notificationDispatcher = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
     }
 
     /**
      * Fetches a book by its ISBN and notifies the user with its reviews.
+     * <p>
+     * The book is returned as soon as it is fetched; see {@link #lookupBook(String, String)} for how the
+     * notification is sent. A failed or dropped notification is reported but does not affect the result.
+     * <p>
+     * The notification no longer goes through {@link #notifyUserWithBookReviews(String, String)}, so
+     * overriding that method does not change this one. It is retried by the dispatcher's
+     * {@link ac.il.bgu.qa.notification.RetryPolicy} instead of five immediate attempts, and the user and the
+     * reviews are only fetched on the dispatcher's thread, after the book was returned.
      *
      * @param ISBN   The International Standard Book Number of the book to be fetched.
      * @param userId The Id of the user to be notified with the book's reviews.
@@ -326,40 +780,58 @@ public class Library {
      */
     // gili
     public Book getBookByISBN(String ISBN, String userId) {
-        // Validate the ISBN. If it's invalid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
-        }
-
-        // Validate the user Id format (should be a 12-digit number). 
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        }
+        return lookupBook(ISBN, userId).getBook();
+    }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+    /**
+     * Fetches a book by its ISBN and starts notifying the user with its reviews, without waiting for the
+     * notification.
+     * <p>
+     * The ISBN and user Id are validated and the book is fetched once. The notification reuses that book and is
+     * prepared and sent as a fire-and-forget task on the notification dispatcher, which holds a bounded number of
+     * them. When it is full the notification is dropped rather than delaying the caller. Failed and dropped
+     * notifications are recorded as the {@code notification:failed} and {@code notification:dropped} events.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be fetched.
+     * @param userId The Id of the user to be notified with the book's reviews.
+     * @return The book, with a handle on the outcome of the notification.
+     * @throws IllegalArgumentException     If the ISBN or the user Id is not valid.
+     * @throws BookNotFoundException        If no book with the given ISBN exists.
+     * @throws BookAlreadyBorrowedException If the book is already borrowed.
+     */
+    public BookLookup lookupBook(String ISBN, String userId) {
+        long start = metrics.startTimer();
+        try {
+            // Validate the ISBN and the user Id format once for the whole request.
+            BookRequest request = BookRequest.validate(ISBN, userId);
 
-        // If no book is found for the given ISBN, throw a book not found exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
-        }
+            // Retrieve the book associated with the ISBN from the database, failing if there is none.
+            Book book = resolveBook(request);
 
-        // If the book is already borrowed, throw an exception.
-        if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book was already borrowed!");
-        }
+            // If the book is already borrowed, throw an exception.
+            if (book.isBorrowed()) {
+                throw new BookAlreadyBorrowedException("Book was already borrowed!");
+            }
 
-        // Attempt to notify the user with the book's reviews.
-        // This step is optional, so even if it fails, the book should still be returned.
-        try {
-            notifyUserWithBookReviews(ISBN, userId);
-        } catch (Exception e) {
-            System.out.println("Notification failed!");
+            // Notify the user with the book's reviews in the background.
+            // This step is optional, so even if it fails, the book should still be returned.
+            CompletableFuture<Void> notification = dispatcher().dispatch(() -> prepareReviewNotification(request))
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            metrics.recordEvent(error instanceof RejectedExecutionException
+                                    ? "notification:dropped" : "notification:failed");
+                            System.out.println("Notification failed!");
+                        }
+                    });
+
+            // Return the retrieved book.
+            return new BookLookup(book, notification);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(Operation.GET_BOOK_BY_ISBN, e);
+            throw e;
+        } finally {
+            metrics.recordLatency(Operation.GET_BOOK_BY_ISBN, start);
         }
-
-        // Return the retrieved book.
-        return book;
     }
 }
 
@@ -0,0 +1,96 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.concurrency.BorrowStrategy;
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
+import ac.il.bgu.qa.search.CatalogIndex;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.IndexingDatabaseService;
+import ac.il.bgu.qa.utils.AuthorValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a library whose catalog can be searched by author and by title prefix.
+ * <p>
+ * It offers the same operations as {@link Library}. Books are stored through an
+ * {@link IndexingDatabaseService}, so every book added by {@link #addBook(Book)} is indexed as well.
+ * Pass the same service to a {@link CatalogImporter} to index bulk imports.
+ */
+public class SearchableLibrary extends Library {
+
+    // The database service maintaining the catalog index
+    private final IndexingDatabaseService indexingDatabaseService;
+
+    /**
+     * Constructs a searchable library.
+     *
+     * @param indexingDatabaseService Service to interact with the database, maintaining the index.
+     * @param reviewService           Service to fetch reviews for a book.
+     */
+    public SearchableLibrary(IndexingDatabaseService indexingDatabaseService, ReviewService reviewService) {
+        this(indexingDatabaseService, reviewService, new SequentialBorrowStrategy());
+    }
+
+    /**
+     * Constructs a searchable library that borrows and returns books through the given strategy.
+     *
+     * @param indexingDatabaseService Service to interact with the database, maintaining the index.
+     * @param reviewService           Service to fetch reviews for a book.
+     * @param borrowStrategy          Strategy that changes a book's borrow state.
+     */
+    public SearchableLibrary(IndexingDatabaseService indexingDatabaseService, ReviewService reviewService,
+                             BorrowStrategy borrowStrategy) {
+        super(indexingDatabaseService, reviewService, borrowStrategy);
+        this.indexingDatabaseService = indexingDatabaseService;
+    }
+
+    /**
+     * Finds a page of the books by an author, in the order they were added.
+     *
+     * @param author The name of the author; compared as {@link CatalogIndex#normalizeAuthor(String)} describes.
+     * @param offset The number of matching books to skip.
+     * @param limit  The maximum number of books to return.
+     * @return The matching books.
+     * @throws IllegalArgumentException If the author name is not valid, or the page is not.
+     */
+    public List<Book> findByAuthor(String author, int offset, int limit) {
+        if (!AuthorValidator.isValid(author)) {
+            throw new IllegalArgumentException("Invalid author.");
+        }
+        return fetchAll(indexingDatabaseService.getIndex().findByAuthor(author, offset, limit));
+    }
+
+    /**
+     * Finds a page of the books whose title starts with a prefix, ordered by title.
+     *
+     * @param prefix The start of the title; compared as {@link CatalogIndex#normalizeTitle(String)} describes.
+     * @param offset The number of matching books to skip.
+     * @param limit  The maximum number of books to return.
+     * @return The matching books.
+     * @throws IllegalArgumentException If the prefix is empty, or the page is not valid.
+     */
+    public List<Book> searchTitlePrefix(String prefix, int offset, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid title prefix.");
+        }
+        return fetchAll(indexingDatabaseService.getIndex().searchTitlePrefix(prefix, offset, limit));
+    }
+
+    // Fetches the books with one batched request, keeping the order of the index.
+    private List<Book> fetchAll(List<String> ISBNs) {
+        if (ISBNs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Book> books = indexingDatabaseService.getBooksByISBN(ISBNs);
+        List<Book> result = new ArrayList<>(ISBNs.size());
+        for (String ISBN : ISBNs) {
+            Book book = books.get(ISBN);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.concurrency.BorrowStrategy;
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.ShardedDatabaseService;
+
+import java.util.List;
+
+/**
+ * Represents a library whose books and users are partitioned across several database shards.
+ * <p>
+ * It offers the same operations as {@link Library}. Books are routed by ISBN and users by user Id through
+ * a {@link ShardedDatabaseService}, so borrowing a book looks the user up on the user's own shard and
+ * records the loan on the book's shard.
+ */
+public class ShardedLibrary extends Library {
+
+    // The database service routing to the shards
+    private final ShardedDatabaseService shardedDatabaseService;
+
+    /**
+     * Constructs a sharded library.
+     *
+     * @param shards        The initial database shards; at least one.
+     * @param reviewService Service to fetch reviews for a book.
+     */
+    public ShardedLibrary(List<? extends DatabaseService> shards, ReviewService reviewService) {
+        this(shards, reviewService, new SequentialBorrowStrategy());
+    }
+
+    /**
+     * Constructs a sharded library that borrows and returns books through the given strategy.
+     *
+     * @param shards         The initial database shards; at least one.
+     * @param reviewService  Service to fetch reviews for a book.
+     * @param borrowStrategy Strategy that changes a book's borrow state.
+     */
+    public ShardedLibrary(List<? extends DatabaseService> shards, ReviewService reviewService,
+                          BorrowStrategy borrowStrategy) {
+        this(new ShardedDatabaseService(shards), reviewService, borrowStrategy);
+    }
+
+    private ShardedLibrary(ShardedDatabaseService shardedDatabaseService, ReviewService reviewService,
+                           BorrowStrategy borrowStrategy) {
+        super(shardedDatabaseService, reviewService, borrowStrategy);
+        this.shardedDatabaseService = shardedDatabaseService;
+    }
+
+    /**
+     * Adds a database shard, moving onto it only the books and users it now owns.
+     *
+     * @param shard The new, empty shard.
+     * @return The number of books and users moved.
+     */
+    public int addShard(DatabaseService shard) {
+        return shardedDatabaseService.addShard(shard);
+    }
+
+    /**
+     * Retrieves the number of database shards.
+     *
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shardedDatabaseService.getShardCount();
+    }
+}
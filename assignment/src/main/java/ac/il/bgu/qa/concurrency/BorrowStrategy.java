@@ -0,0 +1,80 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Decides how the library changes a book's borrow state and records the change in the database.
+ * <p>
+ * Implementations receive either a book that has already been validated and fetched, or a loader that
+ * fetches and validates it, and a commit action that writes the change through the database service.
+ * They define which interleavings of concurrent borrow and return requests are possible.
+ */
+public interface BorrowStrategy {
+
+    /**
+     * Marks the book as borrowed and runs the commit action.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param book   The book to be borrowed.
+     * @param commit Records the borrowing transaction in the database.
+     * @throws BookAlreadyBorrowedException If the book is already borrowed.
+     */
+    void borrow(String ISBN, Book book, Runnable commit);
+
+    /**
+     * Marks the book as returned and runs the commit action.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param book   The book to be returned.
+     * @param commit Records the return in the database.
+     * @throws BookNotBorrowedException If the book is not borrowed.
+     */
+    void returnBook(String ISBN, Book book, Runnable commit);
+
+    /**
+     * Loads the book, marks it as borrowed and runs the commit action.
+     * <p>
+     * The loader fetches the book and runs any checks that must pass before the change, throwing if one
+     * fails. By default it runs first and the book it returns is passed to
+     * {@link #borrow(String, Book, Runnable)}; strategies that must see the book's latest state run it
+     * under the same lock as the change.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param loader Fetches and validates the book to be borrowed.
+     * @param commit Records the borrowing transaction in the database.
+     * @throws BookAlreadyBorrowedException If the book is already borrowed.
+     */
+    default void borrow(String ISBN, Supplier<Book> loader, Runnable commit) {
+        borrow(ISBN, loader.get(), commit);
+    }
+
+    /**
+     * Loads the book, marks it as returned and runs the commit action.
+     * <p>
+     * The loader is run as described for {@link #borrow(String, Supplier, Runnable)}.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param loader Fetches and validates the book to be returned.
+     * @param commit Records the return in the database.
+     * @throws BookNotBorrowedException If the book is not borrowed.
+     */
+    default void returnBook(String ISBN, Supplier<Book> loader, Runnable commit) {
+        returnBook(ISBN, loader.get(), commit);
+    }
+
+    /**
+     * Runs a batch of borrows or returns as one unit: the lookups, the state changes, the single commit
+     * for the whole batch and any rollback of it. The default runs the batch directly.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books in the batch.
+     * @param batch The work of the batch.
+     */
+    default void batch(Collection<String> ISBNs, Runnable batch) {
+        batch.run();
+    }
+}
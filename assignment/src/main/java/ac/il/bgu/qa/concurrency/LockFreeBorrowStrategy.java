@@ -0,0 +1,50 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+/**
+ * Changes the borrow state with a compare-and-set on the book itself.
+ * <p>
+ * Of several threads racing to borrow (or return) the same book exactly one wins; the others fail
+ * with the same exceptions a sequential caller would see. Requests for different books never touch
+ * shared state here, so throughput scales with the number of cores as far as the database allows.
+ * If the commit action fails, the borrow state is rolled back before the failure is rethrown.
+ * <p>
+ * The database service must itself be safe for concurrent use, and every lookup of an ISBN must return
+ * the same shared {@link Book} instance, or a view whose {@link Book#tryBorrow()} and {@link Book#tryReturn()}
+ * are atomic across lookups (as {@code MappedBook} is). A database that returns a fresh copy per lookup gives
+ * each caller its own flag to flip, so two callers could borrow the same book; use
+ * {@link StripedLockBorrowStrategy} for such databases.
+ */
+public class LockFreeBorrowStrategy implements BorrowStrategy {
+
+    @Override
+    public void borrow(String ISBN, Book book, Runnable commit) {
+        // Only the thread that flips the state from available to borrowed may record the transaction.
+        if (!book.tryBorrow()) {
+            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+        }
+        try {
+            commit.run();
+        } catch (RuntimeException e) {
+            book.tryReturn();
+            throw e;
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN, Book book, Runnable commit) {
+        // Only the thread that flips the state from borrowed to available may record the return.
+        if (!book.tryReturn()) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!");
+        }
+        try {
+            commit.run();
+        } catch (RuntimeException e) {
+            book.tryBorrow();
+            throw e;
+        }
+    }
+}
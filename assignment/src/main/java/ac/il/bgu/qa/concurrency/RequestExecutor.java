@@ -0,0 +1,185 @@
+package ac.il.bgu.qa.concurrency;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking library requests off the caller's thread.
+ * <p>
+ * On JDKs with virtual threads each request gets a virtual thread of its own, so thousands of requests
+ * waiting on the database or the review service cost little more than their stacks. Elsewhere requests run
+ * on a fixed pool of daemon threads with a bounded queue. Either way at most {@code threads + queueCapacity}
+ * requests are accepted and not yet finished; further requests are rejected rather than queued without
+ * limit.
+ * <p>
+ * The executor can also back the {@code Blocking*Adapter} classes of the asynchronous library.
+ */
+public final class RequestExecutor implements Executor {
+
+    // Runs the requests.
+    private final ExecutorService executor;
+    // Whether the requests run on virtual threads.
+    private final boolean virtual;
+    // Free slots for requests accepted on virtual threads; null for the pool, whose queue is the bound.
+    private final Semaphore slots;
+
+    private final LongAdder rejected = new LongAdder();
+
+    RequestExecutor(ExecutorService executor, boolean virtual, Semaphore slots) {
+        this.executor = executor;
+        this.virtual = virtual;
+        this.slots = slots;
+    }
+
+    /**
+     * Creates an executor running each request on a virtual thread when the JDK supports them, and otherwise
+     * on a bounded pool. On virtual threads at most {@code threads + queueCapacity} requests are in progress
+     * at a time, as many as the pool would hold.
+     *
+     * @param threads       The number of pool threads when virtual threads are not available.
+     * @param queueCapacity The number of requests the pool may hold waiting for a thread.
+     * @return The executor.
+     */
+    public static RequestExecutor create(int threads, int queueCapacity) {
+        validate(threads, queueCapacity);
+        ExecutorService virtualThreads = Threads.newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null) {
+            return new RequestExecutor(virtualThreads, true, new Semaphore(threads + queueCapacity));
+        }
+        return bounded(threads, queueCapacity);
+    }
+
+    /**
+     * Creates an executor running requests on a bounded pool, even if the JDK supports virtual threads.
+     *
+     * @param threads       The number of pool threads.
+     * @param queueCapacity The number of requests the pool may hold waiting for a thread.
+     * @return The executor.
+     */
+    public static RequestExecutor bounded(int threads, int queueCapacity) {
+        validate(threads, queueCapacity);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Threads.daemonThreadFactory("library-request"));
+        return new RequestExecutor(pool, false, null);
+    }
+
+    private static void validate(int threads, int queueCapacity) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count.");
+        } else if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid queue size.");
+        }
+    }
+
+    /**
+     * Runs a request in the background.
+     *
+     * @param request The request, typically a call to one of the library's methods.
+     * @param <T>     The type of the request's result.
+     * @return A future completed with the request's result, or exceptionally with the exception it threw or
+     *         with a {@link RejectedExecutionException} if the request was rejected.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                try {
+                    result.complete(request.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a request without a result in the background.
+     *
+     * @param request The request.
+     * @return A future completed once the request ran; see {@link #submit(Supplier)}.
+     */
+    public CompletableFuture<Void> run(Runnable request) {
+        return submit(() -> {
+            request.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (slots == null) {
+            try {
+                executor.execute(command);
+            } catch (RejectedExecutionException e) {
+                // Only a full queue counts as a rejection; after shutdown every request is refused.
+                if (!executor.isShutdown()) {
+                    rejected.increment();
+                }
+                throw e;
+            }
+            return;
+        }
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Request executor is shut down!");
+        }
+        if (!slots.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many requests in progress!");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether requests run on virtual threads.
+     *
+     * @return true if each request gets a virtual thread, false if requests run on the bounded pool.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Retrieves the number of requests rejected because the pool's queue was full, or on virtual threads
+     * because the maximum number of requests was in progress. Requests refused after {@link #shutdown()}
+     * are not counted.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops accepting requests. Requests already accepted still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for accepted requests to finish after {@link #shutdown()}.
+     *
+     * @param timeout How long to wait.
+     * @param unit    The unit of {@code timeout}.
+     * @return true if all requests finished, false if the timeout elapsed first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
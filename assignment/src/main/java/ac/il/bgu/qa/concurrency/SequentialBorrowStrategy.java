@@ -0,0 +1,43 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+/**
+ * Checks and then changes the borrow state without any coordination between threads.
+ * <p>
+ * This is the library's default. It is only safe when calls for the same book are never
+ * concurrent, for example when every library call is serialized by the caller.
+ */
+public class SequentialBorrowStrategy implements BorrowStrategy {
+
+    @Override
+    public void borrow(String ISBN, Book book, Runnable commit) {
+        // If the book is already borrowed, throw an exception.
+        if (book.isBorrowed()) {
+            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+        }
+
+        // Mark the book as borrowed.
+        book.borrow();
+
+        // Record the borrowing transaction in the database.
+        commit.run();
+    }
+
+    @Override
+    public void returnBook(String ISBN, Book book, Runnable commit) {
+        // Check if the book is currently borrowed. If not, it means it was never borrowed
+        // or it has already been returned, therefore throw an exception.
+        if (!book.isBorrowed()) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!");
+        }
+
+        // Change the status of the book to not borrowed.
+        book.returnBook();
+
+        // Update the database to reflect the returned status of the book.
+        commit.run();
+    }
+}
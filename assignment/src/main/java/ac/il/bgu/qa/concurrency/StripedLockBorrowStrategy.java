@@ -0,0 +1,229 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the lookup, the check, the state change and the commit for each book with a lock taken from a
+ * fixed array of stripes, chosen by the book's ISBN.
+ * <p>
+ * Unlike {@link LockFreeBorrowStrategy} this does not rely on a compare-and-set on a shared book, so it also
+ * suits database services that return a new book for every lookup: when the library passes a loader, the
+ * stripe is taken before the book is fetched, and no other request for the same book can fetch it, check its
+ * state or record a change until the stripe is released. A book passed in already fetched is only protected
+ * from the check onwards. Requests for books on different stripes never wait for each other; more stripes
+ * mean fewer unrelated books sharing a lock. A hyphenated and a plain spelling of the same ISBN always map to
+ * the same stripe. If the commit action fails, the borrow state is rolled back before the stripe is released
+ * and the failure rethrown.
+ * <p>
+ * A batch holds the stripes of all its books, taken in ascending stripe order so that overlapping batches
+ * cannot deadlock, across its lookups, state changes, batched commit and rollback.
+ * <p>
+ * The strategy counts how often a stripe was already held and how long requests waited for one.
+ */
+public class StripedLockBorrowStrategy implements BorrowStrategy {
+
+    // The number of stripes used by the default constructor.
+    public static final int DEFAULT_STRIPES = 64;
+
+    // One lock per stripe.
+    private final ReentrantLock[] stripes;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Constructs a strategy with {@value #DEFAULT_STRIPES} stripes.
+     */
+    public StripedLockBorrowStrategy() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructs a strategy with the given number of stripes. A single stripe is a global lock.
+     *
+     * @param stripes The number of locks books are spread over.
+     */
+    public StripedLockBorrowStrategy(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Invalid stripe count.");
+        }
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void borrow(String ISBN, Book book, Runnable commit) {
+        ReentrantLock stripe = lock(ISBN);
+        try {
+            markBorrowed(book, commit);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void borrow(String ISBN, Supplier<Book> loader, Runnable commit) {
+        ReentrantLock stripe = lock(ISBN);
+        try {
+            markBorrowed(loader.get(), commit);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN, Book book, Runnable commit) {
+        ReentrantLock stripe = lock(ISBN);
+        try {
+            markReturned(book, commit);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN, Supplier<Book> loader, Runnable commit) {
+        ReentrantLock stripe = lock(ISBN);
+        try {
+            markReturned(loader.get(), commit);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void batch(Collection<String> ISBNs, Runnable batch) {
+        // Take each distinct stripe once, in ascending order, and release them in reverse.
+        int[] indexes = new int[ISBNs.size()];
+        int count = 0;
+        for (String ISBN : ISBNs) {
+            indexes[count++] = stripeOf(ISBN);
+        }
+        Arrays.sort(indexes, 0, count);
+        int held = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                if (held == 0 || indexes[i] != indexes[held - 1]) {
+                    lock(stripes[indexes[i]]);
+                    indexes[held++] = indexes[i];
+                }
+            }
+            batch.run();
+        } finally {
+            while (held > 0) {
+                stripes[indexes[--held]].unlock();
+            }
+        }
+    }
+
+    // Marks the book as borrowed and runs the commit, undoing the change if the commit fails.
+    private static void markBorrowed(Book book, Runnable commit) {
+        // If the book is already borrowed, throw an exception.
+        if (book.isBorrowed()) {
+            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+        }
+
+        // Mark the book as borrowed and record the borrowing transaction in the database.
+        book.borrow();
+        try {
+            commit.run();
+        } catch (RuntimeException e) {
+            book.returnBook();
+            throw e;
+        }
+    }
+
+    // Marks the book as returned and runs the commit, undoing the change if the commit fails.
+    private static void markReturned(Book book, Runnable commit) {
+        // Check if the book is currently borrowed. If not, throw an exception.
+        if (!book.isBorrowed()) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!");
+        }
+
+        // Mark the book as returned and record the return in the database.
+        book.returnBook();
+        try {
+            commit.run();
+        } catch (RuntimeException e) {
+            book.borrow();
+            throw e;
+        }
+    }
+
+    // Acquires the stripe of an ISBN.
+    private ReentrantLock lock(String ISBN) {
+        ReentrantLock stripe = stripes[stripeOf(ISBN)];
+        lock(stripe);
+        return stripe;
+    }
+
+    // Acquires a stripe, counting the acquisition and any time spent waiting for it. Re-entering a stripe
+    // already held by this thread, as a request inside a batch does, is not counted.
+    private void lock(ReentrantLock stripe) {
+        if (stripe.isHeldByCurrentThread()) {
+            stripe.lock();
+            return;
+        }
+        acquisitions.increment();
+        if (!stripe.tryLock()) {
+            contended.increment();
+            long start = System.nanoTime();
+            stripe.lock();
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // Spreads the packed ISBN, so both spellings of an ISBN share a stripe and neighbouring ISBNs do not.
+    int stripeOf(String ISBN) {
+        long hash = Isbn.pack(ISBN) * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 33) % stripes.length);
+    }
+
+    /**
+     * Retrieves the number of stripes.
+     *
+     * @return The number of locks books are spread over.
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Retrieves the number of times a stripe was acquired.
+     *
+     * @return The number of acquisitions.
+     */
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * Retrieves the number of acquisitions that found the stripe held and had to wait.
+     *
+     * @return The number of contended acquisitions.
+     */
+    public long getContended() {
+        return contended.sum();
+    }
+
+    /**
+     * Retrieves the total time requests spent waiting for a stripe.
+     *
+     * @return The waiting time, in nanoseconds.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+}
@@ -14,4 +14,14 @@ public class NotificationException extends RuntimeException {
     public NotificationException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new NotificationException with the specified detail message and cause.
+     *
+     * @param message the detail message.
+     * @param cause   the exception that made the notification fail.
+     */
+    public NotificationException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
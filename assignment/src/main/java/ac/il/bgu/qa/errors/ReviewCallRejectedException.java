@@ -0,0 +1,17 @@
+package ac.il.bgu.qa.errors;
+
+/**
+ * Represents a custom exception that is thrown when a call to the review service
+ * is refused without being attempted, because the service is failing or saturated.
+ */
+public class ReviewCallRejectedException extends ReviewException {
+
+    /**
+     * Constructs a new ReviewCallRejectedException with the specified detail message.
+     *
+     * @param message the detail message.
+     */
+    public ReviewCallRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * The calls the library makes to its services, whose latency is recorded.
+ */
+public enum DownstreamCall {
+    DATABASE_GET_BOOK,
+    DATABASE_GET_BOOKS,
+    DATABASE_GET_USER,
+    DATABASE_ADD_BOOK,
+    DATABASE_REGISTER_USER,
+    DATABASE_BORROW_BOOK,
+    DATABASE_RETURN_BOOK,
+    DATABASE_BORROW_BOOKS,
+    DATABASE_RETURN_BOOKS,
+    DATABASE_GET_LOANS,
+    DATABASE_GET_BORROWER,
+    REVIEW_GET_REVIEWS,
+    REVIEW_CLOSE,
+    NOTIFICATION_SEND
+}
@@ -0,0 +1,171 @@
+package ac.il.bgu.qa.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every measurement in memory and exports it as a plain-text report for local inspection.
+ * <p>
+ * Operations and downstream calls each get a {@link LatencyHistogram}. Failures are counted per
+ * operation and exception type, and retries and named events per operation and name.
+ */
+public class InMemoryLibraryMetrics implements LibraryMetrics {
+
+    // Filled in the constructor and read-only afterwards.
+    private final Map<Operation, LatencyHistogram> operations = new EnumMap<>(Operation.class);
+    private final Map<DownstreamCall, LatencyHistogram> downstream = new EnumMap<>(DownstreamCall.class);
+    private final Map<Operation, ConcurrentHashMap<String, LongAdder>> failures = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> retries = new EnumMap<>(Operation.class);
+
+    private final ConcurrentHashMap<String, LongAdder> events = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs empty metrics.
+     */
+    public InMemoryLibraryMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new LatencyHistogram());
+            failures.put(operation, new ConcurrentHashMap<>());
+            retries.put(operation, new LongAdder());
+        }
+        for (DownstreamCall call : DownstreamCall.values()) {
+            downstream.put(call, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void recordLatency(Operation operation, long startTime) {
+        operations.get(operation).record(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void recordDownstream(DownstreamCall call, long startTime) {
+        downstream.get(call).record(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void recordFailure(Operation operation, Throwable error) {
+        failures.get(operation).computeIfAbsent(error.getClass().getSimpleName(), name -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void recordRetry(Operation operation) {
+        retries.get(operation).increment();
+    }
+
+    @Override
+    public void recordEvent(String name) {
+        events.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Retrieves the latency histogram of an operation.
+     *
+     * @param operation The operation.
+     * @return Its latency histogram.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Retrieves the latency histogram of a downstream call.
+     *
+     * @param call The call.
+     * @return Its latency histogram.
+     */
+    public LatencyHistogram getDownstreamLatency(DownstreamCall call) {
+        return downstream.get(call);
+    }
+
+    /**
+     * Retrieves the number of times an operation failed with a given exception type.
+     *
+     * @param operation The operation.
+     * @param errorType The exception type.
+     * @return The number of failures.
+     */
+    public long getFailures(Operation operation, Class<? extends Throwable> errorType) {
+        LongAdder counter = failures.get(operation).get(errorType.getSimpleName());
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Retrieves the number of retries of an operation.
+     *
+     * @param operation The operation.
+     * @return The number of retries.
+     */
+    public long getRetries(Operation operation) {
+        return retries.get(operation).sum();
+    }
+
+    /**
+     * Retrieves the number of times a named event was recorded.
+     *
+     * @param name The name of the event.
+     * @return The number of events.
+     */
+    public long getEvents(String name) {
+        LongAdder counter = events.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Formats every non-empty measurement as text, one line each, latencies in nanoseconds.
+     *
+     * @return The report.
+     */
+    public String export() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<Operation, LatencyHistogram> entry : operations.entrySet()) {
+            appendLatency(report, "operation", entry.getKey().name(), entry.getValue());
+        }
+        for (Map.Entry<DownstreamCall, LatencyHistogram> entry : downstream.entrySet()) {
+            appendLatency(report, "downstream", entry.getKey().name(), entry.getValue());
+        }
+        for (Map.Entry<Operation, ConcurrentHashMap<String, LongAdder>> entry : failures.entrySet()) {
+            for (Map.Entry<String, LongAdder> failure : new TreeMap<>(entry.getValue()).entrySet()) {
+                report.append("failure ").append(entry.getKey().name()).append(' ').append(failure.getKey())
+                        .append(" count=").append(failure.getValue().sum()).append('\n');
+            }
+        }
+        for (Map.Entry<Operation, LongAdder> entry : retries.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                report.append("retry ").append(entry.getKey().name()).append(" count=").append(count).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(events).entrySet()) {
+            report.append("event ").append(entry.getKey()).append(" count=").append(entry.getValue().sum())
+                    .append('\n');
+        }
+        return report.toString();
+    }
+
+    private static void appendLatency(StringBuilder report, String kind, String name, LatencyHistogram histogram) {
+        long count = histogram.getCount();
+        if (count == 0) {
+            return;
+        }
+        TimeUnit unit = TimeUnit.NANOSECONDS;
+        report.append(kind).append(' ').append(name)
+                .append(" count=").append(count)
+                .append(" mean=").append(String.format(Locale.ROOT, "%.0f", histogram.getMean(unit)))
+                .append(" p50=").append(histogram.getValueAtPercentile(50, unit))
+                .append(" p99=").append(histogram.getValueAtPercentile(99, unit))
+                .append(" p999=").append(histogram.getValueAtPercentile(99.9, unit))
+                .append(" max=").append(histogram.getMax(unit))
+                .append('\n');
+    }
+}
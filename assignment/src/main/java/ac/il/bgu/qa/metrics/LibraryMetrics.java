@@ -0,0 +1,61 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * Receives measurements from the library's hot paths.
+ * <p>
+ * A measurement starts with {@link #startTimer()} and ends with one of the record methods, which
+ * compute the elapsed time themselves. Implementations must be thread-safe and should not block.
+ * {@link #NOOP} records nothing; its timer does not even read the clock.
+ */
+public interface LibraryMetrics {
+
+    /**
+     * Metrics that discard every measurement.
+     */
+    LibraryMetrics NOOP = new NoopLibraryMetrics();
+
+    /**
+     * Starts timing a call.
+     *
+     * @return The start time, to be passed to a record method.
+     */
+    long startTimer();
+
+    /**
+     * Records the latency of a library operation, successful or not.
+     *
+     * @param operation The operation.
+     * @param startTime The value {@link #startTimer()} returned when the operation started.
+     */
+    void recordLatency(Operation operation, long startTime);
+
+    /**
+     * Records the latency of a call to one of the library's services.
+     *
+     * @param call      The call.
+     * @param startTime The value {@link #startTimer()} returned when the call started.
+     */
+    void recordDownstream(DownstreamCall call, long startTime);
+
+    /**
+     * Records that an operation failed.
+     *
+     * @param operation The operation.
+     * @param error     The exception it threw.
+     */
+    void recordFailure(Operation operation, Throwable error);
+
+    /**
+     * Records that an operation retried a failed step.
+     *
+     * @param operation The operation.
+     */
+    void recordRetry(Operation operation);
+
+    /**
+     * Records a named event, such as a state change of a decorator around one of the services.
+     *
+     * @param name The name of the event.
+     */
+    void recordEvent(String name);
+}
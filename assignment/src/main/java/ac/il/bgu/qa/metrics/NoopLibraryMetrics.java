@@ -0,0 +1,32 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * Metrics that discard every measurement. Every method is empty so the JIT removes the calls.
+ */
+final class NoopLibraryMetrics implements LibraryMetrics {
+
+    @Override
+    public long startTimer() {
+        return 0;
+    }
+
+    @Override
+    public void recordLatency(Operation operation, long startTime) {
+    }
+
+    @Override
+    public void recordDownstream(DownstreamCall call, long startTime) {
+    }
+
+    @Override
+    public void recordFailure(Operation operation, Throwable error) {
+    }
+
+    @Override
+    public void recordRetry(Operation operation) {
+    }
+
+    @Override
+    public void recordEvent(String name) {
+    }
+}
@@ -0,0 +1,17 @@
+package ac.il.bgu.qa.metrics;
+
+/**
+ * The public library operations whose latency and failures are recorded.
+ */
+public enum Operation {
+    ADD_BOOK,
+    REGISTER_USER,
+    BORROW_BOOK,
+    RETURN_BOOK,
+    BORROW_BOOKS,
+    RETURN_BOOKS,
+    NOTIFY_USER_WITH_BOOK_REVIEWS,
+    GET_BOOK_BY_ISBN,
+    GET_LOANS,
+    GET_BORROWER
+}
@@ -0,0 +1,33 @@
+package ac.il.bgu.qa.notification;
+
+import ac.il.bgu.qa.User;
+
+/**
+ * A message ready to be sent to a user.
+ */
+public final class Notification {
+
+    // The user to be notified.
+    private final User recipient;
+    // The content of the notification.
+    private final String message;
+
+    /**
+     * Constructs a new notification.
+     *
+     * @param recipient The user to be notified.
+     * @param message   The content of the notification.
+     */
+    public Notification(User recipient, String message) {
+        this.recipient = recipient;
+        this.message = message;
+    }
+
+    public User getRecipient() {
+        return recipient;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,264 @@
+package ac.il.bgu.qa.notification;
+
+import ac.il.bgu.qa.concurrency.Threads;
+import ac.il.bgu.qa.errors.NotificationException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends notifications in the background and retries failed deliveries with exponential backoff.
+ * <p>
+ * Each dispatch first prepares the notification (for example, fetching the data it reports on) and then
+ * sends it, both on a worker thread. Retries are scheduled on a timer rather than slept through, so a
+ * failing notification service never blocks a worker between attempts. Only a {@link NotificationException}
+ * is retried; any other exception from the notification service ends the dispatch at once.
+ * <p>
+ * At most {@code maxPending} dispatches are in progress at a time, including those waiting for a retry.
+ * When that bound is reached a dispatch waits up to the configured timeout for a slot and is otherwise
+ * rejected, which pushes back on callers instead of queueing without limit.
+ */
+public class NotificationDispatcher {
+
+    // How long threads created by create() are kept without work.
+    private static final long IDLE_SECONDS = 60;
+
+    // Runs preparation and delivery attempts.
+    private final ExecutorService workers;
+    // Delays retries without holding a worker.
+    private final ScheduledExecutorService scheduler;
+    // When and how often failed deliveries are retried.
+    private final RetryPolicy retryPolicy;
+    // The maximum number of dispatches in progress.
+    private final int maxPending;
+    // Free slots for dispatches in progress.
+    private final Semaphore pending;
+    // How long a dispatch may wait for a free slot, in nanoseconds.
+    private final long offerTimeoutNanos;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs a dispatcher running on the given executors.
+     *
+     * @param workers      Runs preparation and delivery attempts.
+     * @param scheduler    Delays retries.
+     * @param retryPolicy  When and how often failed deliveries are retried.
+     * @param maxPending   The maximum number of dispatches in progress.
+     * @param offerTimeout How long a dispatch may wait for a free slot; zero rejects immediately.
+     * @param unit         The unit of {@code offerTimeout}.
+     */
+    public NotificationDispatcher(ExecutorService workers, ScheduledExecutorService scheduler, RetryPolicy retryPolicy,
+                                  int maxPending, long offerTimeout, TimeUnit unit) {
+        if (workers == null || scheduler == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        } else if (retryPolicy == null) {
+            throw new IllegalArgumentException("Invalid retry policy.");
+        } else if (maxPending <= 0) {
+            throw new IllegalArgumentException("Invalid queue size.");
+        } else if (offerTimeout < 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid timeout.");
+        }
+        this.workers = workers;
+        this.scheduler = scheduler;
+        this.retryPolicy = retryPolicy;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.offerTimeoutNanos = unit.toNanos(offerTimeout);
+    }
+
+    /**
+     * Creates a dispatcher that runs on virtual threads when the JDK supports them, and otherwise on a
+     * fixed pool of daemon threads. Pool and timer threads exit after a minute without work, so an idle
+     * dispatcher holds no threads. Dispatches beyond {@code maxPending} are rejected immediately.
+     *
+     * @param threads     The number of worker threads when virtual threads are not available.
+     * @param maxPending  The maximum number of dispatches in progress.
+     * @param retryPolicy When and how often failed deliveries are retried.
+     * @return The dispatcher.
+     */
+    public static NotificationDispatcher create(int threads, int maxPending, RetryPolicy retryPolicy) {
+        ExecutorService workers = Threads.newVirtualThreadPerTaskExecutor();
+        if (workers == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), Threads.daemonThreadFactory("notification-worker"));
+            pool.allowCoreThreadTimeOut(true);
+            workers = pool;
+        }
+        ScheduledThreadPoolExecutor scheduler =
+                new ScheduledThreadPoolExecutor(1, Threads.daemonThreadFactory("notification-retry"));
+        scheduler.setKeepAliveTime(IDLE_SECONDS, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return new NotificationDispatcher(workers, scheduler, retryPolicy, maxPending, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Retrieves a process-wide dispatcher, for libraries that are explicitly given one to share. A library
+     * constructed without a dispatcher creates its own instead.
+     * It is created on first use and runs on daemon or virtual threads.
+     *
+     * @return The shared dispatcher.
+     */
+    public static NotificationDispatcher shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Prepares and sends a notification in the background.
+     *
+     * @param preparation Builds the notification; any exception it throws fails the dispatch without retries.
+     * @return A future completed once the notification was delivered. It fails with a
+     *         {@link NotificationException}, caused by the last failure, if every delivery attempt failed; with
+     *         any other exception thrown by a delivery attempt, which is not retried; with the preparation's
+     *         exception if preparation failed; or with a {@link RejectedExecutionException} if no slot became
+     *         free in time.
+     */
+    public CompletableFuture<Void> dispatch(Supplier<Notification> preparation) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!acquireSlot()) {
+            rejected.increment();
+            result.completeExceptionally(new RejectedExecutionException("Notification queue is full!"));
+            return result;
+        }
+        // Free the slot however the dispatch ends.
+        result.whenComplete((ignored, error) -> pending.release());
+        try {
+            workers.execute(() -> {
+                Notification notification;
+                try {
+                    notification = preparation.get();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                attempt(notification, 1, result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Sends an already prepared notification in the background.
+     *
+     * @param notification The notification to be sent.
+     * @return A future completed once the notification was delivered; see {@link #dispatch(Supplier)}.
+     */
+    public CompletableFuture<Void> send(Notification notification) {
+        return dispatch(() -> notification);
+    }
+
+    /**
+     * Stops accepting dispatches. Dispatches in progress are abandoned at their next retry.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * Retrieves the number of notifications delivered.
+     *
+     * @return The number of successful dispatches.
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * Retrieves the number of dispatches that failed during preparation or after all delivery attempts.
+     *
+     * @return The number of failed dispatches.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Retrieves the number of delivery attempts that were retries.
+     *
+     * @return The number of retries.
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Retrieves the number of dispatches rejected because no slot was free.
+     *
+     * @return The number of rejected dispatches.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Retrieves the number of dispatches currently in progress.
+     *
+     * @return The number of pending dispatches.
+     */
+    public int getPending() {
+        return maxPending - pending.availablePermits();
+    }
+
+    private boolean acquireSlot() {
+        if (offerTimeoutNanos == 0) {
+            return pending.tryAcquire();
+        }
+        try {
+            return pending.tryAcquire(offerTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void attempt(Notification notification, int attempt, CompletableFuture<Void> result) {
+        try {
+            notification.getRecipient().sendNotification(notification.getMessage());
+            delivered.increment();
+            result.complete(null);
+            return;
+        } catch (NotificationException e) {
+            if (attempt >= retryPolicy.getMaxAttempts()) {
+                failed.increment();
+                result.completeExceptionally(new NotificationException("Notification failed!", e));
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Anything but a notification failure is a bug, not a transient fault, so it is not retried.
+            failed.increment();
+            result.completeExceptionally(e);
+            return;
+        }
+
+        // Wait on the timer, then hand the next attempt back to a worker.
+        retries.increment();
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    workers.execute(() -> attempt(notification, attempt + 1, result));
+                } catch (RejectedExecutionException e) {
+                    failed.increment();
+                    result.completeExceptionally(e);
+                }
+            }, retryPolicy.delayNanos(attempt), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            failed.increment();
+            result.completeExceptionally(e);
+        }
+    }
+
+    // Creates the shared dispatcher lazily, on first access.
+    private static final class SharedHolder {
+        static final NotificationDispatcher INSTANCE =
+                create(Runtime.getRuntime().availableProcessors(), 1_024, RetryPolicy.DEFAULT);
+    }
+}
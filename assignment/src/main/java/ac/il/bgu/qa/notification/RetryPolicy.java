@@ -0,0 +1,62 @@
+package ac.il.bgu.qa.notification;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how often and how far apart failed notifications are retried.
+ * <p>
+ * Delays grow exponentially from the initial delay up to the maximum delay. Each delay is drawn
+ * uniformly between zero and that bound ("full jitter"), so clients that failed together do not
+ * retry together.
+ */
+public final class RetryPolicy {
+
+    // Five attempts, matching the synchronous retry loop in Library.
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 100, 5_000, TimeUnit.MILLISECONDS);
+
+    // Total number of attempts, including the first one.
+    private final int maxAttempts;
+    // Upper bound of the delay before the first retry, in nanoseconds.
+    private final long initialDelayNanos;
+    // Upper bound of any delay, in nanoseconds.
+    private final long maxDelayNanos;
+
+    /**
+     * Constructs a new retry policy.
+     *
+     * @param maxAttempts  Total number of attempts, including the first one.
+     * @param initialDelay Upper bound of the delay before the first retry.
+     * @param maxDelay     Upper bound of any delay.
+     * @param unit         The unit of both delays.
+     */
+    public RetryPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid number of attempts.");
+        } else if (initialDelay < 0 || maxDelay < initialDelay || unit == null) {
+            throw new IllegalArgumentException("Invalid delay.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayNanos = unit.toNanos(initialDelay);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Computes how long to wait after a failed attempt.
+     *
+     * @param failedAttempts The number of attempts that failed so far, starting at 1.
+     * @return The delay in nanoseconds.
+     */
+    public long delayNanos(int failedAttempts) {
+        long bound = initialDelayNanos;
+        for (int i = 1; i < failedAttempts && bound < maxDelayNanos; i++) {
+            bound <<= 1;
+        }
+        bound = Math.min(bound, maxDelayNanos);
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+}
@@ -0,0 +1,285 @@
+package ac.il.bgu.qa.search;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.utils.AuthorValidator;
+import ac.il.bgu.qa.utils.IsbnValidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes of a book catalog by author and by title, holding packed ISBNs only.
+ * <p>
+ * The author index maps each normalized author name to the books by that author in insertion order, so a
+ * page of results costs one hash lookup. The title index keeps the normalized titles sorted (see
+ * {@link TitleIndex}), so the books whose title starts with a prefix are found by binary search.
+ * Queries return canonical 13-digit ISBNs; the books themselves stay in the database.
+ * <p>
+ * The index is thread-safe. Queries share a read lock and run concurrently; additions take it exclusively.
+ */
+public final class CatalogIndex {
+
+    // Guards both indexes.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Books by normalized author name.
+    private final Map<String, Postings> authors = new HashMap<>();
+    // Books sorted by normalized title.
+    private final TitleIndex titles = new TitleIndex();
+    // Number of indexed books.
+    private int size;
+
+    /**
+     * Indexes a book by its author and title. A book without a valid author or a title is only indexed by
+     * the fields it has, and a book with neither is not indexed.
+     *
+     * @param book The book to be indexed.
+     * @throws IllegalArgumentException If the book or its ISBN is not valid.
+     */
+    public void add(Book book) {
+        long ISBN = pack(book);
+        String author = normalizeAuthor(book.getAuthor());
+        String title = normalizeTitle(book.getTitle());
+        if (author == null && title == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (author != null) {
+                authors.computeIfAbsent(author, key -> new Postings()).add(ISBN);
+            }
+            if (title != null) {
+                titles.add(title, ISBN);
+            }
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book indexed before, for instance because it is being replaced.
+     *
+     * @param book The indexed book, with the author and title it was indexed with.
+     * @throws IllegalArgumentException If the book or its ISBN is not valid.
+     */
+    public void remove(Book book) {
+        long ISBN = pack(book);
+        String author = normalizeAuthor(book.getAuthor());
+        String title = normalizeTitle(book.getTitle());
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            if (author != null) {
+                Postings postings = authors.get(author);
+                if (postings != null && postings.remove(ISBN)) {
+                    removed = true;
+                    if (postings.size == 0) {
+                        authors.remove(author);
+                    }
+                }
+            }
+            if (title != null) {
+                removed |= titles.remove(title, ISBN);
+            }
+            if (removed) {
+                size--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a page of the books by an author, in the order they were indexed.
+     * Author names are compared after {@link #normalizeAuthor(String) normalization}.
+     *
+     * @param author The name of the author.
+     * @param offset The number of matching books to skip.
+     * @param limit  The maximum number of books to return.
+     * @return The ISBNs of the matching books; empty if there are none or the name is not valid.
+     */
+    public List<String> findByAuthor(String author, int offset, int limit) {
+        checkPage(offset, limit);
+        String key = normalizeAuthor(author);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            Postings postings = authors.get(key);
+            if (postings == null || offset >= postings.size) {
+                return Collections.emptyList();
+            }
+            int end = (int) Math.min((long) offset + limit, postings.size);
+            List<String> result = new ArrayList<>(end - offset);
+            for (int i = offset; i < end; i++) {
+                result.add(Isbn.toString(postings.isbns[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the books by an author.
+     *
+     * @param author The name of the author.
+     * @return The number of books by the author.
+     */
+    public int countByAuthor(String author) {
+        String key = normalizeAuthor(author);
+        if (key == null) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            Postings postings = authors.get(key);
+            return postings == null ? 0 : postings.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a page of the books whose title starts with a prefix, ordered by title and then by ISBN.
+     * Titles and the prefix are compared after {@link #normalizeTitle(String) normalization}.
+     *
+     * @param prefix The start of the title.
+     * @param offset The number of matching books to skip.
+     * @param limit  The maximum number of books to return.
+     * @return The ISBNs of the matching books; empty if there are none.
+     */
+    public List<String> searchTitlePrefix(String prefix, int offset, int limit) {
+        checkPage(offset, limit);
+        String key = normalizeTitlePrefix(prefix);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            return titles.search(key, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed books.
+     *
+     * @return The number of books.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Normalizes an author name the way the index compares it. Names that
+     * {@link AuthorValidator#isValid(String)} rejects have no normal form. Valid names are lower-cased,
+     * runs of spaces become one space, and spaces after a dot are dropped, so "J. R. R. Tolkien",
+     * "J.R.R.  Tolkien" and "j.r.r. tolkien" are the same author.
+     *
+     * @param author The name of the author.
+     * @return The normalized name, or null if the name is not valid.
+     */
+    public static String normalizeAuthor(String author) {
+        if (!AuthorValidator.isValid(author)) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(author.length());
+        for (int i = 0; i < author.length(); i++) {
+            char c = author.charAt(i);
+            if (c == ' ') {
+                char previous = result.charAt(result.length() - 1);
+                if (previous == ' ' || previous == '.') {
+                    continue;
+                }
+            }
+            result.append(c);
+        }
+        return result.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a title the way the index compares it: lower-cased, with leading and trailing whitespace
+     * removed and runs of whitespace replaced by one space.
+     *
+     * @param title The title of the book.
+     * @return The normalized title, or null if the title is null or blank.
+     */
+    public static String normalizeTitle(String title) {
+        String result = normalizeTitlePrefix(title);
+        return result == null ? null : result.trim();
+    }
+
+    // Like normalizeTitle, but a trailing space is kept so "the " does not match "theory".
+    private static String normalizeTitlePrefix(String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(prefix.length());
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (result.length() == 0 || result.charAt(result.length() - 1) == ' ') {
+                    continue;
+                }
+                c = ' ';
+            }
+            result.append(c);
+        }
+        return result.length() == 0 ? null : result.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static long pack(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Invalid book.");
+        }
+        long ISBN = Isbn.pack(book.getISBN());
+        if (ISBN == IsbnValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return ISBN;
+    }
+
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Invalid page.");
+        }
+    }
+
+    // A growable list of packed ISBNs.
+    private static final class Postings {
+        long[] isbns = new long[2];
+        int size;
+
+        void add(long ISBN) {
+            if (size == isbns.length) {
+                isbns = Arrays.copyOf(isbns, size * 2);
+            }
+            isbns[size++] = ISBN;
+        }
+
+        boolean remove(long ISBN) {
+            for (int i = 0; i < size; i++) {
+                if (isbns[i] == ISBN) {
+                    System.arraycopy(isbns, i + 1, isbns, i, --size - i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ac.il.bgu.qa.search;
+
+import ac.il.bgu.qa.Isbn;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Sorted index of (normalized title, packed ISBN) pairs answering prefix queries.
+ * <p>
+ * It plays the role of a title trie: all titles with a given prefix form one contiguous range of the sorted
+ * order, found by binary search, and are visited in order. Keeping the pairs in two flat arrays instead of
+ * trie nodes costs a few bytes per title beyond the title itself, which matters at millions of titles.
+ * <p>
+ * New pairs go to a small sorted buffer that is merged into the arrays once it holds an eighth of their
+ * size, so insertion is amortized logarithmic. Removed pairs are marked and dropped by the next merge.
+ * Queries walk the array range and the buffer together. The class is not thread-safe.
+ */
+final class TitleIndex {
+
+    // The buffer is never merged before it holds this many pairs.
+    private static final int MIN_BUFFER = 4096;
+
+    // Sorted titles of the merged pairs, and their ISBNs.
+    private String[] titles = new String[0];
+    private long[] isbns = new long[0];
+    // Merged pairs removed since the last merge, by array index.
+    private final BitSet removed = new BitSet();
+    // Pairs added since the last merge.
+    private final TreeSet<Entry> buffer = new TreeSet<>();
+
+    void add(String title, long ISBN) {
+        buffer.add(new Entry(title, ISBN));
+        if (buffer.size() >= Math.max(MIN_BUFFER, titles.length >> 3)) {
+            merge();
+        }
+    }
+
+    boolean remove(String title, long ISBN) {
+        if (buffer.remove(new Entry(title, ISBN))) {
+            return true;
+        }
+        int index = lowerBound(title, ISBN);
+        if (index < titles.length && titles[index].equals(title) && isbns[index] == ISBN && !removed.get(index)) {
+            removed.set(index);
+            return true;
+        }
+        return false;
+    }
+
+    List<String> search(String prefix, int offset, int limit) {
+        int index = lowerBound(prefix, Long.MIN_VALUE);
+        int end = endOfPrefix(prefix, index);
+        Iterator<Entry> buffered = buffer.tailSet(new Entry(prefix, Long.MIN_VALUE)).iterator();
+        Entry next = nextWithPrefix(buffered, prefix);
+        List<String> result = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        while (result.size() < limit) {
+            while (index < end && removed.get(index)) {
+                index++;
+            }
+            long ISBN;
+            if (index < end && (next == null || compare(titles[index], isbns[index], next.title, next.ISBN) < 0)) {
+                ISBN = isbns[index++];
+            } else if (next != null) {
+                ISBN = next.ISBN;
+                next = nextWithPrefix(buffered, prefix);
+            } else {
+                break;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(Isbn.toString(ISBN));
+            }
+        }
+        return result;
+    }
+
+    private void merge() {
+        int size = titles.length - removed.cardinality() + buffer.size();
+        String[] mergedTitles = new String[size];
+        long[] mergedIsbns = new long[size];
+        Iterator<Entry> buffered = buffer.iterator();
+        Entry next = buffered.hasNext() ? buffered.next() : null;
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            while (index < titles.length && removed.get(index)) {
+                index++;
+            }
+            if (index < titles.length && (next == null || compare(titles[index], isbns[index], next.title, next.ISBN) < 0)) {
+                mergedTitles[i] = titles[index];
+                mergedIsbns[i] = isbns[index++];
+            } else {
+                mergedTitles[i] = next.title;
+                mergedIsbns[i] = next.ISBN;
+                next = buffered.hasNext() ? buffered.next() : null;
+            }
+        }
+        titles = mergedTitles;
+        isbns = mergedIsbns;
+        removed.clear();
+        buffer.clear();
+    }
+
+    // The index of the first merged pair not below (title, ISBN).
+    private int lowerBound(String title, long ISBN) {
+        int low = 0;
+        int high = titles.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(titles[middle], isbns[middle], title, ISBN) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // The index of the first merged pair from start on whose title does not start with the prefix.
+    private int endOfPrefix(String prefix, int start) {
+        int low = start;
+        int high = titles.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (titles[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static Entry nextWithPrefix(Iterator<Entry> entries, String prefix) {
+        if (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.title.startsWith(prefix)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static int compare(String title, long ISBN, String otherTitle, long otherISBN) {
+        int result = title.compareTo(otherTitle);
+        return result != 0 ? result : Long.compare(ISBN, otherISBN);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String title;
+        final long ISBN;
+
+        Entry(String title, long ISBN) {
+            this.title = title;
+            this.ISBN = ISBN;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return compare(title, ISBN, other.title, other.ISBN);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The non-blocking counterpart of {@link DatabaseService}. Each method starts the request and returns at once;
+ * the returned stage completes with its result, or exceptionally with the exception the blocking method
+ * would have thrown.
+ */
+public interface AsyncDatabaseService {
+
+    /**
+     * Adds a book to the database.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @param book The book to be added.
+     * @return A stage completed once the book was added.
+     */
+    CompletionStage<Void> addBook(String ISBN, Book book);
+
+    /**
+     * Registers a user in the database.
+     *
+     * @param id   The unique identifier for the user.
+     * @param user The user to be registered.
+     * @return A stage completed once the user was registered.
+     */
+    CompletionStage<Void> registerUser(String id, User user);
+
+    /**
+     * Fetches a book from the database using its ISBN.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return A stage completed with the book, or with null if the book does not exist in the database.
+     */
+    CompletionStage<Book> getBookByISBN(String ISBN);
+
+    /**
+     * Fetches a user from the database using their ID.
+     *
+     * @param userId The unique identifier for the user.
+     * @return A stage completed with the user, or with null if the user is not registered in the database.
+     */
+    CompletionStage<User> getUserById(String userId);
+
+    /**
+     * Records that a user borrowed a book.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The unique identifier of the user.
+     * @return A stage completed once the borrowing was recorded.
+     */
+    CompletionStage<Void> borrowBook(String ISBN, String userId);
+
+    /**
+     * Records that a book was returned.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return A stage completed once the return was recorded.
+     */
+    CompletionStage<Void> returnBook(String ISBN);
+}
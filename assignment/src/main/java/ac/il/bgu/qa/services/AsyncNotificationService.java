@@ -0,0 +1,22 @@
+package ac.il.bgu.qa.services;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The non-blocking counterpart of {@link NotificationService}.
+ * <p>
+ * A user's notification service may implement this interface as well, in which case the asynchronous
+ * library uses it directly instead of running the blocking method on its executor.
+ */
+public interface AsyncNotificationService {
+
+    /**
+     * Sends a notification message to a specific user.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message.
+     * @return A stage completed once the message was sent, or exceptionally with a
+     *         {@link ac.il.bgu.qa.errors.NotificationException} if there's an issue sending it.
+     */
+    CompletionStage<Void> notifyUser(String userId, String message);
+}
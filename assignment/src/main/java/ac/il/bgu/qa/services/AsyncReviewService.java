@@ -0,0 +1,50 @@
+package ac.il.bgu.qa.services;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * The non-blocking counterpart of {@link ReviewService}.
+ */
+public interface AsyncReviewService {
+
+    /**
+     * Fetches the list of reviews for a book based on its ISBN.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A stage completed with the reviews, or exceptionally with a
+     *         {@link ac.il.bgu.qa.errors.ReviewException} if there's an issue fetching them.
+     */
+    CompletionStage<List<String>> getReviewsForBook(String ISBN);
+
+    /**
+     * Closes the review service, performing any necessary cleanup operations.
+     *
+     * @return A stage completed once the service was closed.
+     */
+    CompletionStage<Void> close();
+
+    /**
+     * Fetches the reviews for a book and then closes the review service, whether or not the fetch succeeded.
+     * <p>
+     * The default implementation closes the service once the fetch completed. Adapters around a blocking
+     * service whose sessions are bound to a thread should override it to run both calls as one task.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A stage completed with the reviews once the service was closed, or exceptionally with the
+     *         reason the fetch or the close failed.
+     */
+    default CompletionStage<List<String>> getReviewsForBookAndClose(String ISBN) {
+        return getReviewsForBook(ISBN)
+                .handle((reviews, error) -> close().thenApply(closed -> {
+                    if (error != null) {
+                        throw error instanceof CompletionException
+                                ? (CompletionException) error : new CompletionException(error);
+                    }
+                    return reviews;
+                }))
+                .thenCompose(Function.identity());
+    }
+}
@@ -1,7 +1,14 @@
 package ac.il.bgu.qa.services;
 
 import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
 import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Provides an interface for services responsible for managing the database of books and users.
@@ -32,6 +39,20 @@ public interface DatabaseService {
      */
     Book getBookByISBN(String ISBN);
 
+    /**
+     * Fetches a book from the database using its packed ISBN (see {@link Isbn#pack(CharSequence)}).
+     * Hyphenated and plain spellings of an ISBN pack to the same key, so both reach the same book.
+     * <p>
+     * The default implementation looks the book up by its canonical 13-digit form.
+     * Implementations keyed by the packed value should override it to avoid creating that String.
+     *
+     * @param ISBN The packed International Standard Book Number.
+     * @return The book with the given ISBN or null if the book does not exist in the database.
+     */
+    default Book getBookByISBN(long ISBN) {
+        return getBookByISBN(Isbn.toString(ISBN));
+    }
+
     /**
      * Fetches a user from the database using their ID.
      *
@@ -40,6 +61,19 @@ public interface DatabaseService {
      */
     User getUserById(String userId);
 
+    /**
+     * Fetches a user from the database using their packed ID (see {@link UserIdValidator#pack(CharSequence)}).
+     * <p>
+     * The default implementation looks the user up by the 12-digit form of the ID.
+     * Implementations keyed by the packed value should override it to avoid creating that String.
+     *
+     * @param userId The packed unique identifier for the user.
+     * @return The user with the given ID or null if the user is not registered in the database.
+     */
+    default User getUserById(long userId) {
+        return getUserById(UserIdValidator.unpack(userId));
+    }
+
     /**
      * Borrows a book identified by its ISBN for a user identified by their userId.
      * This method should appropriately mark the book as borrowed and associate it with the user.
@@ -56,4 +90,83 @@ public interface DatabaseService {
      * @param ISBN The International Standard Book Number of the book to be returned.
      */
     void returnBook(String ISBN);
+
+    /**
+     * Finds the user currently borrowing a book, as recorded by {@link #borrowBook(String, String)}.
+     * The default implementation does not track loans.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The 12-digit Id of the borrower, or null if the book is not on loan.
+     * @throws UnsupportedOperationException If the database does not track loans.
+     */
+    default String getBorrowerId(String ISBN) {
+        throw new UnsupportedOperationException("Loans are not tracked!");
+    }
+
+    /**
+     * Lists the books a user currently has on loan, as recorded by {@link #borrowBook(String, String)}.
+     * The default implementation does not track loans.
+     *
+     * @param userId The unique identifier for the user.
+     * @return The 13-digit ISBNs of the borrowed books in the order they were borrowed; empty if there are none.
+     * @throws UnsupportedOperationException If the database does not track loans.
+     */
+    default List<String> getLoansByUserId(String userId) {
+        throw new UnsupportedOperationException("Loans are not tracked!");
+    }
+
+    /**
+     * Adds several books to the database in one request, each under its own ISBN.
+     * The default implementation adds the books one by one.
+     *
+     * @param books The books to be added.
+     */
+    default void addBooks(Collection<Book> books) {
+        for (Book book : books) {
+            addBook(book.getISBN(), book);
+        }
+    }
+
+    /**
+     * Fetches several books from the database in one request.
+     * The default implementation fetches the books one by one.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to fetch.
+     * @return The books that exist in the database, keyed by the ISBN they were requested with.
+     */
+    default Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (String ISBN : ISBNs) {
+            Book book = getBookByISBN(ISBN);
+            if (book != null) {
+                books.put(ISBN, book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Borrows several books for one user in one request.
+     * The default implementation borrows the books one by one.
+     *
+     * @param ISBNs  The International Standard Book Numbers of the books to be borrowed.
+     * @param userId The unique identifier for the user borrowing the books.
+     */
+    default void borrowBooks(Collection<String> ISBNs, String userId) {
+        for (String ISBN : ISBNs) {
+            borrowBook(ISBN, userId);
+        }
+    }
+
+    /**
+     * Marks several books as returned in one request.
+     * The default implementation returns the books one by one.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to be returned.
+     */
+    default void returnBooks(Collection<String> ISBNs) {
+        for (String ISBN : ISBNs) {
+            returnBook(ISBN);
+        }
+    }
 }
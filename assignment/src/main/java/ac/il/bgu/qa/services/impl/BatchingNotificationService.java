@@ -0,0 +1,315 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.concurrency.Threads;
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers notifications per user and delivers them as a single digest.
+ * <p>
+ * The first message for a user opens a batch. The batch is flushed through one
+ * {@link NotificationService#notifyUser(String, String)} call of the underlying service when the
+ * batching window has passed since it was opened, or as soon as it holds {@code maxBatchSize} messages.
+ * A digest of several messages joins them with a blank line.
+ * <p>
+ * {@link #notifyUser(String, String)} only buffers the message, so it never fails because of the
+ * underlying service. A flush that fails is retried with the next window, up to {@code maxFlushAttempts}
+ * times; after that its messages are dropped and counted.
+ */
+public class BatchingNotificationService implements NotificationService {
+
+    // Separates the messages merged into a digest.
+    static final String DIGEST_SEPARATOR = "\n\n";
+
+    // The service that actually delivers the digests.
+    private final NotificationService delegate;
+    // How long a batch stays open, in nanoseconds.
+    private final long windowNanos;
+    // Number of messages that flushes a batch immediately.
+    private final int maxBatchSize;
+    // Number of times a batch is attempted before its messages are dropped.
+    private final int maxFlushAttempts;
+    // Runs window timeouts and flushes.
+    private final ScheduledExecutorService scheduler;
+    // Whether the scheduler was created by, and must be shut down by, this service.
+    private final boolean ownsScheduler;
+
+    // Open batches by user Id.
+    private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedMessages = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final LongAdder totalFlushLatencyNanos = new LongAdder();
+    private final AtomicLong maxFlushLatencyNanos = new AtomicLong();
+
+    /**
+     * Constructs a batching service that flushes on its own daemon threads.
+     *
+     * @param delegate     The service that delivers the digests.
+     * @param window       How long a batch stays open.
+     * @param unit         The unit of {@code window}.
+     * @param maxBatchSize Number of messages that flushes a batch immediately.
+     */
+    public BatchingNotificationService(NotificationService delegate, long window, TimeUnit unit, int maxBatchSize) {
+        this(delegate, window, unit, maxBatchSize, 3,
+                Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(),
+                        Threads.daemonThreadFactory("notification-batch")), true);
+    }
+
+    /**
+     * Constructs a batching service that flushes on the given scheduler.
+     *
+     * @param delegate         The service that delivers the digests.
+     * @param window           How long a batch stays open.
+     * @param unit             The unit of {@code window}.
+     * @param maxBatchSize     Number of messages that flushes a batch immediately.
+     * @param maxFlushAttempts Number of times a batch is attempted before its messages are dropped.
+     * @param scheduler        Runs window timeouts and flushes.
+     */
+    public BatchingNotificationService(NotificationService delegate, long window, TimeUnit unit, int maxBatchSize,
+                                       int maxFlushAttempts, ScheduledExecutorService scheduler) {
+        this(delegate, window, unit, maxBatchSize, maxFlushAttempts, scheduler, false);
+    }
+
+    private BatchingNotificationService(NotificationService delegate, long window, TimeUnit unit, int maxBatchSize,
+                                        int maxFlushAttempts, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (window < 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid batching window.");
+        } else if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        } else if (maxFlushAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid number of attempts.");
+        } else if (scheduler == null) {
+            throw new IllegalArgumentException("Invalid scheduler.");
+        }
+        this.delegate = delegate;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        this.maxFlushAttempts = maxFlushAttempts;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Buffers a message for a user. It is delivered with the user's next digest.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message.
+     */
+    @Override
+    public void notifyUser(String userId, String message) throws NotificationException {
+        messages.increment();
+        batches.compute(userId, (id, batch) -> {
+            if (batch == null) {
+                batch = new Batch(System.nanoTime(), 1);
+                batch.timeout = scheduleFlush(id, batch, windowNanos);
+            }
+            batch.messages.add(message);
+            if (batch.messages.size() == maxBatchSize) {
+                scheduleFlush(id, batch, 0);
+            }
+            return batch;
+        });
+    }
+
+    /**
+     * Flushes every open batch on the calling thread, regardless of its window.
+     */
+    public void flushAll() {
+        for (String userId : new ArrayList<>(batches.keySet())) {
+            flush(userId);
+        }
+    }
+
+    /**
+     * Flushes every open batch and stops the scheduler if this service created it.
+     */
+    public void shutdown() {
+        flushAll();
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    // Schedules a flush of one particular batch. Cancelling it cannot stop a flush that has already started,
+    // so the flush only goes ahead if that batch is still the user's open batch.
+    private ScheduledFuture<?> scheduleFlush(String userId, Batch batch, long delayNanos) {
+        try {
+            return scheduler.schedule(() -> {
+                if (batches.remove(userId, batch)) {
+                    deliver(userId, batch);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // The scheduler is shutting down; the batch is left for flushAll.
+            return null;
+        }
+    }
+
+    private void flush(String userId) {
+        // Detach the batch atomically; messages arriving from now on open a new batch.
+        Batch batch = batches.remove(userId);
+        if (batch != null) {
+            deliver(userId, batch);
+        }
+    }
+
+    // Delivers a batch already detached from the open batches.
+    private void deliver(String userId, Batch batch) {
+        if (batch.timeout != null) {
+            batch.timeout.cancel(false);
+        }
+
+        int size = batch.messages.size();
+        try {
+            delegate.notifyUser(userId, String.join(DIGEST_SEPARATOR, batch.messages));
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            requeue(userId, batch);
+            return;
+        }
+
+        long latency = System.nanoTime() - batch.openedAt;
+        flushes.increment();
+        flushedMessages.add(size);
+        maxBatch.accumulateAndGet(size, Math::max);
+        totalFlushLatencyNanos.add(latency);
+        maxFlushLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    // Puts the messages of a failed batch in front of any newer ones for another attempt.
+    private void requeue(String userId, Batch failed) {
+        if (failed.attempts >= maxFlushAttempts) {
+            droppedMessages.add(failed.messages.size());
+            return;
+        }
+        batches.compute(userId, (id, batch) -> {
+            Batch retry = new Batch(failed.openedAt, failed.attempts + 1);
+            retry.messages.addAll(failed.messages);
+            if (batch != null) {
+                retry.messages.addAll(batch.messages);
+                if (batch.timeout != null) {
+                    batch.timeout.cancel(false);
+                }
+            }
+            retry.timeout = scheduleFlush(id, retry, windowNanos);
+            return retry;
+        });
+    }
+
+    /**
+     * Retrieves the number of messages handed to this service.
+     *
+     * @return The number of buffered messages.
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * Retrieves the number of digests delivered.
+     *
+     * @return The number of successful flushes.
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * Retrieves the number of messages delivered as part of a digest.
+     *
+     * @return The number of delivered messages.
+     */
+    public long getFlushedMessages() {
+        return flushedMessages.sum();
+    }
+
+    /**
+     * Retrieves the number of flushes the underlying service rejected.
+     *
+     * @return The number of failed flushes.
+     */
+    public long getFailedFlushes() {
+        return failedFlushes.sum();
+    }
+
+    /**
+     * Retrieves the number of messages dropped after their batch failed too often.
+     *
+     * @return The number of dropped messages.
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    /**
+     * Computes the average number of messages per delivered digest.
+     *
+     * @return The average batch size, or 0 if nothing was delivered yet.
+     */
+    public double getAverageBatchSize() {
+        long count = flushes.sum();
+        return count == 0 ? 0 : (double) flushedMessages.sum() / count;
+    }
+
+    /**
+     * Retrieves the largest number of messages delivered in one digest.
+     *
+     * @return The largest batch size.
+     */
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+
+    /**
+     * Computes the average time from opening a batch to delivering it.
+     *
+     * @param unit The unit of the result.
+     * @return The average flush latency, or 0 if nothing was delivered yet.
+     */
+    public long getAverageFlushLatency(TimeUnit unit) {
+        long count = flushes.sum();
+        return count == 0 ? 0 : unit.convert(totalFlushLatencyNanos.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Retrieves the longest time from opening a batch to delivering it.
+     *
+     * @param unit The unit of the result.
+     * @return The maximum flush latency.
+     */
+    public long getMaxFlushLatency(TimeUnit unit) {
+        return unit.convert(maxFlushLatencyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Messages buffered for one user.
+     */
+    private static final class Batch {
+        // When the first message was buffered, in System.nanoTime terms.
+        final long openedAt;
+        // Which delivery attempt the next flush of this batch is.
+        final int attempts;
+        // The buffered messages, in arrival order.
+        final List<String> messages = new ArrayList<>();
+        // The pending window timeout, if one was scheduled.
+        ScheduledFuture<?> timeout;
+
+        Batch(long openedAt, int attempts) {
+            this.openedAt = openedAt;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.AsyncDatabaseService;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Offers a blocking {@link DatabaseService} as an {@link AsyncDatabaseService} by running each call on an
+ * executor. The executor should be dedicated to blocking calls, so they never tie up an event loop.
+ */
+public class BlockingDatabaseServiceAdapter implements AsyncDatabaseService {
+
+    // The service that actually performs the calls.
+    private final DatabaseService delegate;
+    // Runs the blocking calls.
+    private final Executor executor;
+
+    /**
+     * Constructs an adapter running the calls of a blocking service on an executor.
+     *
+     * @param delegate The blocking database service.
+     * @param executor Runs the blocking calls.
+     */
+    public BlockingDatabaseServiceAdapter(DatabaseService delegate, Executor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<Void> addBook(String ISBN, Book book) {
+        return CompletableFuture.runAsync(() -> delegate.addBook(ISBN, book), executor);
+    }
+
+    @Override
+    public CompletionStage<Void> registerUser(String id, User user) {
+        return CompletableFuture.runAsync(() -> delegate.registerUser(id, user), executor);
+    }
+
+    @Override
+    public CompletionStage<Book> getBookByISBN(String ISBN) {
+        return CompletableFuture.supplyAsync(() -> delegate.getBookByISBN(ISBN), executor);
+    }
+
+    @Override
+    public CompletionStage<User> getUserById(String userId) {
+        return CompletableFuture.supplyAsync(() -> delegate.getUserById(userId), executor);
+    }
+
+    @Override
+    public CompletionStage<Void> borrowBook(String ISBN, String userId) {
+        return CompletableFuture.runAsync(() -> delegate.borrowBook(ISBN, userId), executor);
+    }
+
+    @Override
+    public CompletionStage<Void> returnBook(String ISBN) {
+        return CompletableFuture.runAsync(() -> delegate.returnBook(ISBN), executor);
+    }
+}
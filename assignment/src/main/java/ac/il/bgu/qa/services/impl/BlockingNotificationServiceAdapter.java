@@ -0,0 +1,41 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.services.AsyncNotificationService;
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Offers a blocking {@link NotificationService} as an {@link AsyncNotificationService} by running each call
+ * on an executor.
+ */
+public class BlockingNotificationServiceAdapter implements AsyncNotificationService {
+
+    // The service that actually sends the notifications.
+    private final NotificationService delegate;
+    // Runs the blocking calls.
+    private final Executor executor;
+
+    /**
+     * Constructs an adapter running the calls of a blocking service on an executor.
+     *
+     * @param delegate The blocking notification service.
+     * @param executor Runs the blocking calls.
+     */
+    public BlockingNotificationServiceAdapter(NotificationService delegate, Executor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<Void> notifyUser(String userId, String message) {
+        return CompletableFuture.runAsync(() -> delegate.notifyUser(userId, message), executor);
+    }
+}
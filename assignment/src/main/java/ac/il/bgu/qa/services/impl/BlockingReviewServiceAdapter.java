@@ -0,0 +1,60 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.services.AsyncReviewService;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Offers a blocking {@link ReviewService} as an {@link AsyncReviewService} by running each call on an executor.
+ * <p>
+ * {@link #getReviewsForBookAndClose(String)} fetches and closes in one task, on one thread, so services that
+ * bind a session to the calling thread (such as {@link PooledReviewService}) get it back on close.
+ */
+public class BlockingReviewServiceAdapter implements AsyncReviewService {
+
+    // The service that actually fetches the reviews.
+    private final ReviewService delegate;
+    // Runs the blocking calls.
+    private final Executor executor;
+
+    /**
+     * Constructs an adapter running the calls of a blocking service on an executor.
+     *
+     * @param delegate The blocking review service.
+     * @param executor Runs the blocking calls.
+     */
+    public BlockingReviewServiceAdapter(ReviewService delegate, Executor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletionStage<List<String>> getReviewsForBook(String ISBN) {
+        return CompletableFuture.supplyAsync(() -> delegate.getReviewsForBook(ISBN), executor);
+    }
+
+    @Override
+    public CompletionStage<Void> close() {
+        return CompletableFuture.runAsync(delegate::close, executor);
+    }
+
+    @Override
+    public CompletionStage<List<String>> getReviewsForBookAndClose(String ISBN) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return delegate.getReviewsForBook(ISBN);
+            } finally {
+                delegate.close();
+            }
+        }, executor);
+    }
+}
@@ -0,0 +1,62 @@
+package ac.il.bgu.qa.services.impl;
+
+/**
+ * Immutable snapshot of a cache region's counters.
+ */
+public final class CacheStats {
+
+    // Lookups answered from the cache.
+    private final long hits;
+    // Lookups that had to go to the underlying service.
+    private final long misses;
+    // Entries dropped to stay within the size bound (or because they expired).
+    private final long evictions;
+    // Entries currently held.
+    private final int size;
+
+    /**
+     * Constructs a new snapshot.
+     *
+     * @param hits      Lookups answered from the cache.
+     * @param misses    Lookups that had to go to the underlying service.
+     * @param evictions Entries dropped by the cache.
+     * @param size      Entries currently held.
+     */
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Computes the fraction of lookups answered from the cache.
+     *
+     * @return The hit ratio between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + "}";
+    }
+}
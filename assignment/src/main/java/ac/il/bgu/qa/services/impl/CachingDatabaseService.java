@@ -0,0 +1,326 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache in front of another database service, such as a remote database.
+ * <p>
+ * Books and users live in separate, size-bounded regions evicted in least-recently-used order.
+ * Entries are keyed by the packed ISBN and user Id, so hyphenated and plain spellings of an ISBN
+ * share an entry. Writes go to the underlying service first and are then applied to the cache
+ * (write-through), keeping both coherent as long as all writes pass through this decorator.
+ * Lookups that find nothing are not cached. When concurrent lookups miss on the same entry, the first
+ * one to fill it wins and the others return its copy, so every caller shares one instance of a book,
+ * as {@link ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy} requires, even if the underlying service
+ * hands out copies. The decorator is thread-safe if the underlying service is.
+ */
+public class CachingDatabaseService implements DatabaseService {
+
+    // The service the cache reads from and writes through to.
+    private final DatabaseService delegate;
+    // Cached books by packed ISBN.
+    private final Region<Book> books;
+    // Cached users by packed user Id.
+    private final Region<User> users;
+
+    /**
+     * Constructs a new cache in front of a database service.
+     *
+     * @param delegate The service to read from and write through to.
+     * @param maxBooks The maximum number of cached books.
+     * @param maxUsers The maximum number of cached users.
+     */
+    public CachingDatabaseService(DatabaseService delegate, int maxBooks, int maxUsers) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (maxBooks <= 0 || maxUsers <= 0) {
+            throw new IllegalArgumentException("Invalid cache size.");
+        }
+        this.delegate = delegate;
+        this.books = new Region<>(maxBooks);
+        this.users = new Region<>(maxUsers);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        delegate.addBook(ISBN, book);
+        long key = Isbn.pack(ISBN);
+        if (key != IsbnValidator.INVALID) {
+            books.put(key, book);
+        }
+    }
+
+    @Override
+    public void addBooks(Collection<Book> books) {
+        delegate.addBooks(books);
+        for (Book book : books) {
+            long key = Isbn.pack(book.getISBN());
+            if (key != IsbnValidator.INVALID) {
+                this.books.put(key, book);
+            }
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+        long key = UserIdValidator.pack(id);
+        if (key != UserIdValidator.INVALID) {
+            users.put(key, user);
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID) {
+            return delegate.getBookByISBN(ISBN);
+        }
+        Book book = books.get(key);
+        if (book == null) {
+            book = delegate.getBookByISBN(ISBN);
+            if (book != null) {
+                book = books.putIfAbsent(key, book);
+            }
+        }
+        return book;
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        Book book = books.get(ISBN);
+        if (book == null) {
+            book = delegate.getBookByISBN(ISBN);
+            if (book != null) {
+                book = books.putIfAbsent(ISBN, book);
+            }
+        }
+        return book;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Cached books are served from the cache; the rest are fetched with one batched request.
+     */
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        Map<String, Book> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String ISBN : ISBNs) {
+            long key = Isbn.pack(ISBN);
+            Book book = key == IsbnValidator.INVALID ? null : books.get(key);
+            if (book != null) {
+                result.put(ISBN, book);
+            } else {
+                missing.add(ISBN);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Book> fetched = delegate.getBooksByISBN(missing);
+            for (Map.Entry<String, Book> entry : fetched.entrySet()) {
+                long key = Isbn.pack(entry.getKey());
+                Book book = entry.getValue();
+                if (key != IsbnValidator.INVALID && book != null) {
+                    book = books.putIfAbsent(key, book);
+                }
+                result.put(entry.getKey(), book);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long key = UserIdValidator.pack(userId);
+        if (key == UserIdValidator.INVALID) {
+            return delegate.getUserById(userId);
+        }
+        return getUserById(key, userId);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return getUserById(userId, null);
+    }
+
+    private User getUserById(long key, String userId) {
+        User user = users.get(key);
+        if (user == null) {
+            user = userId == null ? delegate.getUserById(key) : delegate.getUserById(userId);
+            if (user != null) {
+                user = users.putIfAbsent(key, user);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * {@inheritDoc}
+     * A cached copy of the book is marked as borrowed once the underlying service accepted the write.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        delegate.borrowBook(ISBN, userId);
+        Book cached = cachedBook(ISBN);
+        if (cached != null && !cached.isBorrowed()) {
+            cached.tryBorrow();
+        }
+    }
+
+    @Override
+    public String getBorrowerId(String ISBN) {
+        return delegate.getBorrowerId(ISBN);
+    }
+
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        return delegate.getLoansByUserId(userId);
+    }
+
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        delegate.borrowBooks(ISBNs, userId);
+        for (String ISBN : ISBNs) {
+            Book cached = cachedBook(ISBN);
+            if (cached != null && !cached.isBorrowed()) {
+                cached.tryBorrow();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * A cached copy of the book is marked as returned once the underlying service accepted the write.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        delegate.returnBook(ISBN);
+        Book cached = cachedBook(ISBN);
+        if (cached != null && cached.isBorrowed()) {
+            cached.tryReturn();
+        }
+    }
+
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        delegate.returnBooks(ISBNs);
+        for (String ISBN : ISBNs) {
+            Book cached = cachedBook(ISBN);
+            if (cached != null && cached.isBorrowed()) {
+                cached.tryReturn();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached books and users. Counters are kept.
+     */
+    public void invalidateAll() {
+        books.clear();
+        users.clear();
+    }
+
+    /**
+     * Retrieves the counters of the book region.
+     *
+     * @return A snapshot of the book region's counters.
+     */
+    public CacheStats getBookStats() {
+        return books.stats();
+    }
+
+    /**
+     * Retrieves the counters of the user region.
+     *
+     * @return A snapshot of the user region's counters.
+     */
+    public CacheStats getUserStats() {
+        return users.stats();
+    }
+
+    private Book cachedBook(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        return key == IsbnValidator.INVALID ? null : books.peek(key);
+    }
+
+    /**
+     * Size-bounded LRU map with hit, miss and eviction counters.
+     */
+    private static final class Region<V> {
+
+        // Access-ordered entries; the eldest is the least recently used.
+        private final LinkedHashMap<Long, V> entries;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Region(int maxSize) {
+            this.entries = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        V get(long key) {
+            V value;
+            synchronized (entries) {
+                value = entries.get(key);
+            }
+            (value == null ? misses : hits).increment();
+            return value;
+        }
+
+        // Looks an entry up without touching the counters. Writes count as a use of the entry.
+        V peek(long key) {
+            synchronized (entries) {
+                return entries.get(key);
+            }
+        }
+
+        void put(long key, V value) {
+            synchronized (entries) {
+                entries.put(key, value);
+            }
+        }
+
+        // Caches the value unless the key already has one, and returns whichever value is cached.
+        V putIfAbsent(long key, V value) {
+            synchronized (entries) {
+                V cached = entries.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+                entries.put(key, value);
+                return value;
+            }
+        }
+
+        void clear() {
+            synchronized (entries) {
+                entries.clear();
+            }
+        }
+
+        CacheStats stats() {
+            int size;
+            synchronized (entries) {
+                size = entries.size();
+            }
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+        }
+    }
+}
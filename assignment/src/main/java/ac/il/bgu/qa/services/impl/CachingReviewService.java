@@ -0,0 +1,262 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.concurrency.Threads;
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the reviews of each book for a limited time in front of another review service.
+ * <p>
+ * <ul>
+ *   <li>Entries are fresh for the configured time-to-live after they were fetched. A stale entry is
+ *   still served while a single background task fetches a replacement; if that fetch fails, the stale
+ *   entry keeps being served and the next request tries again.</li>
+ *   <li>Concurrent misses for the same ISBN share one upstream fetch (single-flight).</li>
+ *   <li>At most {@code maxSize} books are cached; the least recently used one is evicted first.</li>
+ *   <li>Failed fetches are not cached.</li>
+ * </ul>
+ * {@link #close()} keeps the cache, so it survives the close that {@code Library} performs after every
+ * request. The underlying service is instead closed by this cache after each of its own fetches,
+ * preserving the fetch-then-close pattern it was written for. Fetches for different books and background
+ * refreshes can run at the same time, so the cache lets one fetch-then-close reach the underlying service
+ * at a time, and a close never tears down another fetch. {@link #shutdown()} stops the refresh executor if
+ * the cache created it.
+ */
+public class CachingReviewService implements ReviewService {
+
+    // The service that actually fetches reviews.
+    private final ReviewService delegate;
+    // How long an entry is fresh, in nanoseconds.
+    private final long ttlNanos;
+    // Runs background refreshes of stale entries.
+    private final Executor refreshExecutor;
+    // Whether the refresh executor was created by, and must be shut down by, this cache.
+    private final boolean ownsExecutor;
+    // Source of the current time in nanoseconds.
+    private final LongSupplier clock;
+
+    // Access-ordered cache entries by packed ISBN; the eldest is the least recently used.
+    private final LinkedHashMap<Long, Entry> entries;
+    // Held across each fetch from and close of the underlying service.
+    private final Object delegateLock = new Object();
+    // Fetches currently in progress, by packed ISBN.
+    private final ConcurrentHashMap<Long, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new cache that refreshes stale entries on a single daemon thread.
+     *
+     * @param delegate The service that fetches reviews.
+     * @param ttl      How long fetched reviews are fresh.
+     * @param unit     The unit of {@code ttl}.
+     * @param maxSize  The maximum number of books whose reviews are cached.
+     */
+    public CachingReviewService(ReviewService delegate, long ttl, TimeUnit unit, int maxSize) {
+        this(delegate, ttl, unit, maxSize,
+                Executors.newSingleThreadExecutor(Threads.daemonThreadFactory("review-cache-refresh")),
+                true, System::nanoTime);
+    }
+
+    /**
+     * Constructs a new cache that refreshes stale entries on the given executor.
+     *
+     * @param delegate        The service that fetches reviews.
+     * @param ttl             How long fetched reviews are fresh.
+     * @param unit            The unit of {@code ttl}.
+     * @param maxSize         The maximum number of books whose reviews are cached.
+     * @param refreshExecutor Runs background refreshes of stale entries.
+     */
+    public CachingReviewService(ReviewService delegate, long ttl, TimeUnit unit, int maxSize, Executor refreshExecutor) {
+        this(delegate, ttl, unit, maxSize, refreshExecutor, false, System::nanoTime);
+    }
+
+    CachingReviewService(ReviewService delegate, long ttl, TimeUnit unit, int maxSize,
+                         Executor refreshExecutor, boolean ownsExecutor, LongSupplier clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (ttl <= 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid time-to-live.");
+        } else if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid cache size.");
+        } else if (refreshExecutor == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.refreshExecutor = refreshExecutor;
+        this.ownsExecutor = ownsExecutor;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID) {
+            // Not cacheable; let the underlying service decide how to answer.
+            return fetch(ISBN);
+        }
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            if (clock.getAsLong() - entry.fetchedAt >= ttlNanos) {
+                refreshInBackground(key, ISBN, entry);
+            }
+            return entry.reviews;
+        }
+
+        misses.increment();
+        return load(key, ISBN);
+    }
+
+    /**
+     * Keeps the cached reviews. The cache is meant to outlive the per-request close done by {@code Library}.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Stops the background refresh executor if this cache created it. Cached entries stay available.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            ((ExecutorService) refreshExecutor).shutdown();
+        }
+    }
+
+    /**
+     * Drops the cached reviews of a book, so the next request fetches them again.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     */
+    public void invalidate(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Retrieves the cache's counters. Stale hits count as hits.
+     *
+     * @return A snapshot of the counters.
+     */
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    // Fetches the reviews on the calling thread, sharing the fetch with concurrent callers for the same book.
+    private List<String> load(long key, String ISBN) {
+        CompletableFuture<List<String>> created = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            List<String> reviews = fetch(ISBN);
+            store(key, reviews);
+            created.complete(reviews);
+            return reviews;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private void refreshInBackground(long key, String ISBN, Entry stale) {
+        // Only one refresh per stale entry, and none while a foreground fetch is running.
+        if (!stale.refreshing.compareAndSet(false, true) || inFlight.containsKey(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, ISBN);
+                } catch (RuntimeException e) {
+                    // Keep serving the stale entry; the next request starts another refresh.
+                    stale.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stale.refreshing.set(false);
+        }
+    }
+
+    // Fetches the reviews from the underlying service and closes it, one fetch at a time.
+    private List<String> fetch(String ISBN) {
+        synchronized (delegateLock) {
+            try {
+                return delegate.getReviewsForBook(ISBN);
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+
+    private void store(long key, List<String> reviews) {
+        Entry entry = new Entry(reviews == null ? null : Collections.unmodifiableList(new ArrayList<>(reviews)),
+                clock.getAsLong());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The cached reviews of one book.
+     */
+    private static final class Entry {
+        // The reviews as returned by the underlying service, possibly null.
+        final List<String> reviews;
+        // When the reviews were fetched, according to the cache's clock.
+        final long fetchedAt;
+        // Set while a background refresh of this entry is pending.
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<String> reviews, long fetchedAt) {
+            this.reviews = reviews;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.errors.ReviewCallRejectedException;
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Guards another review service with a circuit breaker and a concurrency bulkhead.
+ * <p>
+ * <ul>
+ *   <li>The outcomes of the last {@code windowSize} calls are tracked. Once at least {@code minimumCalls}
+ *   of them are recorded and the failure rate reaches {@code failureRateThreshold}, the circuit opens.</li>
+ *   <li>While open, calls are rejected without reaching the underlying service. After {@code openDuration}
+ *   the circuit becomes half-open and lets {@code halfOpenProbes} calls through. If they all succeed the
+ *   circuit closes again; any failure reopens it.</li>
+ *   <li>At most {@code maxConcurrentCalls} calls run at once; further calls are rejected immediately
+ *   instead of waiting.</li>
+ * </ul>
+ * Rejected calls throw {@link ReviewCallRejectedException}, a {@link ReviewException}, so {@code Library}
+ * reports them as an unavailable review service. Any runtime exception of the underlying service counts
+ * as a failure. State changes are reported to the registered {@link StateListener}s, and to the library's
+ * metrics through {@link #reportTo(LibraryMetrics)}.
+ */
+public class CircuitBreakerReviewService implements ReviewService {
+
+    /**
+     * The states of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Observes the state changes of a circuit.
+     * Listeners are called while the circuit's state is locked, so they should return quickly.
+     */
+    public interface StateListener {
+
+        /**
+         * Called after the circuit changed state.
+         *
+         * @param from The previous state.
+         * @param to   The new state.
+         */
+        void onStateChange(State from, State to);
+    }
+
+    // Returned by acquirePermission when the circuit refuses the call.
+    private static final long REJECTED = -1;
+
+    // The service that actually fetches reviews.
+    private final ReviewService delegate;
+    // Number of recent calls the failure rate is computed over.
+    private final int windowSize;
+    // Number of recorded calls required before the circuit may open.
+    private final int minimumCalls;
+    // Failure rate, between 0 and 1, at which the circuit opens.
+    private final double failureRateThreshold;
+    // How long the circuit stays open, in nanoseconds.
+    private final long openNanos;
+    // Number of successful probes required to close a half-open circuit.
+    private final int halfOpenProbes;
+    // Limits the number of concurrent calls.
+    private final Semaphore bulkhead;
+    // Source of the current time in nanoseconds.
+    private final LongSupplier clock;
+
+    private final CopyOnWriteArrayList<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    // The current state; written under the lock, read without it on the rejection fast path.
+    private volatile State state = State.CLOSED;
+    // When an open circuit becomes half-open.
+    private volatile long openUntil;
+
+    // Guarded by this: incremented on every state change, so calls admitted in an earlier state are ignored.
+    private long generation;
+    // Guarded by this: ring buffer of recent outcomes, true for a failure.
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    // Guarded by this: probes admitted and succeeded in the current half-open state.
+    private int probesAdmitted;
+    private int probesSucceeded;
+
+    private final LongAdder successfulCalls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder rejectedByCircuit = new LongAdder();
+    private final LongAdder rejectedByBulkhead = new LongAdder();
+
+    /**
+     * Constructs a new circuit breaker around a review service.
+     *
+     * @param delegate             The service that fetches reviews.
+     * @param windowSize           Number of recent calls the failure rate is computed over.
+     * @param minimumCalls         Number of recorded calls required before the circuit may open.
+     * @param failureRateThreshold Failure rate, between 0 and 1, at which the circuit opens.
+     * @param openDuration         How long the circuit stays open before probing.
+     * @param unit                 The unit of {@code openDuration}.
+     * @param halfOpenProbes       Number of successful probes required to close the circuit.
+     * @param maxConcurrentCalls   The maximum number of concurrent calls.
+     */
+    public CircuitBreakerReviewService(ReviewService delegate, int windowSize, int minimumCalls,
+                                       double failureRateThreshold, long openDuration, TimeUnit unit,
+                                       int halfOpenProbes, int maxConcurrentCalls) {
+        this(delegate, windowSize, minimumCalls, failureRateThreshold, openDuration, unit, halfOpenProbes,
+                maxConcurrentCalls, System::nanoTime);
+    }
+
+    CircuitBreakerReviewService(ReviewService delegate, int windowSize, int minimumCalls, double failureRateThreshold,
+                                long openDuration, TimeUnit unit, int halfOpenProbes, int maxConcurrentCalls,
+                                LongSupplier clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window size.");
+        } else if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+            throw new IllegalArgumentException("Invalid failure rate threshold.");
+        } else if (openDuration < 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid open duration.");
+        } else if (halfOpenProbes <= 0) {
+            throw new IllegalArgumentException("Invalid number of probes.");
+        } else if (maxConcurrentCalls <= 0) {
+            throw new IllegalArgumentException("Invalid number of concurrent calls.");
+        }
+        this.delegate = delegate;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        this.halfOpenProbes = halfOpenProbes;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.clock = clock;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Fetches the reviews from the underlying service if the circuit and the bulkhead allow it.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A list of reviews associated with the given book's ISBN.
+     * @throws ReviewCallRejectedException If the circuit is open or too many calls are running.
+     * @throws ReviewException             If the underlying service fails.
+     */
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        // Fast path: an open circuit rejects without taking any lock.
+        if (state == State.OPEN && clock.getAsLong() < openUntil) {
+            rejectedByCircuit.increment();
+            throw new ReviewCallRejectedException("Review circuit is open!");
+        }
+        if (!bulkhead.tryAcquire()) {
+            rejectedByBulkhead.increment();
+            throw new ReviewCallRejectedException("Review service is saturated!");
+        }
+        try {
+            long admitted = acquirePermission();
+            if (admitted == REJECTED) {
+                rejectedByCircuit.increment();
+                throw new ReviewCallRejectedException("Review circuit is open!");
+            }
+            List<String> reviews;
+            try {
+                reviews = delegate.getReviewsForBook(ISBN);
+            } catch (RuntimeException e) {
+                failedCalls.increment();
+                onFailure(admitted);
+                throw e;
+            }
+            successfulCalls.increment();
+            onSuccess(admitted);
+            return reviews;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Closes the underlying service.
+     */
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Registers a listener for state changes.
+     *
+     * @param listener The listener to notify.
+     */
+    public void addStateListener(StateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Invalid listener.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Reports every state change to the library's metrics, as an event named
+     * {@code review-circuit:<from>-><to>}.
+     *
+     * @param metrics The metrics to report to.
+     */
+    public void reportTo(LibraryMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Invalid metrics.");
+        }
+        addStateListener((from, to) -> metrics.recordEvent("review-circuit:" + from + "->" + to));
+    }
+
+    /**
+     * Retrieves the current state, moving an expired open circuit to half-open.
+     *
+     * @return The state of the circuit.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() >= openUntil) {
+            transition(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    /**
+     * Retrieves the number of calls the underlying service completed.
+     *
+     * @return The number of successful calls.
+     */
+    public long getSuccessfulCalls() {
+        return successfulCalls.sum();
+    }
+
+    /**
+     * Retrieves the number of calls the underlying service failed.
+     *
+     * @return The number of failed calls.
+     */
+    public long getFailedCalls() {
+        return failedCalls.sum();
+    }
+
+    /**
+     * Retrieves the number of calls rejected because the circuit was open.
+     *
+     * @return The number of calls rejected by the circuit.
+     */
+    public long getRejectedByCircuit() {
+        return rejectedByCircuit.sum();
+    }
+
+    /**
+     * Retrieves the number of calls rejected because too many calls were running.
+     *
+     * @return The number of calls rejected by the bulkhead.
+     */
+    public long getRejectedByBulkhead() {
+        return rejectedByBulkhead.sum();
+    }
+
+    // Admits a call and returns the generation it was admitted in, or REJECTED.
+    private synchronized long acquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() < openUntil) {
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesAdmitted >= halfOpenProbes) {
+                return REJECTED;
+            }
+            probesAdmitted++;
+        }
+        return generation;
+    }
+
+    private synchronized void onSuccess(long admitted) {
+        if (admitted != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded == halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+        } else {
+            record(false);
+        }
+    }
+
+    private synchronized void onFailure(long admitted) {
+        if (admitted != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    // Adds an outcome to the sliding window, replacing the oldest one once the window is full.
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        generation++;
+        if (to == State.OPEN) {
+            openUntil = clock.getAsLong() + openNanos;
+        } else if (to == State.HALF_OPEN) {
+            probesAdmitted = 0;
+            probesSucceeded = 0;
+        } else {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+        state = to;
+        for (StateListener listener : listeners) {
+            listener.onStateChange(from, to);
+        }
+    }
+}
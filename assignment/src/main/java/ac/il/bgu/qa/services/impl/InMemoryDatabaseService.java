@@ -0,0 +1,519 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.LoanIndex;
+import ac.il.bgu.qa.utils.LongIntHashMap;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * In-memory database of books and users keyed by packed ISBN and packed user Id.
+ * <p>
+ * Each record gets a dense ordinal on insertion. Open-addressing maps translate the packed key to that
+ * ordinal, records live in plain arrays indexed by it, and the persisted borrow state is one bit per
+ * book ordinal. Hyphenated and plain spellings of an ISBN therefore resolve to the same book.
+ * Who borrowed which book is kept in a {@link LoanIndex}.
+ * <p>
+ * The service is thread-safe. Lookups and borrow/return updates run optimistically and only fall back
+ * to a shared lock if they raced with an insertion, so they scale across cores; insertions are exclusive.
+ * The loan index has a lock of its own, held only for its O(1) updates.
+ */
+public class InMemoryDatabaseService implements DatabaseService {
+
+    // Guards the maps and arrays below. Only insertions take it exclusively.
+    private final StampedLock lock = new StampedLock();
+
+    // Maps the packed ISBN to the book's ordinal.
+    private final LongIntHashMap bookIndex;
+    // Books by ordinal.
+    private volatile Book[] books;
+    // Persisted borrow state, one bit per book ordinal.
+    private volatile AtomicLongArray borrowed;
+
+    // Maps the packed user Id to the user's ordinal.
+    private final LongIntHashMap userIndex;
+    // Users by ordinal.
+    private volatile User[] users;
+
+    // Active loans by packed ISBN and packed user Id, guarded by loanLock.
+    private final LoanIndex loans = new LoanIndex();
+    private final ReentrantLock loanLock = new ReentrantLock();
+
+    /**
+     * Constructs a new database sized for the expected number of books and users.
+     *
+     * @param expectedBooks The number of books to hold without resizing.
+     * @param expectedUsers The number of users to hold without resizing.
+     */
+    public InMemoryDatabaseService(int expectedBooks, int expectedUsers) {
+        this.bookIndex = new LongIntHashMap(expectedBooks);
+        this.books = new Book[Math.max(expectedBooks, 16)];
+        this.borrowed = new AtomicLongArray(wordsFor(books.length));
+        this.userIndex = new LongIntHashMap(expectedUsers);
+        this.users = new User[Math.max(expectedUsers, 16)];
+    }
+
+    /**
+     * Constructs a new database with a small default capacity.
+     */
+    public InMemoryDatabaseService() {
+        this(16, 16);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Adding a book under an ISBN that is already stored replaces it, along with its borrow state.
+     *
+     * @throws IllegalArgumentException If the ISBN is not a valid ISBN-13.
+     */
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        long stamp = lock.writeLock();
+        try {
+            putBook(key, book);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * All books are inserted under a single acquisition of the exclusive lock.
+     *
+     * @throws IllegalArgumentException If any ISBN is not a valid ISBN-13. No book is added in that case.
+     */
+    @Override
+    public void addBooks(Collection<Book> books) {
+        long[] keys = new long[books.size()];
+        int i = 0;
+        for (Book book : books) {
+            keys[i] = Isbn.pack(book.getISBN());
+            if (keys[i++] == IsbnValidator.INVALID) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            ensureBookCapacity(bookIndex.size() + keys.length);
+            i = 0;
+            for (Book book : books) {
+                putBook(keys[i++], book);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Registering a user under an Id that is already stored replaces it.
+     *
+     * @throws IllegalArgumentException If the Id is not a 12-digit number.
+     */
+    @Override
+    public void registerUser(String id, User user) {
+        long key = UserIdValidator.pack(id);
+        if (key == UserIdValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int ordinal = userIndex.get(key);
+            if (ordinal == LongIntHashMap.MISSING) {
+                ordinal = userIndex.size();
+                if (ordinal == users.length) {
+                    users = Arrays.copyOf(users, grow(users.length));
+                }
+                users[ordinal] = user;
+                userIndex.put(key, ordinal);
+            } else {
+                users[ordinal] = user;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        return key == IsbnValidator.INVALID ? null : getBookByISBN(key);
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        long stamp = lock.tryOptimisticRead();
+        Book book = findBook(ISBN);
+        if (lock.validate(stamp)) {
+            return book;
+        }
+        stamp = lock.readLock();
+        try {
+            return findBook(ISBN);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * All books are looked up under a single optimistic read.
+     */
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        long stamp = lock.tryOptimisticRead();
+        Map<String, Book> result = findBooks(ISBNs);
+        if (lock.validate(stamp)) {
+            return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return findBooks(ISBNs);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long key = UserIdValidator.pack(userId);
+        return key == UserIdValidator.INVALID ? null : getUserById(key);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        User user = findUser(userId);
+        if (lock.validate(stamp)) {
+            return user;
+        }
+        stamp = lock.readLock();
+        try {
+            return findUser(userId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long key = Isbn.pack(ISBN);
+        updateBorrowed(key, true);
+        long borrower = UserIdValidator.pack(userId);
+        loanLock.lock();
+        try {
+            if (borrower == UserIdValidator.INVALID) {
+                loans.returnBook(key);
+            } else {
+                loans.borrow(key, borrower);
+            }
+        } finally {
+            loanLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        updateBorrowed(key, false);
+        endLoan(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The lookup is O(1) in the primitive loan index.
+     */
+    @Override
+    public String getBorrowerId(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        long borrower;
+        loanLock.lock();
+        try {
+            borrower = loans.borrowerOf(key);
+        } finally {
+            loanLock.unlock();
+        }
+        return borrower == LoanIndex.NONE ? null : UserIdValidator.unpack(borrower);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The user's loans are chained in the primitive loan index, so listing them costs one step per loan.
+     */
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        long key = UserIdValidator.pack(userId);
+        long[] ISBNs;
+        loanLock.lock();
+        try {
+            ISBNs = loans.loansOf(key);
+        } finally {
+            loanLock.unlock();
+        }
+        List<String> result = new ArrayList<>(ISBNs.length);
+        for (long ISBN : ISBNs) {
+            result.add(Isbn.toString(ISBN));
+        }
+        return result;
+    }
+
+    /**
+     * Checks the persisted borrow state of a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return true if the book is recorded as borrowed, otherwise false.
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    public boolean isBorrowed(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        long stamp = lock.tryOptimisticRead();
+        int ordinal = key == IsbnValidator.INVALID ? LongIntHashMap.MISSING : bookIndex.get(key);
+        AtomicLongArray bits = borrowed;
+        boolean result = ordinal >= 0 && (ordinal >>> 6) < bits.length() && testBit(bits, ordinal);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ordinal = key == IsbnValidator.INVALID ? LongIntHashMap.MISSING : bookIndex.get(key);
+                result = ordinal >= 0 && testBit(borrowed, ordinal);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (ordinal < 0) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the number of stored books.
+     *
+     * @return The number of books.
+     */
+    public int bookCount() {
+        long stamp = lock.readLock();
+        try {
+            return bookIndex.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Retrieves the number of registered users.
+     *
+     * @return The number of users.
+     */
+    public int userCount() {
+        long stamp = lock.readLock();
+        try {
+            return userIndex.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits every stored book with its persisted borrow state, under the shared lock.
+     *
+     * @param visitor Receives each book and whether it is recorded as borrowed.
+     */
+    void forEachBook(BiConsumer<Book, Boolean> visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int ordinal = 0, count = bookIndex.size(); ordinal < count; ordinal++) {
+                visitor.accept(books[ordinal], testBit(borrowed, ordinal));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits every registered user, under the shared lock.
+     *
+     * @param visitor Receives each user.
+     */
+    void forEachUser(Consumer<User> visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int ordinal = 0, count = userIndex.size(); ordinal < count; ordinal++) {
+                visitor.accept(users[ordinal]);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Called with the write lock held.
+    private void putBook(long key, Book book) {
+        int ordinal = bookIndex.get(key);
+        if (ordinal == LongIntHashMap.MISSING) {
+            ordinal = bookIndex.size();
+            ensureBookCapacity(ordinal + 1);
+            books[ordinal] = book;
+            bookIndex.put(key, ordinal);
+        } else {
+            books[ordinal] = book;
+        }
+        if (book.isBorrowed()) {
+            setBit(borrowed, ordinal);
+        } else {
+            clearBit(borrowed, ordinal);
+            endLoan(key);
+        }
+    }
+
+    private void endLoan(long key) {
+        loanLock.lock();
+        try {
+            loans.returnBook(key);
+        } finally {
+            loanLock.unlock();
+        }
+    }
+
+    // Reads may race with an insertion; any inconsistency they observe is discarded by the caller's validation.
+    private Book findBook(long key) {
+        int ordinal = bookIndex.get(key);
+        Book[] snapshot = books;
+        return ordinal >= 0 && ordinal < snapshot.length ? snapshot[ordinal] : null;
+    }
+
+    private Map<String, Book> findBooks(Collection<String> ISBNs) {
+        Map<String, Book> result = new HashMap<>();
+        for (String ISBN : ISBNs) {
+            long key = Isbn.pack(ISBN);
+            Book book = key == IsbnValidator.INVALID ? null : findBook(key);
+            if (book != null) {
+                result.put(ISBN, book);
+            }
+        }
+        return result;
+    }
+
+    private User findUser(long key) {
+        int ordinal = userIndex.get(key);
+        User[] snapshot = users;
+        return ordinal >= 0 && ordinal < snapshot.length ? snapshot[ordinal] : null;
+    }
+
+    private void updateBorrowed(long key, boolean value) {
+        if (key == IsbnValidator.INVALID) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        // Setting or clearing a bit is idempotent, so an optimistic update that raced with a resize
+        // is simply repeated on the new bitset under the shared lock.
+        long stamp = lock.tryOptimisticRead();
+        int ordinal = bookIndex.get(key);
+        AtomicLongArray bits = borrowed;
+        if (ordinal >= 0 && (ordinal >>> 6) < bits.length()) {
+            writeBit(bits, ordinal, value);
+        }
+        if (lock.validate(stamp)) {
+            if (ordinal < 0) {
+                throw new BookNotFoundException("Book not found!");
+            }
+            return;
+        }
+        stamp = lock.readLock();
+        try {
+            ordinal = bookIndex.get(key);
+            if (ordinal < 0) {
+                throw new BookNotFoundException("Book not found!");
+            }
+            writeBit(borrowed, ordinal, value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Called with the write lock held.
+    private void ensureBookCapacity(int needed) {
+        if (needed <= books.length) {
+            return;
+        }
+        int capacity = grow(books.length);
+        while (capacity < needed) {
+            capacity = grow(capacity);
+        }
+        AtomicLongArray old = borrowed;
+        AtomicLongArray bits = new AtomicLongArray(wordsFor(capacity));
+        for (int i = 0; i < old.length(); i++) {
+            bits.set(i, old.get(i));
+        }
+        books = Arrays.copyOf(books, capacity);
+        borrowed = bits;
+    }
+
+    private static int grow(int length) {
+        if (length >= Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Database is full!");
+        }
+        return (int) Math.min((long) length << 1, Integer.MAX_VALUE - 8);
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean testBit(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void writeBit(AtomicLongArray bits, int index, boolean value) {
+        if (value) {
+            setBit(bits, index);
+        } else {
+            clearBit(bits, index);
+        }
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+        } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+    }
+
+    private static void clearBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+        } while ((current & mask) != 0 && !bits.compareAndSet(word, current, current & ~mask));
+    }
+}
@@ -0,0 +1,166 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.search.CatalogIndex;
+import ac.il.bgu.qa.services.DatabaseService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a {@link CatalogIndex} up to date with the books added to another database service.
+ * <p>
+ * Books are indexed once the underlying service accepted them. A book replacing another under the same
+ * ISBN is removed from the index under its old author and title before the new one is written, since a
+ * lazily decoded book (such as a {@code MappedBook}) would read the new record afterwards; if the write
+ * fails, it is indexed again. In a batch naming an ISBN more than once, only the last book is indexed.
+ * Everything else passes straight through. The index is only complete if all books are added through this
+ * decorator, including bulk imports. The decorator is thread-safe if the underlying service is, though a
+ * book added concurrently under the same ISBN by two threads may be indexed under both versions.
+ */
+public class IndexingDatabaseService implements DatabaseService {
+
+    // The service books are stored in.
+    private final DatabaseService delegate;
+    // The index of the stored books.
+    private final CatalogIndex index;
+
+    /**
+     * Constructs a new indexing decorator in front of a database service.
+     *
+     * @param delegate The service to store the books in.
+     * @param index    The index to maintain.
+     */
+    public IndexingDatabaseService(DatabaseService delegate, CatalogIndex index) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (index == null) {
+            throw new IllegalArgumentException("Invalid index.");
+        }
+        this.delegate = delegate;
+        this.index = index;
+    }
+
+    /**
+     * Retrieves the maintained index.
+     *
+     * @return The index of the stored books.
+     */
+    public CatalogIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        Book replaced = delegate.getBookByISBN(ISBN);
+        if (replaced != null) {
+            index.remove(replaced);
+        }
+        try {
+            delegate.addBook(ISBN, book);
+        } catch (RuntimeException e) {
+            if (replaced != null) {
+                index.add(replaced);
+            }
+            throw e;
+        }
+        index.add(book);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The books being replaced are looked up with one batched request.
+     */
+    @Override
+    public void addBooks(Collection<Book> books) {
+        // Keep the last book per ISBN, in either spelling, as that is the one the batch leaves stored.
+        Map<Long, Book> latest = new LinkedHashMap<>();
+        for (Book book : books) {
+            latest.put(Isbn.pack(book.getISBN()), book);
+        }
+        List<String> ISBNs = new ArrayList<>(latest.size());
+        for (Book book : latest.values()) {
+            ISBNs.add(book.getISBN());
+        }
+        Collection<Book> replaced = delegate.getBooksByISBN(ISBNs).values();
+        for (Book book : replaced) {
+            index.remove(book);
+        }
+        try {
+            delegate.addBooks(books);
+        } catch (RuntimeException e) {
+            for (Book book : replaced) {
+                index.add(book);
+            }
+            throw e;
+        }
+        for (Book book : latest.values()) {
+            index.add(book);
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        delegate.registerUser(id, user);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        return delegate.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        return delegate.getBooksByISBN(ISBNs);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public String getBorrowerId(String ISBN) {
+        return delegate.getBorrowerId(ISBN);
+    }
+
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        return delegate.getLoansByUserId(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        delegate.borrowBook(ISBN, userId);
+    }
+
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        delegate.borrowBooks(ISBNs, userId);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        delegate.returnBook(ISBN);
+    }
+
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        delegate.returnBooks(ISBNs);
+    }
+}
@@ -0,0 +1,78 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+
+/**
+ * A view of a book stored in a {@link MappedCatalogDatabaseService}.
+ * <p>
+ * The ISBN, title and author are decoded on first use. The borrow state is read and updated in the
+ * catalog itself, so all views of a book share it.
+ */
+final class MappedBook extends Book {
+
+    private final MappedCatalogDatabaseService catalog;
+    // The index slot of the book in the catalog.
+    private final int slot;
+    private final long packedISBN;
+
+    // Decoded on first use; racing threads decode equal values.
+    private String ISBN;
+    private String title;
+    private String author;
+    // Written after title and author, publishing them to other threads.
+    private volatile boolean decoded;
+
+    MappedBook(MappedCatalogDatabaseService catalog, int slot, long packedISBN) {
+        super(null, null, null);
+        this.catalog = catalog;
+        this.slot = slot;
+        this.packedISBN = packedISBN;
+    }
+
+    @Override
+    public String getISBN() {
+        String result = ISBN;
+        if (result == null) {
+            ISBN = result = Isbn.toString(packedISBN);
+        }
+        return result;
+    }
+
+    @Override
+    public String getTitle() {
+        decode();
+        return title;
+    }
+
+    @Override
+    public String getAuthor() {
+        decode();
+        return author;
+    }
+
+    @Override
+    public boolean isBorrowed() {
+        return catalog.isBorrowed(slot);
+    }
+
+    @Override
+    public boolean tryBorrow() {
+        return catalog.compareAndSetBorrowed(slot, false, true);
+    }
+
+    @Override
+    public boolean tryReturn() {
+        return catalog.compareAndSetBorrowed(slot, true, false);
+    }
+
+    private void decode() {
+        if (!decoded) {
+            // Both strings come from the same record, even if the book is replaced meanwhile.
+            long offset = catalog.recordOffset(slot);
+            title = catalog.readString(offset);
+            author = catalog.readString(catalog.nextString(offset));
+            decoded = true;
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.LoanIndex;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Book catalog stored off-heap in memory-mapped files, so millions of books cost no heap and no GC work.
+ * <p>
+ * The index file {@code catalog.idx} is a fixed-size open-addressing table of 16-byte slots keyed by
+ * packed ISBN. Each slot holds the key and the offset of the book's record in {@code catalog.dat}, with
+ * the borrow state in the lowest bit. Records hold the UTF-8 title and author and are never modified;
+ * replacing a book appends a new record. Opening an existing catalog only maps the files, without
+ * reading them, so startup does not depend on the catalog size.
+ * <p>
+ * {@link #getBookByISBN(String)} returns a small view that decodes the title and author on first use.
+ * The borrow state of every view is the state stored in the slot, so views of the same book obtained by
+ * different callers borrow and return it atomically, like a shared {@link Book} instance would. A
+ * borrow claimed through a view is therefore persisted immediately, before {@link #borrowBook} is called.
+ * <p>
+ * Writes reach the page cache at once and survive a crash of the process; {@link #flush()} forces them
+ * to disk. Users cannot be stored off-heap, since their notification service is a live object, so they
+ * are kept on the heap and are not persisted, and so is who borrowed which book. The service is thread-safe.
+ */
+public class MappedCatalogDatabaseService implements DatabaseService, Closeable {
+
+    // The largest number of books a catalog can hold, keeping the index file under 2 GB.
+    public static final int MAX_CAPACITY = 1 << 25;
+
+    // Identifies the index file and its format.
+    private static final int MAGIC = 0x43415431;
+    // Index header: magic, slot count, book count, then the end of the data file.
+    private static final int HEADER = 32;
+    private static final int SLOT_COUNT_OFFSET = 4;
+    private static final int SIZE_OFFSET = 8;
+    private static final int DATA_END_OFFSET = 16;
+    // Each slot holds the packed ISBN + 1 (0 when empty) and the record offset shifted left by one,
+    // with the borrow state in the lowest bit.
+    private static final int SLOT = 16;
+    // The data file is mapped in chunks of this size; a record never crosses a chunk.
+    private static final int CHUNK_SIZE = 1 << 26;
+    // Strings are stored with a 2-byte length, -1 standing for null.
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+    private static final int STRIPES = 64;
+
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer index;
+    private final int mask;
+    // Grows when a record does not fit in the last chunk; chunks are never unmapped.
+    private volatile MappedByteBuffer[] chunks;
+
+    // Guards the index structure. Only insertions take it exclusively.
+    private final StampedLock lock = new StampedLock();
+    // Guard the borrow state of the slots, striped by slot number.
+    private final Object[] stripes = new Object[STRIPES];
+
+    // Users are live objects and stay on the heap.
+    private final InMemoryDatabaseService users = new InMemoryDatabaseService();
+    // Active loans, on the heap as well; guarded by its own monitor.
+    private final LoanIndex loans = new LoanIndex();
+
+    /**
+     * Opens the catalog in a directory, creating it with room for {@code capacity} books if it does not
+     * exist. An existing catalog keeps the capacity it was created with.
+     *
+     * @param directory The directory holding the catalog files.
+     * @param capacity  The number of books a new catalog can hold.
+     * @throws UncheckedIOException If the catalog files cannot be opened.
+     */
+    public MappedCatalogDatabaseService(Path directory, int capacity) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Invalid directory.");
+        } else if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        try {
+            Files.createDirectories(directory);
+            Path indexPath = directory.resolve("catalog.idx");
+            boolean exists = Files.exists(indexPath);
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            dataChannel = FileChannel.open(directory.resolve("catalog.dat"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int slotCount;
+            if (exists) {
+                MappedByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+                slotCount = header.getInt(SLOT_COUNT_OFFSET);
+                if (header.getInt(0) != MAGIC || Integer.bitCount(slotCount) != 1
+                        || indexChannel.size() != HEADER + (long) slotCount * SLOT) {
+                    throw new IOException("Invalid catalog index " + indexPath + "!");
+                }
+            } else {
+                slotCount = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            }
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) slotCount * SLOT);
+            if (!exists) {
+                index.putInt(SLOT_COUNT_OFFSET, slotCount);
+                index.putInt(0, MAGIC);
+            }
+            mask = slotCount - 1;
+            long dataEnd = index.getLong(DATA_END_OFFSET);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[(int) (dataEnd / CHUNK_SIZE) + 1];
+            for (int i = 0; i < mapped.length; i++) {
+                mapped[i] = mapChunk(i);
+            }
+            chunks = mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open catalog in " + directory + "!", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Adding a book under an ISBN that is already stored replaces it, along with its borrow state.
+     *
+     * @throws IllegalArgumentException If the ISBN is not a valid ISBN-13, or the title or author is too long.
+     * @throws IllegalStateException    If the catalog is full.
+     */
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        byte[] title = encode(book.getTitle(), "Title too long.");
+        byte[] author = encode(book.getAuthor(), "Author too long.");
+        long stamp = lock.writeLock();
+        try {
+            putBook(key, title, author, book.isBorrowed());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * All books are inserted under a single acquisition of the exclusive lock.
+     *
+     * @throws IllegalArgumentException If any ISBN is not valid, or any title or author is too long.
+     *                                  No book is added in that case.
+     * @throws IllegalStateException    If the catalog becomes full. The books before it are added.
+     */
+    @Override
+    public void addBooks(Collection<Book> books) {
+        long[] keys = new long[books.size()];
+        byte[][] strings = new byte[keys.length * 2][];
+        int i = 0;
+        for (Book book : books) {
+            keys[i] = Isbn.pack(book.getISBN());
+            if (keys[i] == IsbnValidator.INVALID) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
+            strings[2 * i] = encode(book.getTitle(), "Title too long.");
+            strings[2 * i + 1] = encode(book.getAuthor(), "Author too long.");
+            i++;
+        }
+        long stamp = lock.writeLock();
+        try {
+            i = 0;
+            for (Book book : books) {
+                putBook(keys[i], strings[2 * i], strings[2 * i + 1], book.isBorrowed());
+                i++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Users are kept on the heap and are not persisted.
+     *
+     * @throws IllegalArgumentException If the Id is not a 12-digit number.
+     */
+    @Override
+    public void registerUser(String id, User user) {
+        users.registerUser(id, user);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each call returns a new view backed by the mapped catalog.
+     */
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        return key == IsbnValidator.INVALID ? null : getBookByISBN(key);
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        int slot = findSlot(ISBN);
+        return slot < 0 ? null : new MappedBook(this, slot, ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return users.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return users.getUserById(userId);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        setBorrowed(requireSlot(ISBN), true);
+        long key = Isbn.pack(ISBN);
+        long borrower = UserIdValidator.pack(userId);
+        synchronized (loans) {
+            if (borrower == UserIdValidator.INVALID) {
+                loans.returnBook(key);
+            } else {
+                loans.borrow(key, borrower);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        setBorrowed(requireSlot(ISBN), false);
+        synchronized (loans) {
+            loans.returnBook(Isbn.pack(ISBN));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Loans are kept on the heap and are not persisted.
+     */
+    @Override
+    public String getBorrowerId(String ISBN) {
+        long borrower;
+        synchronized (loans) {
+            borrower = loans.borrowerOf(Isbn.pack(ISBN));
+        }
+        return borrower == LoanIndex.NONE ? null : UserIdValidator.unpack(borrower);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Loans are kept on the heap and are not persisted.
+     */
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        long[] ISBNs;
+        synchronized (loans) {
+            ISBNs = loans.loansOf(UserIdValidator.pack(userId));
+        }
+        List<String> result = new ArrayList<>(ISBNs.length);
+        for (long ISBN : ISBNs) {
+            result.add(Isbn.toString(ISBN));
+        }
+        return result;
+    }
+
+    /**
+     * Checks the stored borrow state of a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return true if the book is recorded as borrowed, otherwise false.
+     * @throws BookNotFoundException If no book is stored under the ISBN.
+     */
+    public boolean isBorrowed(String ISBN) {
+        return isBorrowed(requireSlot(ISBN));
+    }
+
+    /**
+     * Retrieves the number of stored books.
+     *
+     * @return The number of books.
+     */
+    public int bookCount() {
+        long stamp = lock.readLock();
+        try {
+            return index.getInt(SIZE_OFFSET);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forces all changes to the catalog files to disk.
+     */
+    public void flush() {
+        long stamp = lock.readLock();
+        try {
+            index.force();
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Flushes the catalog and closes its files. The mappings are released once they are garbage collected,
+     * and views obtained before must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        flush();
+        try {
+            indexChannel.close();
+            dataChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close catalog!", e);
+        }
+    }
+
+    boolean isBorrowed(int slot) {
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            return (index.getLong(valueOffset(slot)) & 1) != 0;
+        }
+    }
+
+    boolean compareAndSetBorrowed(int slot, boolean expected, boolean borrowed) {
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            long value = index.getLong(valueOffset(slot));
+            if (((value & 1) != 0) != expected) {
+                return false;
+            }
+            index.putLong(valueOffset(slot), value & ~1L | (borrowed ? 1 : 0));
+            return true;
+        }
+    }
+
+    long recordOffset(int slot) {
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            return index.getLong(valueOffset(slot)) >>> 1;
+        }
+    }
+
+    // Records are immutable once their slot is published, so they are read without the lock.
+    String readString(long offset) {
+        MappedByteBuffer chunk = chunks[(int) (offset / CHUNK_SIZE)];
+        int position = (int) (offset % CHUNK_SIZE);
+        int length = chunk.getShort(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long nextString(long offset) {
+        int length = chunks[(int) (offset / CHUNK_SIZE)].getShort((int) (offset % CHUNK_SIZE));
+        return offset + 2 + Math.max(length, 0);
+    }
+
+    private void setBorrowed(int slot, boolean borrowed) {
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            long value = index.getLong(valueOffset(slot));
+            index.putLong(valueOffset(slot), value & ~1L | (borrowed ? 1 : 0));
+        }
+    }
+
+    private int requireSlot(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        int slot = key == IsbnValidator.INVALID ? -1 : findSlot(key);
+        if (slot < 0) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        return slot;
+    }
+
+    private int findSlot(long key) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = probe(key);
+        if (lock.validate(stamp)) {
+            return slot;
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Reads may race with an insertion; any inconsistency they observe is discarded by the caller's validation.
+    private int probe(long key) {
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long stored = index.getLong(keyOffset(slot));
+            if (stored == key + 1) {
+                return slot;
+            } else if (stored == 0) {
+                return -1;
+            }
+        }
+    }
+
+    // Called with the write lock held. The record and the header are written before the slot,
+    // so a crash never leaves a slot pointing past the end of the data.
+    private void putBook(long key, byte[] title, byte[] author, boolean borrowed) {
+        int slot = mix(key) & mask;
+        long stored;
+        while ((stored = index.getLong(keyOffset(slot))) != 0 && stored != key + 1) {
+            slot = (slot + 1) & mask;
+        }
+        int size = index.getInt(SIZE_OFFSET);
+        // Keep the load factor at or below 0.5 so probes stay short.
+        if (stored == 0 && size >= (mask + 1) / 2) {
+            throw new IllegalStateException("Catalog is full!");
+        }
+        long offset = appendRecord(title, author);
+        synchronized (stripes[slot & (STRIPES - 1)]) {
+            index.putLong(valueOffset(slot), offset << 1 | (borrowed ? 1 : 0));
+        }
+        if (stored == 0) {
+            index.putLong(keyOffset(slot), key + 1);
+            index.putInt(SIZE_OFFSET, size + 1);
+        }
+        if (!borrowed) {
+            synchronized (loans) {
+                loans.returnBook(key);
+            }
+        }
+    }
+
+    // Called with the write lock held.
+    private long appendRecord(byte[] title, byte[] author) {
+        int length = 4 + (title == null ? 0 : title.length) + (author == null ? 0 : author.length);
+        long end = index.getLong(DATA_END_OFFSET);
+        if (end % CHUNK_SIZE + length > CHUNK_SIZE) {
+            end = (end / CHUNK_SIZE + 1) * CHUNK_SIZE;
+        }
+        int chunkIndex = (int) (end / CHUNK_SIZE);
+        if (chunkIndex == chunks.length) {
+            try {
+                MappedByteBuffer[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+                grown[chunkIndex] = mapChunk(chunkIndex);
+                chunks = grown;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to grow catalog!", e);
+            }
+        }
+        MappedByteBuffer chunk = chunks[chunkIndex];
+        int position = putString(chunk, (int) (end % CHUNK_SIZE), title);
+        putString(chunk, position, author);
+        index.putLong(DATA_END_OFFSET, end + length);
+        return end;
+    }
+
+    private MappedByteBuffer mapChunk(int chunkIndex) throws IOException {
+        return dataChannel.map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * CHUNK_SIZE, CHUNK_SIZE);
+    }
+
+    private static int putString(MappedByteBuffer chunk, int position, byte[] bytes) {
+        if (bytes == null) {
+            chunk.putShort(position, (short) -1);
+            return position + 2;
+        }
+        chunk.putShort(position, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            chunk.put(position + 2 + i, bytes[i]);
+        }
+        return position + 2 + bytes.length;
+    }
+
+    private static byte[] encode(String value, String tooLong) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(tooLong);
+        }
+        return bytes;
+    }
+
+    private static int keyOffset(int slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private static int valueOffset(int slot) {
+        return HEADER + slot * SLOT + 8;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,441 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.concurrency.Threads;
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Serves reviews from a bounded pool of review service sessions.
+ * <p>
+ * Each session is a review service created by the factory, and closing it tears the session down.
+ * The first {@link #getReviewsForBook(String)} call of a thread leases a session, which the thread keeps
+ * until it calls {@link #close()}; that call returns the session to the pool instead of tearing it down.
+ * This matches how {@code Library} fetches reviews and closes the service afterwards, so a library using
+ * this pool reuses sessions without any change.
+ * <p>
+ * <ul>
+ *   <li>At most {@code maxSize} sessions exist. A thread that needs one while all are leased waits up to
+ *   the acquire timeout and then fails with a {@link ReviewException}.</li>
+ *   <li>Idle sessions are reused most recently returned first, and torn down after being idle for
+ *   {@code idleTimeout}.</li>
+ *   <li>Sessions older than {@code maxLifetime} are torn down instead of being reused.</li>
+ *   <li>A session that failed a call is torn down when it is returned.</li>
+ *   <li>A session leased for longer than {@code leakThreshold} is reported as leaked once.</li>
+ * </ul>
+ * Idle eviction and leak detection run on a daemon thread. {@link #shutdown()} stops it and tears down
+ * the idle sessions.
+ */
+public class PooledReviewService implements ReviewService {
+
+    // Creates new sessions.
+    private final Supplier<ReviewService> factory;
+    // The maximum number of sessions, leased or idle.
+    private final int maxSize;
+    // Time limits, in nanoseconds.
+    private final long acquireTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final long leakThresholdNanos;
+    // Source of the current time in nanoseconds.
+    private final LongSupplier clock;
+    // Runs maintenance, if this pool created it.
+    private final ScheduledExecutorService maintenance;
+
+    // The session leased by each thread.
+    private final ThreadLocal<Session> lease = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    // Guarded by lock: idle sessions, the most recently returned one last.
+    private final ArrayDeque<Session> idle = new ArrayDeque<>();
+    // Guarded by lock: leased sessions.
+    private final Set<Session> leased = new HashSet<>();
+    // Guarded by lock: sessions being created, counted against maxSize.
+    private int creating;
+    // Guarded by lock: whether the pool was shut down.
+    private boolean shutdown;
+
+    // Guarded by lock.
+    private long created;
+    private long destroyed;
+    private long leases;
+    private long waits;
+    private long leaks;
+
+    /**
+     * Constructs a new pool that runs its maintenance every second on a daemon thread.
+     *
+     * @param factory        Creates new sessions.
+     * @param maxSize        The maximum number of sessions.
+     * @param acquireTimeout How long a thread waits for a session when all are leased.
+     * @param idleTimeout    How long a session may stay idle.
+     * @param maxLifetime    How long a session may be used.
+     * @param leakThreshold  How long a session may stay leased before it is reported as leaked.
+     * @param unit           The unit of the time limits.
+     */
+    public PooledReviewService(Supplier<ReviewService> factory, int maxSize, long acquireTimeout, long idleTimeout,
+                               long maxLifetime, long leakThreshold, TimeUnit unit) {
+        this(factory, maxSize, acquireTimeout, idleTimeout, maxLifetime, leakThreshold, unit, System::nanoTime,
+                Executors.newSingleThreadScheduledExecutor(Threads.daemonThreadFactory("review-pool")));
+        maintenance.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.SECONDS);
+    }
+
+    PooledReviewService(Supplier<ReviewService> factory, int maxSize, long acquireTimeout, long idleTimeout,
+                        long maxLifetime, long leakThreshold, TimeUnit unit, LongSupplier clock,
+                        ScheduledExecutorService maintenance) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Invalid review service factory.");
+        } else if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool size.");
+        } else if (acquireTimeout < 0 || idleTimeout <= 0 || maxLifetime <= 0 || leakThreshold <= 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid time limit.");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = unit.toNanos(acquireTimeout);
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.maxLifetimeNanos = unit.toNanos(maxLifetime);
+        this.leakThresholdNanos = unit.toNanos(leakThreshold);
+        this.clock = clock;
+        this.maintenance = maintenance;
+    }
+
+    /**
+     * Fetches the reviews through the session leased by the calling thread, leasing one if needed.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A list of reviews associated with the given book's ISBN.
+     * @throws ReviewException If no session is available in time or the session fails.
+     */
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        Session session = lease.get();
+        if (session == null) {
+            session = acquire();
+            lease.set(session);
+        }
+        try {
+            return session.service.getReviewsForBook(ISBN);
+        } catch (RuntimeException e) {
+            session.broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the session leased by the calling thread to the pool. Does nothing if the thread holds none.
+     */
+    @Override
+    public void close() {
+        Session session = lease.get();
+        if (session == null) {
+            return;
+        }
+        lease.remove();
+        release(session);
+    }
+
+    /**
+     * Tears down idle and expired sessions and reports leaked ones.
+     * Runs periodically; may also be called directly.
+     */
+    public void maintain() {
+        List<Session> expired = new ArrayList<>();
+        List<Session> leakedNow = new ArrayList<>();
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            for (Iterator<Session> it = idle.iterator(); it.hasNext(); ) {
+                Session session = it.next();
+                if (isExpired(session, now) || now - session.returnedAt >= idleTimeoutNanos) {
+                    it.remove();
+                    expired.add(session);
+                }
+            }
+            for (Session session : leased) {
+                if (!session.reportedLeak && now - session.leasedAt >= leakThresholdNanos) {
+                    session.reportedLeak = true;
+                    leaks++;
+                    leakedNow.add(session);
+                }
+            }
+            destroyed += expired.size();
+        } finally {
+            lock.unlock();
+        }
+        for (Session session : leakedNow) {
+            System.err.println("Review session leased by " + session.holder
+                    + " was not returned within the leak threshold.");
+        }
+        expired.forEach(PooledReviewService::tearDown);
+    }
+
+    /**
+     * Stops the maintenance and tears down the idle sessions. Leased sessions are torn down when returned.
+     */
+    public void shutdown() {
+        List<Session> sessions;
+        lock.lock();
+        try {
+            shutdown = true;
+            sessions = new ArrayList<>(idle);
+            idle.clear();
+            destroyed += sessions.size();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+        sessions.forEach(PooledReviewService::tearDown);
+    }
+
+    /**
+     * Retrieves the number of sessions that exist, leased or idle.
+     *
+     * @return The pool size.
+     */
+    public int getSize() {
+        lock.lock();
+        try {
+            return idle.size() + leased.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of idle sessions.
+     *
+     * @return The number of idle sessions.
+     */
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of sessions the factory created.
+     *
+     * @return The number of created sessions.
+     */
+    public long getCreated() {
+        lock.lock();
+        try {
+            return created;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of sessions that were torn down.
+     *
+     * @return The number of destroyed sessions.
+     */
+    public long getDestroyed() {
+        lock.lock();
+        try {
+            return destroyed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of leases granted.
+     *
+     * @return The number of leases.
+     */
+    public long getLeases() {
+        lock.lock();
+        try {
+            return leases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of leases that had to wait for a session to be returned.
+     *
+     * @return The number of waiting leases.
+     */
+    public long getWaits() {
+        lock.lock();
+        try {
+            return waits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of sessions reported as leaked.
+     *
+     * @return The number of leaks.
+     */
+    public long getLeaks() {
+        lock.lock();
+        try {
+            return leaks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Session acquire() {
+        List<Session> expired = new ArrayList<>();
+        boolean create = false;
+        Session session = null;
+        lock.lock();
+        try {
+            long remaining = acquireTimeoutNanos;
+            boolean waited = false;
+            while (session == null && !create) {
+                if (shutdown) {
+                    throw new ReviewException("Review session pool is shut down!");
+                }
+                long now = clock.getAsLong();
+                Session candidate;
+                while ((candidate = idle.pollLast()) != null) {
+                    if (isExpired(candidate, now)) {
+                        expired.add(candidate);
+                        destroyed++;
+                    } else {
+                        session = candidate;
+                        break;
+                    }
+                }
+                if (session == null) {
+                    if (idle.size() + leased.size() + creating < maxSize) {
+                        creating++;
+                        create = true;
+                    } else if (remaining <= 0) {
+                        throw new ReviewException("Review session pool exhausted!");
+                    } else {
+                        waited = true;
+                        remaining = returned.awaitNanos(remaining);
+                    }
+                }
+            }
+            if (waited) {
+                waits++;
+            }
+            if (session != null) {
+                lease(session);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReviewException("Interrupted while waiting for a review session!");
+        } finally {
+            lock.unlock();
+            expired.forEach(PooledReviewService::tearDown);
+        }
+        return create ? create() : session;
+    }
+
+    // Creates a session outside the lock; its slot was reserved through 'creating'.
+    private Session create() {
+        ReviewService service;
+        try {
+            service = factory.get();
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                creating--;
+                returned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        Session session = new Session(service, clock.getAsLong());
+        lock.lock();
+        try {
+            creating--;
+            created++;
+            lease(session);
+        } finally {
+            lock.unlock();
+        }
+        return session;
+    }
+
+    // Guarded by lock.
+    private void lease(Session session) {
+        session.leasedAt = clock.getAsLong();
+        session.holder = Thread.currentThread().getName();
+        session.reportedLeak = false;
+        leased.add(session);
+        leases++;
+    }
+
+    private void release(Session session) {
+        long now = clock.getAsLong();
+        boolean discard;
+        lock.lock();
+        try {
+            leased.remove(session);
+            discard = shutdown || session.broken || isExpired(session, now);
+            if (discard) {
+                destroyed++;
+            } else {
+                session.returnedAt = now;
+                idle.addLast(session);
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (discard) {
+            tearDown(session);
+        }
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.createdAt >= maxLifetimeNanos;
+    }
+
+    private static void tearDown(Session session) {
+        try {
+            session.service.close();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to close review session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A review service created by the factory, with its pool bookkeeping.
+     */
+    private static final class Session {
+        final ReviewService service;
+        final long createdAt;
+        // Guarded by the pool lock.
+        long leasedAt;
+        long returnedAt;
+        String holder;
+        boolean reportedLeak;
+        // Set by the leasing thread only.
+        volatile boolean broken;
+
+        Session(ReviewService service, long createdAt) {
+            this.service = service;
+            this.createdAt = createdAt;
+        }
+    }
+}
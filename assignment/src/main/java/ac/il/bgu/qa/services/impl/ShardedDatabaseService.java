@@ -0,0 +1,460 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.ConsistentHashRing;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.LoanIndex;
+import ac.il.bgu.qa.utils.LongIntHashMap;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Partitions books and users across several database services by consistent hashing.
+ * <p>
+ * Books are placed by their packed ISBN and users by their packed user Id, so a book's loans are recorded
+ * on the book's shard while its borrower may live on another one. Reads go straight to the owning shard.
+ * Writes lock only the owning shard, so writes to different shards do not contend.
+ * <p>
+ * {@link #addShard(DatabaseService)} moves only the books and users the new shard takes over, about
+ * {@code 1 / (shards + 1)} of them. To find them, each shard's keys and loans are tracked here. The moved
+ * records are looked up by their canonical 13-digit ISBN or 12-digit Id, as
+ * {@link InMemoryDatabaseService} stores them. Since {@link DatabaseService} cannot delete, the old shard
+ * keeps an unreachable copy.
+ */
+public class ShardedDatabaseService implements DatabaseService {
+
+    // Points per shard on the ring; enough to keep shard sizes within a few percent of each other.
+    static final int VIRTUAL_NODES = 128;
+
+    // Serializes topology changes.
+    private final Object topologyLock = new Object();
+    // The current ring and shards, replaced as a whole when a shard is added.
+    private volatile Topology topology;
+
+    /**
+     * Constructs a sharded database over the given shards.
+     *
+     * @param shards The initial shards; at least one.
+     */
+    public ShardedDatabaseService(List<? extends DatabaseService> shards) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("Invalid shard list.");
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(VIRTUAL_NODES);
+        Shard[] array = new Shard[shards.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new Shard(requireShard(shards.get(i)));
+            ring = ring.withNode(i);
+        }
+        topology = new Topology(ring, array);
+    }
+
+    /**
+     * Adds a shard and moves the books and users it now owns onto it.
+     * Writes to the existing shards wait until the move is complete; reads continue meanwhile.
+     *
+     * @param shard The new, empty shard.
+     * @return The number of books and users moved.
+     */
+    public int addShard(DatabaseService shard) {
+        requireShard(shard);
+        synchronized (topologyLock) {
+            Topology old = topology;
+            int node = old.shards.length;
+            ConsistentHashRing ring = old.ring.withNode(node);
+            Shard target = new Shard(shard);
+            Shard[] shards = Arrays.copyOf(old.shards, node + 1);
+            shards[node] = target;
+
+            for (Shard source : old.shards) {
+                source.lock.lock();
+            }
+            try {
+                // Copy everything first; the bookkeeping only changes once every copy succeeded.
+                List<long[]> moved = new ArrayList<>(old.shards.length);
+                int count = 0;
+                for (Shard source : old.shards) {
+                    long[] books = keysMovingTo(source.books, ring, node);
+                    long[] users = keysMovingTo(source.users, ring, node);
+                    for (long key : books) {
+                        String ISBN = Isbn.toString(key);
+                        target.service.addBook(ISBN, source.service.getBookByISBN(ISBN));
+                        long borrower = source.loans.borrowerOf(key);
+                        if (borrower != LoanIndex.NONE) {
+                            target.service.borrowBook(ISBN, UserIdValidator.unpack(borrower));
+                        }
+                    }
+                    for (long key : users) {
+                        String userId = UserIdValidator.unpack(key);
+                        target.service.registerUser(userId, source.service.getUserById(userId));
+                    }
+                    moved.add(books);
+                    moved.add(users);
+                    count += books.length + users.length;
+                }
+                for (int i = 0; i < old.shards.length; i++) {
+                    Shard source = old.shards[i];
+                    for (long key : moved.get(2 * i)) {
+                        source.books.remove(key);
+                        target.books.put(key, 0);
+                        long borrower = source.loans.returnBook(key);
+                        if (borrower != LoanIndex.NONE) {
+                            target.loans.borrow(key, borrower);
+                        }
+                    }
+                    for (long key : moved.get(2 * i + 1)) {
+                        source.users.remove(key);
+                        target.users.put(key, 0);
+                    }
+                }
+                topology = new Topology(ring, shards);
+                return count;
+            } finally {
+                for (Shard source : old.shards) {
+                    source.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return topology.shards.length;
+    }
+
+    /**
+     * Finds the shard that owns a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The index of the shard, in the order the shards were added.
+     */
+    public int shardOfBook(String ISBN) {
+        return topology.ring.nodeFor(IsbnValidator.pack(ISBN));
+    }
+
+    /**
+     * Finds the shard that owns a user.
+     *
+     * @param userId The unique identifier of the user.
+     * @return The index of the shard, in the order the shards were added.
+     */
+    public int shardOfUser(String userId) {
+        return topology.ring.nodeFor(UserIdValidator.pack(userId));
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long key = IsbnValidator.pack(ISBN);
+        Shard shard = lockShard(key);
+        try {
+            shard.service.addBook(ISBN, book);
+            if (key != IsbnValidator.INVALID) {
+                shard.books.put(key, 0);
+                if (!book.isBorrowed()) {
+                    shard.loans.returnBook(key);
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        long key = UserIdValidator.pack(id);
+        Shard shard = lockShard(key);
+        try {
+            shard.service.registerUser(id, user);
+            if (key != UserIdValidator.INVALID) {
+                shard.users.put(key, 0);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return shardFor(IsbnValidator.pack(ISBN)).service.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return shardFor(UserIdValidator.pack(userId)).service.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long key = IsbnValidator.pack(ISBN);
+        Shard shard = lockShard(key);
+        try {
+            shard.service.borrowBook(ISBN, userId);
+            recordLoan(shard, key, userId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        long key = IsbnValidator.pack(ISBN);
+        Shard shard = lockShard(key);
+        try {
+            shard.service.returnBook(ISBN);
+            shard.loans.returnBook(key);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the books with one batched request per shard.
+     *
+     * @param books The books to be added.
+     */
+    @Override
+    public void addBooks(Collection<Book> books) {
+        inShards(books, book -> IsbnValidator.pack(book.getISBN()), (shard, group) -> {
+            shard.service.addBooks(group);
+            for (Book book : group) {
+                long key = IsbnValidator.pack(book.getISBN());
+                if (key != IsbnValidator.INVALID) {
+                    shard.books.put(key, 0);
+                    if (!book.isBorrowed()) {
+                        shard.loans.returnBook(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches the books with one batched request per shard.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to fetch.
+     * @return The books that exist, keyed by the ISBN they were requested with, in request order.
+     */
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        Topology current = topology;
+        List<String>[] groups = group(ISBNs, IsbnValidator::pack, current);
+        Map<String, Book> found = new HashMap<>();
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] != null) {
+                found.putAll(current.shards[i].service.getBooksByISBN(groups[i]));
+            }
+        }
+        Map<String, Book> books = new LinkedHashMap<>();
+        for (String ISBN : ISBNs) {
+            Book book = found.get(ISBN);
+            if (book != null) {
+                books.put(ISBN, book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Borrows the books with one batched request per shard.
+     *
+     * @param ISBNs  The International Standard Book Numbers of the books to be borrowed.
+     * @param userId The unique identifier for the user borrowing the books.
+     */
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        inShards(ISBNs, IsbnValidator::pack, (shard, group) -> {
+            shard.service.borrowBooks(group, userId);
+            for (String ISBN : group) {
+                recordLoan(shard, IsbnValidator.pack(ISBN), userId);
+            }
+        });
+    }
+
+    /**
+     * Returns the books with one batched request per shard.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to be returned.
+     */
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        inShards(ISBNs, IsbnValidator::pack, (shard, group) -> {
+            shard.service.returnBooks(group);
+            for (String ISBN : group) {
+                shard.loans.returnBook(IsbnValidator.pack(ISBN));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * The borrower is looked up in the loan index of the book's shard.
+     */
+    @Override
+    public String getBorrowerId(String ISBN) {
+        long key = IsbnValidator.pack(ISBN);
+        Shard shard = lockShard(key);
+        try {
+            long borrower = shard.loans.borrowerOf(key);
+            return borrower == LoanIndex.NONE ? null : UserIdValidator.unpack(borrower);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * A user's loans are recorded on the shards of the books, so every shard is asked. The books are
+     * listed shard by shard, each in the order they were borrowed.
+     */
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        long key = UserIdValidator.pack(userId);
+        List<String> ISBNs = new ArrayList<>();
+        if (key == UserIdValidator.INVALID) {
+            return ISBNs;
+        }
+        // Holding the topology lock keeps the loans from moving between shards meanwhile.
+        synchronized (topologyLock) {
+            for (Shard shard : topology.shards) {
+                shard.lock.lock();
+                try {
+                    for (long ISBN : shard.loans.loansOf(key)) {
+                        ISBNs.add(Isbn.toString(ISBN));
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        }
+        return ISBNs;
+    }
+
+    // Called with the shard's lock held.
+    private static void recordLoan(Shard shard, long key, String userId) {
+        if (key == IsbnValidator.INVALID) {
+            return;
+        }
+        long borrower = UserIdValidator.pack(userId);
+        if (borrower == UserIdValidator.INVALID) {
+            shard.loans.returnBook(key);
+        } else {
+            shard.loans.borrow(key, borrower);
+        }
+    }
+
+    private Shard shardFor(long key) {
+        Topology current = topology;
+        return current.shards[current.ring.nodeFor(key)];
+    }
+
+    // Locks the shard that owns a key, retrying if a shard was added in between.
+    private Shard lockShard(long key) {
+        while (true) {
+            Topology current = topology;
+            Shard shard = current.shards[current.ring.nodeFor(key)];
+            shard.lock.lock();
+            if (topology == current) {
+                return shard;
+            }
+            shard.lock.unlock();
+        }
+    }
+
+    // Runs an action on each shard's share of the items, under that shard's lock.
+    private <T> void inShards(Collection<T> items, ToLongFunction<T> key, BiConsumer<Shard, List<T>> action) {
+        Topology current = topology;
+        List<T>[] groups = group(items, key, current);
+        List<T> moved = new ArrayList<>();
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == null) {
+                continue;
+            }
+            Shard shard = current.shards[i];
+            shard.lock.lock();
+            try {
+                if (topology != current) {
+                    // A shard was added meanwhile; route this share again.
+                    moved.addAll(groups[i]);
+                    continue;
+                }
+                action.accept(shard, groups[i]);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        if (!moved.isEmpty()) {
+            inShards(moved, key, action);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> List<T>[] group(Collection<T> items, ToLongFunction<T> key, Topology topology) {
+        List<T>[] groups = new List[topology.shards.length];
+        for (T item : items) {
+            int node = topology.ring.nodeFor(key.applyAsLong(item));
+            if (groups[node] == null) {
+                groups[node] = new ArrayList<>();
+            }
+            groups[node].add(item);
+        }
+        return groups;
+    }
+
+    private static long[] keysMovingTo(LongIntHashMap keys, ConsistentHashRing ring, int node) {
+        long[] moving = new long[keys.size()];
+        int[] count = new int[1];
+        keys.forEach((key, value) -> {
+            if (ring.nodeFor(key) == node) {
+                moving[count[0]++] = key;
+            }
+        });
+        return Arrays.copyOf(moving, count[0]);
+    }
+
+    private static DatabaseService requireShard(DatabaseService shard) {
+        if (shard == null) {
+            throw new IllegalArgumentException("Invalid shard.");
+        }
+        return shard;
+    }
+
+    /**
+     * The ring and the shards it routes to, by node number.
+     */
+    private static final class Topology {
+        final ConsistentHashRing ring;
+        final Shard[] shards;
+
+        Topology(ConsistentHashRing ring, Shard[] shards) {
+            this.ring = ring;
+            this.shards = shards;
+        }
+    }
+
+    /**
+     * A shard and the keys stored on it. The key sets and loans are guarded by the lock.
+     */
+    private static final class Shard {
+        final DatabaseService service;
+        final ReentrantLock lock = new ReentrantLock();
+        final LongIntHashMap books = new LongIntHashMap();
+        final LongIntHashMap users = new LongIntHashMap();
+        // Borrower of each borrowed book.
+        final LoanIndex loans = new LoanIndex();
+
+        Shard(DatabaseService service) {
+            this.service = service;
+        }
+    }
+}
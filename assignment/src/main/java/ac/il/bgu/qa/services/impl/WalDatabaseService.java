@@ -0,0 +1,636 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.Threads;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import ac.il.bgu.qa.utils.UserIdValidator;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A durable database that records every change in a write-ahead log before acknowledging it.
+ * <p>
+ * The current state lives in an {@link InMemoryDatabaseService}, which serves all reads. Every addBook,
+ * registerUser, borrowBook and returnBook is validated, appended to a memory-mapped {@link WriteAheadLog}
+ * and only then applied to it, all under one lock, so the log holds the changes in the order they were
+ * applied and a change whose append failed is never visible. The call then waits until its record is on
+ * disk. Concurrent callers share a single flush (group commit), which is what makes many durable operations
+ * per second possible. A caller may briefly see changes of another caller that are not yet acknowledged.
+ * <p>
+ * Every {@code snapshotInterval} records, a snapshot of the whole state is written in the background and
+ * the log segments it covers are deleted. Failed background snapshots are counted by
+ * {@link #getSnapshotFailures()} and the latest failure is kept by {@link #getLastSnapshotFailure()}; the
+ * log keeps growing until a snapshot succeeds. On start, the latest snapshot is loaded and the log after it
+ * is replayed; a record torn by a crash ends the replay. Recovered books carry their borrow state in
+ * {@link Book#isBorrowed()}, under their canonical 13-digit ISBN. The notification service of a recovered
+ * user cannot be stored, so it is looked up by user Id through the given function.
+ */
+public class WalDatabaseService implements DatabaseService, Closeable {
+
+    // Default size of each log segment file: 64 MB.
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    // Default number of log records between snapshots.
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1_000_000;
+
+    // Log record types.
+    private static final byte ADD_BOOK = 1;
+    private static final byte REGISTER_USER = 2;
+    private static final byte BORROW_BOOK = 3;
+    private static final byte RETURN_BOOK = 4;
+
+    // Identifies a snapshot file and its format.
+    private static final int SNAPSHOT_MAGIC = 0x534E5032;
+
+    private final Path directory;
+    private final Function<String, NotificationService> notificationServices;
+    private final long snapshotInterval;
+
+    // The current state.
+    private final InMemoryDatabaseService memory = new InMemoryDatabaseService();
+    // Orders changes to the state with their log records.
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock.
+    private final WriteAheadLog log;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    // Set under lock once the log is closed; no change or snapshot is accepted afterwards.
+    private volatile boolean closed;
+
+    // Serializes snapshots.
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final ExecutorService snapshotExecutor;
+    private volatile long lastSnapshotLsn;
+    private final AtomicLong snapshotFailures = new AtomicLong();
+    private volatile UncheckedIOException lastSnapshotFailure;
+    private final long recoveredRecords;
+
+    /**
+     * Opens the database in a directory, recovering any state stored there.
+     *
+     * @param directory            The directory holding the log and the snapshots.
+     * @param notificationServices Provides the notification service of each recovered user, by user Id.
+     */
+    public WalDatabaseService(Path directory, Function<String, NotificationService> notificationServices) {
+        this(directory, notificationServices, DEFAULT_SEGMENT_SIZE, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens the database in a directory, recovering any state stored there.
+     *
+     * @param directory            The directory holding the log and the snapshots.
+     * @param notificationServices Provides the notification service of each recovered user, by user Id.
+     * @param segmentSize          The size of each log segment file in bytes.
+     * @param snapshotInterval     The number of log records between snapshots, or 0 for manual snapshots only.
+     * @throws UncheckedIOException If the stored state cannot be read.
+     */
+    public WalDatabaseService(Path directory, Function<String, NotificationService> notificationServices,
+                              int segmentSize, long snapshotInterval) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Invalid directory.");
+        } else if (notificationServices == null) {
+            throw new IllegalArgumentException("Invalid notification service provider.");
+        } else if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Invalid segment size.");
+        } else if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("Invalid snapshot interval.");
+        }
+        this.directory = directory;
+        this.notificationServices = notificationServices;
+        this.snapshotInterval = snapshotInterval;
+        try {
+            Files.createDirectories(directory);
+            long snapshotLsn = loadSnapshot();
+            long[] replayed = new long[1];
+            long nextLsn = WriteAheadLog.recover(directory, snapshotLsn, (lsn, body) -> {
+                replay(lsn, body);
+                replayed[0]++;
+            });
+            this.lastSnapshotLsn = snapshotLsn;
+            this.recoveredRecords = replayed[0];
+            this.log = new WriteAheadLog(directory, segmentSize, nextLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open database in " + directory + "!", e);
+        }
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(Threads.daemonThreadFactory("wal-snapshot"));
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Invalid book.");
+        }
+        long key = validIsbn(ISBN);
+        long lsn;
+        lock.lock();
+        try {
+            ensureOpen();
+            lsn = append(encodeBook(key, book));
+            memory.addBook(ISBN, book);
+        } finally {
+            lock.unlock();
+        }
+        commit(lsn);
+    }
+
+    /**
+     * Adds the books, waiting for the disk once for the whole batch.
+     *
+     * @param books The books to be added.
+     */
+    @Override
+    public void addBooks(Collection<Book> books) {
+        for (Book book : books) {
+            if (book == null) {
+                throw new IllegalArgumentException("Invalid book.");
+            }
+            validIsbn(book.getISBN());
+        }
+        long lsn = -1;
+        lock.lock();
+        try {
+            ensureOpen();
+            List<Book> logged = new ArrayList<>(books.size());
+            try {
+                for (Book book : books) {
+                    lsn = append(encodeBook(Isbn.pack(book.getISBN()), book));
+                    logged.add(book);
+                }
+            } finally {
+                // The books already in the log will be recovered, so they must be visible now too.
+                memory.addBooks(logged);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (lsn >= 0) {
+            commit(lsn);
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("Invalid user.");
+        }
+        long key = UserIdValidator.pack(id);
+        if (key == UserIdValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        long lsn;
+        lock.lock();
+        try {
+            ensureOpen();
+            byte[] name = utf8(user.getName());
+            ByteBuffer record = scratch(1 + 8 + 4 + length(name));
+            record.put(REGISTER_USER).putLong(key);
+            putBytes(record, name);
+            ((Buffer) record).flip();
+            lsn = append(record);
+            memory.registerUser(id, user);
+        } finally {
+            lock.unlock();
+        }
+        commit(lsn);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return memory.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public Book getBookByISBN(long ISBN) {
+        return memory.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        return memory.getBooksByISBN(ISBNs);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return memory.getUserById(userId);
+    }
+
+    @Override
+    public User getUserById(long userId) {
+        return memory.getUserById(userId);
+    }
+
+    @Override
+    public String getBorrowerId(String ISBN) {
+        return memory.getBorrowerId(ISBN);
+    }
+
+    @Override
+    public List<String> getLoansByUserId(String userId) {
+        return memory.getLoansByUserId(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long lsn;
+        lock.lock();
+        try {
+            ensureOpen();
+            long key = storedIsbn(ISBN);
+            ByteBuffer record = scratch(1 + 8 + 8);
+            record.put(BORROW_BOOK).putLong(key).putLong(UserIdValidator.pack(userId));
+            ((Buffer) record).flip();
+            lsn = append(record);
+            memory.borrowBook(ISBN, userId);
+        } finally {
+            lock.unlock();
+        }
+        commit(lsn);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        long lsn;
+        lock.lock();
+        try {
+            ensureOpen();
+            long key = storedIsbn(ISBN);
+            ByteBuffer record = scratch(1 + 8);
+            record.put(RETURN_BOOK).putLong(key);
+            ((Buffer) record).flip();
+            lsn = append(record);
+            memory.returnBook(ISBN);
+        } finally {
+            lock.unlock();
+        }
+        commit(lsn);
+    }
+
+    /**
+     * Writes a snapshot of the whole state and deletes the log segments it covers.
+     * Changes continue while the snapshot file is written.
+     *
+     * @throws UncheckedIOException  If the snapshot cannot be written.
+     * @throws IllegalStateException If the database is closed.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            long lsn;
+            List<Book> books = new ArrayList<>();
+            List<Boolean> borrowed = new ArrayList<>();
+            List<String> borrowers = new ArrayList<>();
+            List<User> users = new ArrayList<>();
+            try {
+                lock.lock();
+                try {
+                    ensureOpen();
+                    // Start a new segment so every older one is fully covered by the snapshot.
+                    log.roll();
+                    lsn = log.nextLsn();
+                    memory.forEachBook((book, isBorrowed) -> {
+                        books.add(book);
+                        borrowed.add(isBorrowed);
+                        borrowers.add(isBorrowed ? memory.getBorrowerId(book.getISBN()) : null);
+                    });
+                    memory.forEachUser(users::add);
+                } finally {
+                    lock.unlock();
+                }
+                writeSnapshot(lsn, books, borrowed, borrowers, users);
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "snapshot-*.snap")) {
+                    for (Path path : stream) {
+                        if (!path.equals(snapshotPath(lsn))) {
+                            Files.delete(path);
+                        }
+                    }
+                }
+                log.deleteSegmentsBefore(lsn);
+                lastSnapshotLsn = lsn;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write snapshot!", e);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of log records replayed when the database was opened.
+     *
+     * @return The number of replayed records.
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * Retrieves the LSN of the latest snapshot, that is the number of log records it covers.
+     *
+     * @return The LSN of the latest snapshot, or 0 if none was written.
+     */
+    public long getLastSnapshotLsn() {
+        return lastSnapshotLsn;
+    }
+
+    /**
+     * Retrieves the number of background snapshots that failed.
+     *
+     * @return The number of failed snapshots.
+     */
+    public long getSnapshotFailures() {
+        return snapshotFailures.get();
+    }
+
+    /**
+     * Retrieves the exception of the most recent background snapshot that failed.
+     *
+     * @return The failure, or null if no background snapshot failed.
+     */
+    public UncheckedIOException getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    /**
+     * Stops background snapshots and closes the log. Every acknowledged change is already on disk.
+     * A snapshot in progress is completed first; one still queued is skipped.
+     */
+    @Override
+    public void close() {
+        snapshotExecutor.shutdown();
+        synchronized (snapshotLock) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                log.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close the log!", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held.
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Database is closed!");
+        }
+    }
+
+    private static long validIsbn(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return key;
+    }
+
+    // Called with the lock held, so the book cannot be replaced or removed before the change is applied.
+    private long storedIsbn(String ISBN) {
+        long key = Isbn.pack(ISBN);
+        if (key == IsbnValidator.INVALID || memory.getBookByISBN(key) == null) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        return key;
+    }
+
+    // Called with the lock held.
+    private long append(ByteBuffer record) {
+        try {
+            return log.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the log!", e);
+        }
+    }
+
+    // Waits until a record is durable, then schedules a snapshot if one is due.
+    private void commit(long lsn) {
+        log.awaitDurable(lsn);
+        if (snapshotInterval > 0 && lsn + 1 - lastSnapshotLsn >= snapshotInterval
+                && snapshotPending.compareAndSet(false, true)) {
+            try {
+                snapshotExecutor.execute(() -> {
+                    try {
+                        if (!closed) {
+                            snapshot();
+                        }
+                    } catch (UncheckedIOException e) {
+                        lastSnapshotFailure = e;
+                        snapshotFailures.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // Closed while the snapshot was queued.
+                    } finally {
+                        snapshotPending.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed after the record was appended; the write itself succeeded.
+                snapshotPending.set(false);
+            }
+        }
+    }
+
+    // Called with the lock held.
+    private ByteBuffer encodeBook(long ISBN, Book book) {
+        byte[] title = utf8(book.getTitle());
+        byte[] author = utf8(book.getAuthor());
+        ByteBuffer record = scratch(1 + 8 + 1 + 4 + length(title) + 4 + length(author));
+        record.put(ADD_BOOK).putLong(ISBN).put((byte) (book.isBorrowed() ? 1 : 0));
+        putBytes(record, title);
+        putBytes(record, author);
+        ((Buffer) record).flip();
+        return record;
+    }
+
+    // Called with the lock held; the buffer is reused by the next record.
+    private ByteBuffer scratch(int size) {
+        if (scratch.capacity() < size) {
+            scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+        }
+        ((Buffer) scratch).clear();
+        return scratch;
+    }
+
+    // Applies a recovered log record to the state.
+    private void replay(long lsn, ByteBuffer body) {
+        byte type = body.get();
+        if (type == ADD_BOOK) {
+            String ISBN = Isbn.toString(body.getLong());
+            boolean borrowed = body.get() != 0;
+            Book book = new Book(ISBN, getString(body), getString(body));
+            if (borrowed) {
+                book.tryBorrow();
+            }
+            memory.addBook(ISBN, book);
+        } else if (type == REGISTER_USER) {
+            String userId = UserIdValidator.unpack(body.getLong());
+            memory.registerUser(userId, new User(getString(body), userId, notificationServices.apply(userId)));
+        } else if (type == BORROW_BOOK) {
+            String ISBN = Isbn.toString(body.getLong());
+            long userId = body.getLong();
+            memory.borrowBook(ISBN, userId == UserIdValidator.INVALID ? null : UserIdValidator.unpack(userId));
+            memory.getBookByISBN(ISBN).tryBorrow();
+        } else if (type == RETURN_BOOK) {
+            String ISBN = Isbn.toString(body.getLong());
+            memory.returnBook(ISBN);
+            memory.getBookByISBN(ISBN).tryReturn();
+        } else {
+            throw new IllegalStateException("Unknown log record type " + type + " at LSN " + lsn + "!");
+        }
+    }
+
+    private void writeSnapshot(long lsn, List<Book> books, List<Boolean> borrowed, List<String> borrowers,
+                               List<User> users) throws IOException {
+        Path temporary = directory.resolve(String.format("snapshot-%020d.tmp", lsn));
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lsn);
+            out.writeInt(books.size());
+            for (int i = 0; i < books.size(); i++) {
+                Book book = books.get(i);
+                out.writeLong(Isbn.pack(book.getISBN()));
+                out.writeBoolean(borrowed.get(i));
+                out.writeLong(UserIdValidator.pack(borrowers.get(i)));
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+            }
+            out.writeInt(users.size());
+            for (User user : users) {
+                out.writeLong(UserIdValidator.pack(user.getId()));
+                writeString(out, user.getName());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath(lsn), StandardCopyOption.ATOMIC_MOVE);
+        WriteAheadLog.forceDirectory(directory);
+    }
+
+    // Loads the latest snapshot, if any, and returns the LSN it covers.
+    private long loadSnapshot() throws IOException {
+        Path latest = null;
+        long latestLsn = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "snapshot-*.snap")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                long lsn = Long.parseLong(name.substring(9, name.length() - 5));
+                if (latest == null || lsn > latestLsn) {
+                    latest = path;
+                    latestLsn = lsn;
+                }
+            }
+        }
+        if (latest == null) {
+            return 0;
+        }
+        try (InputStream file = Files.newInputStream(latest)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readLong() != latestLsn) {
+                throw new IOException("Invalid snapshot " + latest + "!");
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String ISBN = Isbn.toString(in.readLong());
+                boolean borrowed = in.readBoolean();
+                long borrower = in.readLong();
+                Book book = new Book(ISBN, readString(in), readString(in));
+                if (borrowed) {
+                    book.tryBorrow();
+                }
+                memory.addBook(ISBN, book);
+                if (borrower != UserIdValidator.INVALID) {
+                    memory.borrowBook(ISBN, UserIdValidator.unpack(borrower));
+                }
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String userId = UserIdValidator.unpack(in.readLong());
+                memory.registerUser(userId, new User(readString(in), userId, notificationServices.apply(userId)));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Corrupt snapshot " + latest + "!");
+            }
+        }
+        return latestLsn;
+    }
+
+    private Path snapshotPath(long lsn) {
+        return directory.resolve(String.format("snapshot-%020d.snap", lsn));
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    // Writes a length-prefixed byte array; a length of -1 stands for null.
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = utf8(value);
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
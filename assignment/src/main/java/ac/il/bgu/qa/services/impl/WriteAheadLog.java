@@ -0,0 +1,318 @@
+package ac.il.bgu.qa.services.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records in memory-mapped segment files, with group commit.
+ * <p>
+ * Every record gets a log sequence number (LSN), counting from 0. A segment file is named after the LSN of
+ * its first record and pre-allocated to a fixed size; each record in it is framed as its length, a CRC32 of
+ * its body, and the body. A zero length marks the end of a segment, so the unused, zero-filled tail needs no
+ * extra bookkeeping. On recovery, a record whose frame or checksum does not match is treated as torn by a
+ * crash: it and everything after it are discarded.
+ * <p>
+ * {@link #append(ByteBuffer)} only copies the record into the mapped segment. {@link #awaitDurable(long)}
+ * blocks until the record is on disk; the first waiting thread forces the segment on behalf of every
+ * record appended so far, while later threads wait for it, so concurrent writers share one flush.
+ * <p>
+ * Appends, rolls and {@link #close()} must be serialized by the caller; {@link #awaitDurable(long)} is
+ * thread-safe.
+ */
+final class WriteAheadLog implements Closeable {
+
+    // Identifies a segment file and its format.
+    private static final int SEGMENT_MAGIC = 0x57414C31;
+    // Magic number and first LSN.
+    static final int SEGMENT_HEADER = 12;
+    // Length and checksum of a record.
+    static final int RECORD_HEADER = 8;
+
+    /**
+     * Receives the records found during recovery.
+     */
+    interface RecordVisitor {
+
+        /**
+         * Receives one record.
+         *
+         * @param lsn  The log sequence number of the record.
+         * @param body The body of the record, positioned at its start.
+         */
+        void accept(long lsn, ByteBuffer body);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    // Written by appenders only; volatile so a flushing thread sees the latest segment and LSN.
+    private volatile FileChannel channel;
+    private volatile MappedByteBuffer segment;
+    private volatile long nextLsn;
+    // LSN of the first record of the current segment.
+    private long segmentFirstLsn;
+
+    // Guards the group commit state below.
+    private final Object flushLock = new Object();
+    // Number of records known to be on disk.
+    private long durableLsn;
+    // Whether a thread is currently forcing the segment.
+    private boolean flushing;
+
+    /**
+     * Opens a new segment at the given LSN. Any existing segment file for that LSN is replaced.
+     *
+     * @param directory   The directory holding the segments.
+     * @param segmentSize The size of each segment file in bytes.
+     * @param nextLsn     The LSN of the next record.
+     */
+    WriteAheadLog(Path directory, int segmentSize, long nextLsn) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.nextLsn = nextLsn;
+        this.durableLsn = nextLsn;
+        openSegment(nextLsn);
+    }
+
+    /**
+     * Copies a record into the log.
+     *
+     * @param body The body of the record, from its position to its limit.
+     * @return The LSN of the record.
+     */
+    long append(ByteBuffer body) throws IOException {
+        int length = body.remaining();
+        if (length + RECORD_HEADER > segmentSize - SEGMENT_HEADER) {
+            throw new IllegalArgumentException("Record too large.");
+        }
+        if (segment.remaining() < length + RECORD_HEADER) {
+            roll();
+        }
+        crc.reset();
+        crc.update(body.duplicate());
+        MappedByteBuffer target = segment;
+        int start = target.position();
+        ((Buffer) target).position(start + RECORD_HEADER);
+        target.put(body);
+        // The length goes in last, so a record never looks complete before its body is written.
+        target.putInt(start + 4, (int) crc.getValue());
+        target.putInt(start, length);
+        return nextLsn++;
+    }
+
+    /**
+     * Forces the current segment and continues in a new one, unless the current one is still empty.
+     */
+    void roll() throws IOException {
+        if (nextLsn == segmentFirstLsn) {
+            return;
+        }
+        MappedByteBuffer previous = segment;
+        FileChannel previousChannel = channel;
+        previous.force();
+        openSegment(nextLsn);
+        previousChannel.close();
+    }
+
+    /**
+     * Retrieves the LSN the next record will get.
+     *
+     * @return The next LSN.
+     */
+    long nextLsn() {
+        return nextLsn;
+    }
+
+    /**
+     * Blocks until the record with the given LSN, and every record before it, is on disk.
+     *
+     * @param lsn The LSN of the record.
+     */
+    void awaitDurable(long lsn) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                synchronized (flushLock) {
+                    while (durableLsn <= lsn && flushing) {
+                        try {
+                            flushLock.wait();
+                        } catch (InterruptedException e) {
+                            // The record must be durable before returning, so keep waiting.
+                            interrupted = true;
+                        }
+                    }
+                    if (durableLsn > lsn) {
+                        return;
+                    }
+                    flushing = true;
+                }
+                // Read the LSN before the segment: a segment rolled in between was forced by the roll.
+                long target = nextLsn;
+                boolean forced = false;
+                try {
+                    segment.force();
+                    forced = true;
+                } finally {
+                    synchronized (flushLock) {
+                        flushing = false;
+                        if (forced) {
+                            durableLsn = Math.max(durableLsn, target);
+                        }
+                        flushLock.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold records before the given LSN.
+     *
+     * @param lsn The first LSN to keep; must not be after the first LSN of the current segment.
+     */
+    void deleteSegmentsBefore(long lsn) throws IOException {
+        List<Long> firsts = segmentFirstLsns(directory);
+        for (int i = 0; i + 1 < firsts.size(); i++) {
+            if (firsts.get(i + 1) <= lsn) {
+                Files.deleteIfExists(segmentPath(directory, firsts.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Forces and closes the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+        segment.force();
+        channel.close();
+    }
+
+    /**
+     * Replays the records from the given LSN onwards and cuts off a torn tail.
+     *
+     * @param directory The directory holding the segments.
+     * @param fromLsn   The first LSN to pass to the visitor; earlier records are skipped.
+     * @param visitor   Receives each valid record, in LSN order.
+     * @return The LSN after the last valid record, or {@code fromLsn} if there is none.
+     */
+    static long recover(Path directory, long fromLsn, RecordVisitor visitor) throws IOException {
+        List<Long> firsts = segmentFirstLsns(directory);
+        long lsn = -1;
+        boolean intact = true;
+        for (int i = 0; i < firsts.size(); i++) {
+            long first = firsts.get(i);
+            Path path = segmentPath(directory, first);
+            if (!intact || (lsn >= 0 && first != lsn)) {
+                // After a torn record or a gap, nothing later can be trusted.
+                Files.delete(path);
+                intact = false;
+                continue;
+            }
+            if (i + 1 < firsts.size() && firsts.get(i + 1) <= fromLsn) {
+                // Entirely covered by the snapshot.
+                lsn = firsts.get(i + 1);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.remaining() < SEGMENT_HEADER || buffer.getInt(0) != SEGMENT_MAGIC
+                        || buffer.getLong(4) != first) {
+                    Files.delete(path);
+                    intact = false;
+                    continue;
+                }
+                lsn = first;
+                int position = SEGMENT_HEADER;
+                CRC32 crc = new CRC32();
+                while (buffer.capacity() - position >= RECORD_HEADER) {
+                    int length = buffer.getInt(position);
+                    if (length == 0) {
+                        break;
+                    }
+                    boolean valid = length > 0 && length <= buffer.capacity() - position - RECORD_HEADER;
+                    ByteBuffer body = null;
+                    if (valid) {
+                        body = buffer.duplicate();
+                        // Through Buffer, whose position and limit also exist on Java 8.
+                        ((Buffer) body).limit(position + RECORD_HEADER + length).position(position + RECORD_HEADER);
+                        crc.reset();
+                        crc.update(body.duplicate());
+                        valid = (int) crc.getValue() == buffer.getInt(position + 4);
+                    }
+                    if (!valid) {
+                        // Zero the torn tail so the segment ends cleanly at the last valid record.
+                        for (int p = position; p < buffer.capacity(); p++) {
+                            buffer.put(p, (byte) 0);
+                        }
+                        buffer.force();
+                        intact = false;
+                        break;
+                    }
+                    if (lsn >= fromLsn) {
+                        visitor.accept(lsn, body.slice());
+                    }
+                    lsn++;
+                    position += RECORD_HEADER + length;
+                }
+            }
+        }
+        return Math.max(lsn, fromLsn);
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path path = segmentPath(directory, firstLsn);
+        FileChannel newChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.putInt(SEGMENT_MAGIC).putLong(firstLsn);
+        buffer.force();
+        // The directory entry of the new file must be durable too.
+        forceDirectory(directory);
+        channel = newChannel;
+        segment = buffer;
+        segmentFirstLsn = firstLsn;
+    }
+
+    static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("wal-%020d.log", firstLsn));
+    }
+
+    private static List<Long> segmentFirstLsns(Path directory) throws IOException {
+        List<Long> firsts = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                firsts.add(Long.parseLong(name.substring(4, name.length() - 4)));
+            }
+        }
+        Collections.sort(firsts);
+        return firsts;
+    }
+
+    static void forceDirectory(Path directory) {
+        // Not every platform can open a directory; where it cannot, the rename or create is durable anyway.
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Ignored, see above.
+        }
+    }
+}
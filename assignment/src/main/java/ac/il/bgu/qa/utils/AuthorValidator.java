@@ -0,0 +1,55 @@
+package ac.il.bgu.qa.utils;
+
+/**
+ * Validates author names.
+ */
+public final class AuthorValidator {
+
+    private AuthorValidator() {
+    }
+
+    /**
+     *  Validates if author name given as input is of valid format.
+     *
+     *  @param name The name of the author.
+     *  @return true if valid, false otherwise.
+    */
+    public static boolean isValid(String name) {
+        /*
+         * Three key criteria for a valid author name:
+         * 1) The name should only consist of alphabetic characters, hyphens, spaces, dots, and apostrophes.
+         * 2) The name should start and end with an alphabetic character.
+         * 3) The name should not contain consecutive special characters like "--" or "''".
+         */
+
+        // If the name is null or empty, it's invalid.
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+
+        // Ensure the name starts and finishes with an alphabetic character.
+        if (!Character.isLetter(name.charAt(0)) || !Character.isLetter(name.charAt(name.length() - 1))) {
+            return false;
+        }
+
+        // Check the content of the name for valid characters and consecutive special characters.
+        for (int i = 0; i < name.length() - 1; i++) {
+            char current = name.charAt(i);
+            char next = name.charAt(i + 1);
+
+            // Check if the current character is not one of the valid characters.
+            if (!Character.isLetter(current) && current != '-' && current != ' ' && current != '\'' && current != '.') {
+                return false;
+            }
+
+            // Check for consecutive special characters.
+            if ((current == '-' && next == '-')
+                    || (current == '\'' && next == '\'')) {
+                return false;
+            }
+        }
+
+        // If all checks have passed, the author name is valid.
+        return true;
+    }
+}
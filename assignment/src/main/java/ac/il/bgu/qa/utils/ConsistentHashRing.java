@@ -0,0 +1,116 @@
+package ac.il.bgu.qa.utils;
+
+import java.util.Arrays;
+
+/**
+ * An immutable consistent-hash ring that maps non-negative {@code long} keys to node numbers.
+ * <p>
+ * Every node is placed on the ring at {@code virtualNodes} pseudo-random points, and a key belongs to
+ * the node owning the first point at or after the key's hash. Adding a node therefore only moves the
+ * keys that now fall before one of its points, about {@code 1 / (nodes + 1)} of them, and the virtual
+ * nodes keep the share of each node close to even.
+ * <p>
+ * The points are kept in sorted primitive arrays, so a lookup is one hash and one binary search.
+ */
+public final class ConsistentHashRing {
+
+    // Sorted positions of all virtual nodes.
+    private final long[] points;
+    // owners[i] is the node owning points[i].
+    private final int[] owners;
+    // Number of points per node.
+    private final int virtualNodes;
+
+    /**
+     * Constructs an empty ring.
+     *
+     * @param virtualNodes The number of points each node is placed at.
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        this(new long[0], new int[0], virtualNodes);
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Invalid number of virtual nodes.");
+        }
+    }
+
+    private ConsistentHashRing(long[] points, int[] owners, int virtualNodes) {
+        this.points = points;
+        this.owners = owners;
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Builds a ring that also contains a node.
+     *
+     * @param node The non-negative node number, not yet on the ring.
+     * @return The new ring; this ring is unchanged.
+     */
+    public ConsistentHashRing withNode(int node) {
+        if (node < 0) {
+            throw new IllegalArgumentException("Invalid node.");
+        }
+        for (int owner : owners) {
+            if (owner == node) {
+                throw new IllegalArgumentException("Node already exists.");
+            }
+        }
+        int size = points.length + virtualNodes;
+        // Sort (point, owner) pairs by point: sort the new points, then merge with the existing ones.
+        long[] added = new long[virtualNodes];
+        for (int v = 0; v < virtualNodes; v++) {
+            added[v] = hash(((long) node << 32) | v);
+        }
+        Arrays.sort(added);
+        long[] newPoints = new long[size];
+        int[] newOwners = new int[size];
+        int i = 0, j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j == virtualNodes || (i < points.length && points[i] <= added[j])) {
+                newPoints[k] = points[i];
+                newOwners[k] = owners[i++];
+            } else {
+                newPoints[k] = added[j++];
+                newOwners[k] = node;
+            }
+        }
+        return new ConsistentHashRing(newPoints, newOwners, virtualNodes);
+    }
+
+    /**
+     * Finds the node a key belongs to.
+     *
+     * @param key The key.
+     * @return The node number.
+     * @throws IllegalStateException If the ring has no nodes.
+     */
+    public int nodeFor(long key) {
+        if (points.length == 0) {
+            throw new IllegalStateException("Ring has no nodes!");
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Past the last point, the ring wraps around to the first one.
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Retrieves the number of nodes on the ring.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return points.length / virtualNodes;
+    }
+
+    // The 64-bit finalizer of MurmurHash3.
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
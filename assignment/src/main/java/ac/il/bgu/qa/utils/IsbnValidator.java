@@ -0,0 +1,88 @@
+package ac.il.bgu.qa.utils;
+
+/**
+ * Validates International Standard Book Numbers (ISBN-13).
+ * <p>
+ * The check runs in a single pass over the input, skipping hyphens and computing
+ * the checksum arithmetically, so no intermediate strings or regular expressions are created.
+ */
+public final class IsbnValidator {
+
+    // Number of digits in an ISBN-13.
+    public static final int LENGTH = 13;
+
+    // Returned by pack for invalid input. Valid ISBNs are never negative.
+    public static final long INVALID = -1L;
+
+    // Largest value that 13 digits can hold.
+    public static final long MAX_PACKED = 9_999_999_999_999L;
+
+    private IsbnValidator() {
+    }
+
+    /**
+     * Validates if input is of type ISBN-13.
+     * Hyphens are ignored, any other non-digit character makes the input invalid.
+     *
+     * @param isbn The International Standard Book Number to be validated.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(CharSequence isbn) {
+        return pack(isbn) != INVALID;
+    }
+
+    /**
+     * Validates an ISBN-13 and packs its 13 digits into a {@code long}.
+     * Hyphenated and plain spellings of the same ISBN pack to the same value.
+     *
+     * @param isbn The International Standard Book Number to be packed.
+     * @return The numeric value of the ISBN digits, or {@link #INVALID} if the ISBN is not valid.
+     */
+    public static long pack(CharSequence isbn) {
+        // Check if the ISBN is null, it is invalid if it is
+        if (isbn == null) {
+            return INVALID;
+        }
+
+        // Odd position digits are multiplied by 1, even position digits by 3.
+        // The check digit is included with weight 1, so a valid ISBN sums to a multiple of 10.
+        int digits = 0;
+        int sum = 0;
+        long value = 0;
+        for (int i = 0, length = isbn.length(); i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9' || digits == LENGTH) {
+                return INVALID;
+            }
+            int digit = c - '0';
+            sum += (digits & 1) == 0 ? digit : digit * 3;
+            value = value * 10 + digit;
+            digits++;
+        }
+
+        return digits == LENGTH && sum % 10 == 0 ? value : INVALID;
+    }
+
+    /**
+     * Verifies the ISBN-13 checksum of an already packed value.
+     *
+     * @param packed The numeric value of the 13 ISBN digits.
+     * @return true if the value holds 13 digits with a matching check digit, false otherwise.
+     */
+    public static boolean isValid(long packed) {
+        if (packed < 0 || packed > MAX_PACKED) {
+            return false;
+        }
+        int sum = 0;
+        // Walk from the check digit (weight 1) towards the first digit, alternating weights.
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = (int) (packed % 10);
+            sum += (i & 1) == 0 ? digit : digit * 3;
+            packed /= 10;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,174 @@
+package ac.il.bgu.qa.utils;
+
+import java.util.Arrays;
+
+/**
+ * Index of active loans by packed ISBN and by packed user Id.
+ * <p>
+ * Every loan occupies a slot in parallel primitive arrays holding its ISBN and borrower. The loans of one
+ * user are chained through those slots in a circular doubly-linked list, in the order they were made. Two
+ * {@link LongIntHashMap}s lead from an ISBN to its loan slot and from a user Id to the first loan, so
+ * finding a book's borrower, recording a loan and ending one are O(1), and listing a user's loans costs
+ * one step per loan. Nothing is boxed and slots of ended loans are reused.
+ * <p>
+ * Not thread-safe; callers sharing an instance between threads must guard it themselves.
+ */
+public final class LoanIndex {
+
+    // Returned when a book is not on loan.
+    public static final long NONE = -1L;
+
+    // Loan slot by packed ISBN.
+    private final LongIntHashMap slots;
+    // First loan slot by packed user Id.
+    private final LongIntHashMap firstLoans;
+
+    // ISBN and borrower of each loan slot.
+    private long[] isbns;
+    private long[] borrowers;
+    // Next and previous loan slot of the same user; next also chains the free slots.
+    private int[] next;
+    private int[] previous;
+    // Number of slots ever used, and the first free slot or -1.
+    private int used;
+    private int free = -1;
+
+    /**
+     * Constructs an empty index sized for the expected number of loans.
+     *
+     * @param expectedLoans The number of loans to hold without resizing.
+     */
+    public LoanIndex(int expectedLoans) {
+        int capacity = Math.max(expectedLoans, 16);
+        slots = new LongIntHashMap(capacity);
+        firstLoans = new LongIntHashMap(capacity);
+        isbns = new long[capacity];
+        borrowers = new long[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+    }
+
+    /**
+     * Constructs an empty index with a small default capacity.
+     */
+    public LoanIndex() {
+        this(16);
+    }
+
+    /**
+     * Records that a user borrowed a book, ending any loan of the book to someone else.
+     *
+     * @param ISBN   The packed ISBN of the book.
+     * @param userId The packed Id of the borrower.
+     * @return The previous borrower of the book, or {@link #NONE}.
+     */
+    public long borrow(long ISBN, long userId) {
+        if (ISBN < 0 || userId < 0) {
+            throw new IllegalArgumentException("Invalid loan.");
+        }
+        long previousBorrower = returnBook(ISBN);
+        int slot = allocate();
+        isbns[slot] = ISBN;
+        borrowers[slot] = userId;
+        int first = firstLoans.get(userId);
+        if (first == LongIntHashMap.MISSING) {
+            next[slot] = slot;
+            previous[slot] = slot;
+            firstLoans.put(userId, slot);
+        } else {
+            int last = previous[first];
+            next[last] = slot;
+            previous[slot] = last;
+            next[slot] = first;
+            previous[first] = slot;
+        }
+        slots.put(ISBN, slot);
+        return previousBorrower;
+    }
+
+    /**
+     * Ends the loan of a book.
+     *
+     * @param ISBN The packed ISBN of the book.
+     * @return The borrower of the book, or {@link #NONE} if it was not on loan.
+     */
+    public long returnBook(long ISBN) {
+        int slot = ISBN < 0 ? LongIntHashMap.MISSING : slots.remove(ISBN);
+        if (slot == LongIntHashMap.MISSING) {
+            return NONE;
+        }
+        long userId = borrowers[slot];
+        if (next[slot] == slot) {
+            firstLoans.remove(userId);
+        } else {
+            next[previous[slot]] = next[slot];
+            previous[next[slot]] = previous[slot];
+            if (firstLoans.get(userId) == slot) {
+                firstLoans.put(userId, next[slot]);
+            }
+        }
+        next[slot] = free;
+        free = slot;
+        return userId;
+    }
+
+    /**
+     * Finds the borrower of a book.
+     *
+     * @param ISBN The packed ISBN of the book.
+     * @return The packed Id of the borrower, or {@link #NONE} if the book is not on loan.
+     */
+    public long borrowerOf(long ISBN) {
+        int slot = ISBN < 0 ? LongIntHashMap.MISSING : slots.get(ISBN);
+        return slot == LongIntHashMap.MISSING ? NONE : borrowers[slot];
+    }
+
+    /**
+     * Lists the books a user has on loan, in the order they were borrowed.
+     *
+     * @param userId The packed Id of the user.
+     * @return The packed ISBNs of the borrowed books; empty if there are none.
+     */
+    public long[] loansOf(long userId) {
+        int first = userId < 0 ? LongIntHashMap.MISSING : firstLoans.get(userId);
+        if (first == LongIntHashMap.MISSING) {
+            return new long[0];
+        }
+        long[] result = new long[8];
+        int count = 0;
+        int slot = first;
+        do {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = isbns[slot];
+            slot = next[slot];
+        } while (slot != first);
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Retrieves the number of active loans.
+     *
+     * @return The number of books on loan.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    private int allocate() {
+        if (free >= 0) {
+            int slot = free;
+            free = next[slot];
+            return slot;
+        }
+        if (used == isbns.length) {
+            int capacity = used * 2;
+            isbns = Arrays.copyOf(isbns, capacity);
+            borrowers = Arrays.copyOf(borrowers, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+        return used++;
+    }
+}
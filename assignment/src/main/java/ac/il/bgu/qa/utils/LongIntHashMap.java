@@ -0,0 +1,264 @@
+package ac.il.bgu.qa.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative {@code long} keys to non-negative {@code int} values.
+ * <p>
+ * Keys and values are interleaved in a single {@code long[]} and probed linearly, so a lookup
+ * touches one array, allocates nothing and never boxes. The table is swapped as a whole on resize,
+ * which lets a reader that races with a writer observe either the old or the new table but never
+ * a mix of both; callers sharing an instance between threads must still guard writes themselves.
+ */
+public final class LongIntHashMap {
+
+    // Returned by get when the key is not present.
+    public static final int MISSING = -1;
+
+    // Marks an unused slot. Keys are never negative, so it cannot clash with a real key.
+    private static final long EMPTY = -1L;
+
+    // Maximum fraction of slots in use before the table is doubled.
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // Interleaved key/value pairs: table[2 * slot] holds the key, table[2 * slot + 1] the value.
+    private volatile long[] table;
+    // Number of keys currently stored.
+    private int size;
+    // Number of keys the current table can hold before it must grow.
+    private int threshold;
+
+    /**
+     * Constructs a new map sized for the expected number of keys.
+     *
+     * @param expectedSize The number of keys the map should hold without resizing.
+     */
+    public LongIntHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Invalid expected size.");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Constructs a new map with a small default capacity.
+     */
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Retrieves the value associated with a key.
+     *
+     * @param key The non-negative key.
+     * @return The value, or {@link #MISSING} if the key is not present.
+     */
+    public int get(long key) {
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = mix(key) & mask;
+        // Bounded by the capacity so a reader racing a writer can never spin forever.
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = t[slot << 1];
+            if (current == key) {
+                return (int) t[(slot << 1) + 1];
+            }
+            if (current == EMPTY) {
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Checks whether a key is present.
+     *
+     * @param key The non-negative key.
+     * @return true if the key is present, otherwise false.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   The non-negative key.
+     * @param value The non-negative value.
+     * @return The previous value, or {@link #MISSING} if the key was not present.
+     */
+    public int put(long key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Invalid key.");
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid value.");
+        }
+        if (size >= threshold) {
+            resize();
+        }
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            long current = t[slot << 1];
+            if (current == key) {
+                int previous = (int) t[(slot << 1) + 1];
+                t[(slot << 1) + 1] = value;
+                return previous;
+            }
+            if (current == EMPTY) {
+                // Publish the value before the key so a racing reader never sees a key without its value.
+                t[(slot << 1) + 1] = value;
+                t[slot << 1] = key;
+                size++;
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes a key.
+     * <p>
+     * Later keys of the same probe run are shifted back into the freed slot, so a reader racing a
+     * remove may miss a key while it moves; such readers must be guarded or validated by the caller.
+     *
+     * @param key The non-negative key.
+     * @return The value that was associated with the key, or {@link #MISSING} if it was not present.
+     */
+    public int remove(long key) {
+        long[] t = table;
+        int mask = (t.length >> 1) - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            long current = t[slot << 1];
+            if (current == EMPTY) {
+                return MISSING;
+            }
+            if (current == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int removed = (int) t[(slot << 1) + 1];
+
+        // Shift back every later key of the run that may not skip over the freed slot.
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (t[next << 1] != EMPTY) {
+            int home = mix(t[next << 1]) & mask;
+            // The key may move to the free slot unless its home lies cyclically in (free, next].
+            boolean stays = free <= next ? free < home && home <= next : free < home || home <= next;
+            if (!stays) {
+                t[(free << 1) + 1] = t[(next << 1) + 1];
+                t[free << 1] = t[next << 1];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        t[free << 1] = EMPTY;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Calls the consumer for every key and its value, in no particular order.
+     * The map must not be modified while it is being iterated.
+     *
+     * @param consumer Receives each key and value.
+     */
+    public void forEach(EntryConsumer consumer) {
+        long[] t = table;
+        for (int i = 0; i < t.length; i += 2) {
+            if (t[i] != EMPTY) {
+                consumer.accept(t[i], (int) t[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Receives the entries of a map during {@link #forEach(EntryConsumer)}.
+     */
+    public interface EntryConsumer {
+
+        /**
+         * Receives one entry.
+         *
+         * @param key   The key.
+         * @param value The value.
+         */
+        void accept(long key, int value);
+    }
+
+    /**
+     * Retrieves the number of keys in the map.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all keys, keeping the current capacity.
+     */
+    public void clear() {
+        long[] t = new long[table.length];
+        Arrays.fill(t, EMPTY);
+        table = t;
+        size = 0;
+    }
+
+    private void resize() {
+        long[] old = table;
+        int capacity = old.length;
+        if (capacity >= 1 << 30) {
+            throw new IllegalStateException("Map is full!");
+        }
+        long[] t = newTable(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            long key = old[i];
+            if (key != EMPTY) {
+                int slot = mix(key) & mask;
+                while (t[slot << 1] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                t[slot << 1] = key;
+                t[(slot << 1) + 1] = old[i + 1];
+            }
+        }
+        threshold = (int) (capacity * LOAD_FACTOR);
+        table = t;
+    }
+
+    private void allocate(int capacity) {
+        table = newTable(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] t = new long[capacity << 1];
+        Arrays.fill(t, EMPTY);
+        return t;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Invalid expected size.");
+        }
+        int capacity = Integer.highestOneBit((int) needed);
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+
+    // Spreads sequential keys (such as ISBNs sharing a prefix) across the table.
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,78 @@
+package ac.il.bgu.qa.utils;
+
+/**
+ * Validates user Ids, which must consist of exactly 12 digits.
+ * <p>
+ * Valid Ids can also be packed into a {@code long} so that maps can be keyed
+ * on a primitive instead of a String. Packing keeps leading zeros significant
+ * through {@link #unpack(long)}, which always yields the 12-digit form.
+ */
+public final class UserIdValidator {
+
+    // Number of digits in a user Id.
+    public static final int LENGTH = 12;
+
+    // Returned by pack for invalid input. Valid Ids are never negative.
+    public static final long INVALID = -1L;
+
+    private UserIdValidator() {
+    }
+
+    /**
+     * Validates the user Id's format (should be a 12-digit number).
+     *
+     * @param userId The user Id to be validated.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(CharSequence userId) {
+        if (userId == null || userId.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs a user Id into its numeric value.
+     *
+     * @param userId The user Id to be packed.
+     * @return The numeric value of the Id, or {@link #INVALID} if the Id is not a 12-digit number.
+     */
+    public static long pack(CharSequence userId) {
+        if (userId == null || userId.length() != LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Restores the 12-digit String form of a packed user Id.
+     *
+     * @param packed A value previously returned by {@link #pack(CharSequence)}.
+     * @return The user Id, zero padded to 12 digits.
+     */
+    public static String unpack(long packed) {
+        if (packed < 0 || packed > 999_999_999_999L) {
+            throw new IllegalArgumentException("Invalid packed user Id.");
+        }
+        char[] digits = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,163 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.PooledReviewService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TestAsyncLibrary {
+
+    static final String ISBN = "978-3-16-148410-0";
+    static final String USER_ID = "123456789012";
+
+    DatabaseService mockDatabaseService;
+    ReviewService mockReviewService;
+    NotificationService mockNotificationService;
+    ExecutorService executor;
+    AsyncLibrary library;
+
+    @BeforeEach
+    void init() {
+        mockDatabaseService = Mockito.mock(DatabaseService.class);
+        mockReviewService = Mockito.mock(ReviewService.class);
+        mockNotificationService = Mockito.mock(NotificationService.class);
+        executor = Executors.newFixedThreadPool(2);
+        library = new AsyncLibrary(mockDatabaseService, mockReviewService, executor);
+    }
+
+    @AfterEach
+    void cleanup() {
+        executor.shutdown();
+    }
+
+    private static <T> T await(CompletionStage<T> stage) throws Exception {
+        return stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private static Throwable failureOf(CompletionStage<?> stage) {
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> await(stage));
+        return exception.getCause();
+    }
+
+    private Book stubBookAndUser() {
+        Book book = new Book(ISBN, "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(ISBN)).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById(USER_ID))
+                .thenReturn(new User("Reader", USER_ID, mockNotificationService));
+        return book;
+    }
+
+    @Test
+    void givenNewBook_whenAddBook_thenAddedToDatabase() throws Exception {
+        // Arrange
+        Book book = new Book(ISBN, "Title", "Author");
+
+        // Act
+        await(library.addBook(book));
+
+        // Assert
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).addBook(ISBN, book);
+    }
+
+    @Test
+    void givenInvalidISBN_whenBorrowBook_thenThrowImmediately() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> library.borrowBook("978-3-16-148410-5", USER_ID));
+        Mockito.verifyNoInteractions(mockDatabaseService);
+    }
+
+    @Test
+    void givenAvailableBook_whenBorrowBook_thenBorrowedAndRecorded() throws Exception {
+        // Arrange
+        Book book = stubBookAndUser();
+
+        // Act
+        await(library.borrowBook(ISBN, USER_ID));
+
+        // Assert
+        Assertions.assertTrue(book.isBorrowed());
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).borrowBook(ISBN, USER_ID);
+        Assertions.assertInstanceOf(BookAlreadyBorrowedException.class, failureOf(library.borrowBook(ISBN, USER_ID)));
+    }
+
+    @Test
+    void givenFailingDatabase_whenBorrowBook_thenBorrowRolledBack() {
+        // Arrange
+        Book book = stubBookAndUser();
+        Mockito.doThrow(new IllegalStateException("Database down!")).when(mockDatabaseService).borrowBook(ISBN, USER_ID);
+
+        // Act
+        Throwable failure = failureOf(library.borrowBook(ISBN, USER_ID));
+
+        // Assert
+        Assertions.assertInstanceOf(IllegalStateException.class, failure);
+        Assertions.assertFalse(book.isBorrowed());
+    }
+
+    @Test
+    void given2NotificationFailures_whenNotifyUserWithBookReviews_thenRetriedAndDelivered() throws Exception {
+        // Arrange
+        stubBookAndUser();
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenReturn(List.of("Review A"));
+        Mockito.doThrow(new NotificationException("Notification failed!"))
+                .doThrow(new NotificationException("Notification failed!"))
+                .doNothing().when(mockNotificationService).notifyUser(Mockito.eq(USER_ID), Mockito.anyString());
+
+        // Act
+        await(library.notifyUserWithBookReviews(ISBN, USER_ID));
+
+        // Assert
+        Mockito.verify(mockNotificationService, Mockito.times(3)).notifyUser(USER_ID, "Reviews for 'Title':\nReview A");
+        Mockito.verify(mockReviewService, Mockito.times(1)).close();
+    }
+
+    @Test
+    void givenReviewServiceFailure_whenNotifyUserWithBookReviews_thenReviewServiceUnavailableAndClosed() {
+        // Arrange
+        stubBookAndUser();
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenThrow(new ReviewException("Down!"));
+
+        // Act
+        Throwable failure = failureOf(library.notifyUserWithBookReviews(ISBN, USER_ID));
+
+        // Assert
+        Assertions.assertInstanceOf(ReviewServiceUnavailableException.class, failure);
+        Mockito.verify(mockReviewService, Mockito.times(1)).close();
+        Mockito.verifyNoInteractions(mockNotificationService);
+    }
+
+    @Test
+    void givenMissingBook_whenGetBookByISBN_thenBookNotFound() {
+        Assertions.assertInstanceOf(BookNotFoundException.class, failureOf(library.getBookByISBN(ISBN, USER_ID)));
+    }
+
+    @Test
+    void givenPooledReviewService_whenNotifyUserWithBookReviews_thenSessionReturnedToPool() throws Exception {
+        // Arrange
+        stubBookAndUser();
+        ReviewService session = Mockito.mock(ReviewService.class);
+        Mockito.when(session.getReviewsForBook(ISBN)).thenReturn(List.of("Review A"));
+        PooledReviewService pool = new PooledReviewService(() -> session, 1, 100, 60, 60, 60, TimeUnit.SECONDS);
+        try {
+            // A new thread per call, so a fetch and a close submitted separately never share a thread.
+            AsyncLibrary pooledLibrary = new AsyncLibrary(mockDatabaseService, pool, call -> new Thread(call).start());
+
+            // Act
+            await(pooledLibrary.notifyUserWithBookReviews(ISBN, USER_ID));
+
+            // Assert
+            Assertions.assertEquals(1, pool.getSize());
+            Assertions.assertEquals(1, pool.getIdle());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestCatalogImporter {
+
+    InMemoryDatabaseService databaseService;
+
+    @BeforeEach
+    void init() {
+        databaseService = new InMemoryDatabaseService();
+    }
+
+    @Test
+    void givenValidBooks_whenImportBooks_thenAllAdded() {
+        // Arrange
+        CatalogImporter importer = new CatalogImporter(databaseService, 2);
+        List<Book> books = Arrays.asList(
+                new Book("978-3-16-148410-0", "Title A", "Author A"),
+                new Book("9780306406157", "Title B", "Author B"),
+                new Book("9780131103627", "Title C", "Author C"));
+
+        // Act
+        ImportReport report = importer.importBooks(books.stream());
+
+        // Assert
+        Assertions.assertEquals(3, report.getImported());
+        Assertions.assertTrue(report.getRejections().isEmpty());
+        Assertions.assertEquals(3, databaseService.bookCount());
+    }
+
+    @Test
+    void givenInvalidDuplicateAndExistingRows_whenImportBooks_thenRejectedWithReasons() {
+        // Arrange
+        databaseService.addBook("9780131103627", new Book("9780131103627", "Existing", "Author"));
+        CatalogImporter importer = new CatalogImporter(databaseService, 8);
+        List<Book> books = Arrays.asList(
+                new Book("978-3-16-148410-0", "Title", "Author"),
+                new Book("978-3-16-148410-5", "Title", "Author"),
+                null,
+                new Book("9783161484100", "Same ISBN without hyphens", "Author"),
+                new Book("9780131103627", "Title", "Author"),
+                new Book("9780306406157", "", "Author"),
+                new Book("9780306406157", "Title", "Author--Name"),
+                new Book("9780306406157", "Title", "Author"));
+
+        // Act
+        ImportReport report = importer.importBooks(books.iterator());
+
+        // Assert
+        Assertions.assertEquals(2, report.getImported());
+        List<String> reasons = report.getRejections().stream()
+                .map(ImportReport.Rejection::getReason).collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("Invalid ISBN.", "Invalid book.", "Duplicate ISBN in import.",
+                "Book already exists.", "Invalid title.", "Invalid author."), reasons);
+        List<Long> rows = report.getRejections().stream()
+                .map(ImportReport.Rejection::getRow).collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), rows);
+        Assertions.assertEquals("Existing", databaseService.getBookByISBN("9780131103627").getTitle());
+        Assertions.assertEquals("Title", databaseService.getBookByISBN("9780306406157").getTitle());
+    }
+
+    @Test
+    void givenChunkSize_whenImportBooks_thenOneLookupAndOneWritePerChunk() {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        Mockito.when(mockDatabaseService.getBooksByISBN(Mockito.anyCollection())).thenReturn(Collections.emptyMap());
+        CatalogImporter importer = new CatalogImporter(mockDatabaseService, 2);
+
+        // Act
+        ImportReport report = importer.importBooks(Stream.of(
+                new Book("978-3-16-148410-0", "Title", "Author"),
+                new Book("9780306406157", "Title", "Author"),
+                new Book("9780131103627", "Title", "Author")));
+
+        // Assert
+        Assertions.assertEquals(3, report.getImported());
+        Mockito.verify(mockDatabaseService, Mockito.times(2)).getBooksByISBN(Mockito.anyCollection());
+        Mockito.verify(mockDatabaseService, Mockito.times(2)).addBooks(Mockito.anyCollection());
+        Mockito.verify(mockDatabaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+        Mockito.verify(mockDatabaseService, Mockito.never()).addBook(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    void givenInvalidChunkSize_whenConstruct_thenThrowIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(databaseService, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(null));
+    }
+}
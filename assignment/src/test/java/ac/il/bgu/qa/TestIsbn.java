@@ -0,0 +1,62 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.utils.IsbnValidator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class TestIsbn {
+
+    @Test
+    void givenHyphenatedAndPlainISBN_whenOf_thenEqualWithSameKey() {
+        // Act
+        Isbn hyphenated = Isbn.of("978-0-306-40615-7");
+        Isbn plain = Isbn.of("9780306406157");
+
+        // Assert
+        Assertions.assertEquals(hyphenated, plain);
+        Assertions.assertEquals(hyphenated.hashCode(), plain.hashCode());
+        Assertions.assertEquals(9780306406157L, hyphenated.longValue());
+        Assertions.assertEquals("9780306406157", hyphenated.toString());
+    }
+
+    @Test
+    void givenInvalidISBN_whenOf_thenThrowIllegalArgumentException() {
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Isbn.of("978-3-16-148410-5"));
+        Assertions.assertEquals("Invalid ISBN.", exception.getMessage());
+    }
+
+    @Test
+    void givenInvalidISBN_whenPack_thenReturnInvalid() {
+        Assertions.assertEquals(IsbnValidator.INVALID, Isbn.pack("AAAAAAAAAAAAA"));
+        Assertions.assertEquals(IsbnValidator.INVALID, Isbn.pack(null));
+    }
+
+    @Test
+    void givenPackedValue_whenValueOf_thenChecksumVerified() {
+        Assertions.assertEquals(Isbn.of("978-3-16-148410-0"), Isbn.valueOf(9783161484100L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Isbn.valueOf(9783161484105L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Isbn.valueOf(-1L));
+    }
+
+    @Test
+    void givenISBNWithLeadingZeros_whenToString_thenPaddedTo13Digits() {
+        // 0000000000000 has a zero checksum and is therefore a valid ISBN-13 value.
+        Assertions.assertEquals("0000000000000", Isbn.valueOf(0L).toString());
+    }
+
+    @Test
+    void givenPackedISBN_whenDefaultGetBookByISBN_thenLooksUpCanonicalForm() {
+        // Arrange
+        DatabaseService databaseService = Mockito.mock(DatabaseService.class);
+        Book book = new Book("9780306406157", "Title", "Author");
+        Mockito.when(databaseService.getBookByISBN(Mockito.anyLong())).thenCallRealMethod();
+        Mockito.when(databaseService.getBookByISBN("9780306406157")).thenReturn(book);
+
+        // Act and Assert
+        Assertions.assertSame(book, databaseService.getBookByISBN(Isbn.pack("978-0-306-40615-7")));
+        Assertions.assertSame(book, databaseService.getBookByISBN(Isbn.pack("9780306406157")));
+    }
+}
@@ -1,12 +1,20 @@
 package ac.il.bgu.qa;
 
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.notification.NotificationDispatcher;
+import ac.il.bgu.qa.notification.RetryPolicy;
 import ac.il.bgu.qa.services.*;;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class TestLibrary {
     @Mock
@@ -27,10 +35,17 @@ public class TestLibrary {
     @Mock
     User mockUser;
 
+    // Runs the background notifications of getBookByISBN, so each test can wait for its own.
+    NotificationDispatcher notificationDispatcher;
+
     @BeforeEach
     void init() {
         MockitoAnnotations.openMocks(this);
-        mockLibrary = Mockito.spy(new Library(mockDatabaseService, mockReviewService));
+        notificationDispatcher = new NotificationDispatcher(Executors.newSingleThreadExecutor(),
+                Executors.newSingleThreadScheduledExecutor(), new RetryPolicy(5, 1, 4, TimeUnit.MILLISECONDS),
+                16, 0, TimeUnit.MILLISECONDS);
+        mockLibrary = Mockito.spy(new Library(mockDatabaseService, mockReviewService, new SequentialBorrowStrategy(),
+                notificationDispatcher));
 //        mockLibrary = new Library(mockDatabaseService, mockReviewService);
 //        mockBook = new Book("978-3-16-148410-0", "Test Book", "Test Author");
         mockBook = Mockito.mock(Book.class);
@@ -38,11 +53,23 @@ public class TestLibrary {
     }
 
     @AfterEach
-    public void cleanup() {
+    public void cleanup() throws InterruptedException {
+        // Let background notifications finish before the next test replaces the mocks, then stop the dispatcher
+        awaitNotifications();
+        notificationDispatcher.shutdown();
         // Clean up resources or delete the object
         mockBook = null;
     }
 
+    // Waits until every notification dispatched so far has finished.
+    private void awaitNotifications() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (notificationDispatcher.getPending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(0, notificationDispatcher.getPending());
+    }
+
     //Test borrowBook functionality
     @Test
     public void givenSuccessfulBorrowBook_whenBorrowBook_thenNoExceptionThrown() {
@@ -1234,29 +1261,290 @@ public class TestLibrary {
     }
 
     @Test
-    void givenNotificationFail_whenGetBookByISBN_thenReturnBookSuccessfully() {
+    void givenNotificationFail_whenGetBookByISBN_thenReturnBookSuccessfully() throws InterruptedException {
         // Arrange
         String userId = "123456789012";
         String bookISBN = "978-3-16-148410-0";
 
-        // Stubbing - Define behavior for mockDatabaseService
+        // Stubbing - Define behavior for the services and a user whose notifications always fail
         Mockito.when(mockBook.getISBN()).thenReturn(bookISBN);
-        Mockito.when(mockUser.getId()).thenReturn(userId);
-        Mockito.when(mockDatabaseService.getBookByISBN(mockBook.getISBN())).thenReturn(mockBook);
+        Mockito.when(mockBook.getTitle()).thenReturn("Title");
+        Mockito.when(mockDatabaseService.getBookByISBN(bookISBN)).thenReturn(mockBook);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
         Mockito.when(mockBook.isBorrowed()).thenReturn(false);
-
+        Mockito.when(mockReviewService.getReviewsForBook(bookISBN)).thenReturn(List.of("Review A"));
         Mockito.doThrow(new NotificationException("Notification failed!"))
-                .when(mockLibrary).notifyUserWithBookReviews(bookISBN, userId);
+                .when(mockUser).sendNotification(Mockito.anyString());
 
-        // Act and Assert
-        Book returnedBook = mockLibrary.getBookByISBN(mockBook.getISBN(), mockUser.getId());
+        // Act
+        Book returnedBook = mockLibrary.getBookByISBN(bookISBN, userId);
+        awaitNotifications();
 
+        // Assert the result - the book is returned and the notification failed after all attempts
+        Assertions.assertEquals(mockBook, returnedBook);
+        Assertions.assertEquals(1, notificationDispatcher.getFailed());
+        Mockito.verify(mockUser, Mockito.times(5)).sendNotification("Reviews for 'Title':\nReview A");
 
         // Verify interactions
-        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(mockBook.getISBN());
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(bookISBN);
+    }
 
-        // Assert the result
+    @Test
+    void givenAvailableBook_whenGetBookByISBN_thenBookFetchedOnceAndUserNotified() throws InterruptedException {
+        // Arrange
+        String userId = "123456789012";
+        String bookISBN = "978-3-16-148410-0";
+        Mockito.when(mockBook.getTitle()).thenReturn("Title");
+        Mockito.when(mockDatabaseService.getBookByISBN(bookISBN)).thenReturn(mockBook);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+        Mockito.when(mockReviewService.getReviewsForBook(bookISBN)).thenReturn(List.of("Review A", "Review B"));
+
+        // Act
+        Book returnedBook = mockLibrary.getBookByISBN(bookISBN, userId);
+        awaitNotifications();
+
+        // Assert - the notification reused the book fetched for the caller
+        Assertions.assertEquals(mockBook, returnedBook);
+        Assertions.assertEquals(1, notificationDispatcher.getDelivered());
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Reviews for 'Title':\nReview A\nReview B");
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(bookISBN);
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getUserById(userId);
+        Mockito.verify(mockReviewService, Mockito.times(1)).close();
+        Mockito.verify(mockLibrary, Mockito.never()).notifyUserWithBookReviews(bookISBN, userId);
+    }
+
+    @Test
+    void givenSlowNotification_whenGetBookByISBN_thenBookReturnedBeforeDelivery() throws InterruptedException {
+        // Arrange
+        String userId = "123456789012";
+        String bookISBN = "978-3-16-148410-0";
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockDatabaseService.getBookByISBN(bookISBN)).thenReturn(mockBook);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+        Mockito.when(mockReviewService.getReviewsForBook(bookISBN)).thenReturn(List.of("Review A"));
+        Mockito.doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(mockUser).sendNotification(Mockito.anyString());
+
+        // Act
+        Book returnedBook = mockLibrary.getBookByISBN(bookISBN, userId);
+
+        // Assert - the caller got the book while the delivery is still waiting on the notification service
         Assertions.assertEquals(mockBook, returnedBook);
+        Assertions.assertEquals(0, notificationDispatcher.getDelivered());
+        release.countDown();
+        awaitNotifications();
+        Assertions.assertEquals(1, notificationDispatcher.getDelivered());
+    }
+
+    @Test
+    void givenInvalidUserId_whenGetBookByISBN_thenRejectedBeforeAnyLookup() {
+        // Act
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> mockLibrary.getBookByISBN("978-3-16-148410-0", "12345"));
+
+        // Assert - the request is validated up front, so nothing is fetched or dispatched
+        Mockito.verifyNoInteractions(mockDatabaseService, mockReviewService);
+        Assertions.assertEquals(0, notificationDispatcher.getPending());
+    }
+
+    // Batch borrow and return tests
+
+    @Test
+    void givenAvailableBooks_whenBorrowBooks_thenSingleBatchedLookupAndWrite() {
+        // Arrange
+        String userId = "123456789012";
+        String firstISBN = "978-3-16-148410-0";
+        String secondISBN = "9780306406157";
+        List<String> ISBNs = List.of(firstISBN, secondISBN);
+        Book secondBook = Mockito.mock(Book.class);
+        Map<String, Book> books = new HashMap<>();
+        books.put(firstISBN, mockBook);
+        books.put(secondISBN, secondBook);
+
+        // Stubbing - Define behavior for mockDatabaseService
+        Mockito.when(mockDatabaseService.getBooksByISBN(ISBNs)).thenReturn(books);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+
+        // Act
+        BatchResult result = mockLibrary.borrowBooks(ISBNs, userId);
+
+        // Assert
+        Assertions.assertTrue(result.isSuccessful());
+        Assertions.assertEquals(ISBNs, result.getSucceeded());
+        Mockito.verify(mockBook, Mockito.times(1)).borrow();
+        Mockito.verify(secondBook, Mockito.times(1)).borrow();
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBooksByISBN(ISBNs);
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getUserById(userId);
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).borrowBooks(ISBNs, userId);
+        Mockito.verify(mockDatabaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+        Mockito.verify(mockDatabaseService, Mockito.never()).borrowBook(Mockito.anyString(), Mockito.anyString());
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenSameBookListedTwice_whenBorrowBooks_thenBorrowedAndReportedOnce() {
+        // Arrange
+        String userId = "123456789012";
+        String ISBN = "978-3-16-148410-0";
+        Book book = new Book(ISBN, "Title", "Author");
+        Map<String, Book> books = new HashMap<>();
+        books.put(ISBN, book);
+        Mockito.when(mockDatabaseService.getBooksByISBN(List.of(ISBN))).thenReturn(books);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+
+        // Act
+        BatchResult result = mockLibrary.borrowBooks(List.of(ISBN, "9783161484100", ISBN), userId);
+
+        // Assert
+        Assertions.assertTrue(result.isSuccessful());
+        Assertions.assertEquals(List.of(ISBN), result.getSucceeded());
+        Assertions.assertTrue(book.isBorrowed());
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).borrowBooks(List.of(ISBN), userId);
+    }
+
+    @Test
+    void givenInvalidMissingAndBorrowedBooks_whenBorrowBooks_thenFailuresReportedPerItem() {
+        // Arrange
+        String userId = "123456789012";
+        String validISBN = "978-3-16-148410-0";
+        String invalidISBN = "978-3-16-148410-5";
+        String missingISBN = "9780306406157";
+        String borrowedISBN = "9780131103627";
+        Book borrowedBook = Mockito.mock(Book.class);
+        Map<String, Book> books = new HashMap<>();
+        books.put(validISBN, mockBook);
+        books.put(borrowedISBN, borrowedBook);
+
+        // Stubbing - Define behavior for mockDatabaseService
+        Mockito.when(borrowedBook.isBorrowed()).thenReturn(true);
+        Mockito.when(mockDatabaseService.getBooksByISBN(List.of(validISBN, missingISBN, borrowedISBN))).thenReturn(books);
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+
+        // Act
+        BatchResult result = mockLibrary.borrowBooks(List.of(validISBN, invalidISBN, missingISBN, borrowedISBN), userId);
+
+        // Assert
+        Assertions.assertEquals(List.of(validISBN), result.getSucceeded());
+        Assertions.assertEquals("Invalid ISBN.", result.getFailures().get(invalidISBN).getMessage());
+        Assertions.assertInstanceOf(BookNotFoundException.class, result.getFailures().get(missingISBN));
+        Assertions.assertInstanceOf(BookAlreadyBorrowedException.class, result.getFailures().get(borrowedISBN));
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).borrowBooks(List.of(validISBN), userId);
+    }
+
+    @Test
+    void givenUnregisteredUser_whenBorrowBooks_thenThrowUserNotRegisteredAndNothingBorrowed() {
+        // Arrange
+        String userId = "123456789012";
+        List<String> ISBNs = List.of("978-3-16-148410-0");
+
+        // Stubbing - Define behavior for mockDatabaseService
+        Mockito.when(mockDatabaseService.getBooksByISBN(ISBNs)).thenReturn(Map.of("978-3-16-148410-0", mockBook));
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(null);
+
+        // Act and Assert
+        UserNotRegisteredException exception = Assertions.assertThrows(UserNotRegisteredException.class,
+                () -> mockLibrary.borrowBooks(ISBNs, userId));
+        Assertions.assertEquals("User not found!", exception.getMessage());
+        Mockito.verify(mockBook, Mockito.never()).borrow();
+        Mockito.verify(mockDatabaseService, Mockito.never()).borrowBooks(Mockito.anyCollection(), Mockito.anyString());
+    }
+
+    @Test
+    void givenInvalidUserId_whenBorrowBooks_thenThrowIllegalArgumentException() {
+        // Act and Assert
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> mockLibrary.borrowBooks(List.of("978-3-16-148410-0"), "12345"));
+        Assertions.assertEquals("Invalid user Id.", exception.getMessage());
+        Mockito.verifyNoInteractions(mockDatabaseService);
+    }
+
+    @Test
+    void givenBorrowedAndNotBorrowedBooks_whenReturnBooks_thenSingleBatchedWriteForBorrowedOnly() {
+        // Arrange
+        String borrowedISBN = "978-3-16-148410-0";
+        String availableISBN = "9780306406157";
+        Book availableBook = Mockito.mock(Book.class);
+        Map<String, Book> books = new HashMap<>();
+        books.put(borrowedISBN, mockBook);
+        books.put(availableISBN, availableBook);
+
+        // Stubbing - Define behavior for mockDatabaseService
+        Mockito.when(mockBook.isBorrowed()).thenReturn(true);
+        Mockito.when(mockDatabaseService.getBooksByISBN(List.of(borrowedISBN, availableISBN))).thenReturn(books);
+
+        // Act
+        BatchResult result = mockLibrary.returnBooks(List.of(borrowedISBN, availableISBN));
+
+        // Assert
+        Assertions.assertEquals(List.of(borrowedISBN), result.getSucceeded());
+        Assertions.assertInstanceOf(BookNotBorrowedException.class, result.getFailures().get(availableISBN));
+        Mockito.verify(mockBook, Mockito.times(1)).returnBook();
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).returnBooks(List.of(borrowedISBN));
+        Mockito.verify(mockDatabaseService, Mockito.never()).returnBook(Mockito.anyString());
+    }
+
+    @Test
+    void givenBatchWriteFails_whenBorrowBooks_thenBorrowStateRolledBack() {
+        // Arrange
+        String userId = "123456789012";
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        List<String> ISBNs = List.of(book.getISBN());
+
+        // Stubbing - Define behavior for mockDatabaseService
+        Mockito.when(mockDatabaseService.getBooksByISBN(ISBNs)).thenReturn(Map.of(book.getISBN(), book));
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+        Mockito.doThrow(new IllegalStateException("Database down")).when(mockDatabaseService).borrowBooks(ISBNs, userId);
+
+        // Act and Assert
+        Assertions.assertThrows(IllegalStateException.class, () -> mockLibrary.borrowBooks(ISBNs, userId));
+        Assertions.assertFalse(book.isBorrowed());
+    }
+
+    @Test
+    void givenUserWithLoans_whenGetLoans_thenBooksInLoanOrder() {
+        // Arrange
+        String userId = "123456789012";
+        Book first = new Book("9780306406157", "First", "Author");
+        Book second = new Book("9780262033848", "Second", "Author");
+        Map<String, Book> books = new HashMap<>();
+        books.put(second.getISBN(), second);
+        books.put(first.getISBN(), first);
+        List<String> ISBNs = List.of(first.getISBN(), second.getISBN());
+        Mockito.when(mockDatabaseService.getUserById(userId)).thenReturn(mockUser);
+        Mockito.when(mockDatabaseService.getLoansByUserId(userId)).thenReturn(ISBNs);
+        Mockito.when(mockDatabaseService.getBooksByISBN(ISBNs)).thenReturn(books);
+
+        // Act
+        List<Book> loans = mockLibrary.getLoans(userId);
+
+        // Assert
+        Assertions.assertEquals(List.of(first, second), loans);
+    }
+
+    @Test
+    void givenInvalidOrUnregisteredUser_whenGetLoans_thenThrows() {
+        // Arrange
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(null);
+
+        // Act & Assert
+        Assertions.assertThrows(IllegalArgumentException.class, () -> mockLibrary.getLoans("12345"));
+        Assertions.assertThrows(UserNotRegisteredException.class, () -> mockLibrary.getLoans("123456789012"));
+        Mockito.verify(mockDatabaseService, Mockito.never()).getLoansByUserId(Mockito.anyString());
+    }
+
+    @Test
+    void givenBorrowedAndAvailableBooks_whenGetBorrower_thenBorrowerOrNull() {
+        // Arrange
+        String borrowed = "9780306406157";
+        String available = "9780262033848";
+        Mockito.when(mockDatabaseService.getBookByISBN(Mockito.anyString())).thenReturn(mockBook);
+        Mockito.when(mockDatabaseService.getBorrowerId(borrowed)).thenReturn("123456789012");
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(mockUser);
+
+        // Act & Assert
+        Assertions.assertSame(mockUser, mockLibrary.getBorrower(borrowed));
+        Assertions.assertNull(mockLibrary.getBorrower(available));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> mockLibrary.getBorrower("978-3-16-148410-5"));
+    }
+}
@@ -0,0 +1,114 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.search.CatalogIndex;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.impl.IndexingDatabaseService;
+import ac.il.bgu.qa.services.impl.MappedCatalogDatabaseService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestSearchableLibrary {
+
+    IndexingDatabaseService databaseService;
+    SearchableLibrary library;
+
+    @BeforeEach
+    void init() {
+        databaseService = new IndexingDatabaseService(new InMemoryDatabaseService(), new CatalogIndex());
+        library = new SearchableLibrary(databaseService, Mockito.mock(ReviewService.class));
+    }
+
+    @Test
+    void givenBooksAdded_whenFindByAuthor_thenSameBooksInOrder() {
+        // Arrange
+        Book first = new Book("9780306406157", "Java Concurrency in Practice", "Brian Goetz");
+        Book second = new Book("9780262033848", "Introduction to Algorithms", "Thomas H. Cormen");
+        Book third = new Book("9780470059029", "Java Puzzlers", "Brian  Goetz");
+        library.addBook(first);
+        library.addBook(second);
+        library.addBook(third);
+
+        // Act
+        List<Book> books = library.findByAuthor("brian goetz", 0, 10);
+
+        // Assert
+        Assertions.assertEquals(Arrays.asList(first, third), books);
+        Assertions.assertEquals(Arrays.asList(third), library.findByAuthor("Brian Goetz", 1, 10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> library.findByAuthor("-Goetz", 0, 10));
+    }
+
+    @Test
+    void givenBooksAdded_whenSearchTitlePrefix_thenBooksOrderedByTitle() {
+        // Arrange
+        Book puzzlers = new Book("9780470059029", "Java Puzzlers", "Brian Goetz");
+        Book concurrency = new Book("9780306406157", "Java Concurrency in Practice", "Brian Goetz");
+        library.addBook(puzzlers);
+        library.addBook(concurrency);
+        library.addBook(new Book("9780262033848", "Introduction to Algorithms", "Thomas H. Cormen"));
+
+        // Act
+        List<Book> books = library.searchTitlePrefix("JAVA ", 0, 10);
+
+        // Assert
+        Assertions.assertEquals(Arrays.asList(concurrency, puzzlers), books);
+        Assertions.assertEquals(Arrays.asList(puzzlers), library.searchTitlePrefix("java p", 0, 1));
+        Assertions.assertTrue(library.searchTitlePrefix("Javascript", 0, 10).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> library.searchTitlePrefix(" ", 0, 10));
+    }
+
+    @Test
+    void givenBookReplacedInDatabase_whenSearched_thenOnlyNewVersionIndexed() {
+        // Arrange
+        databaseService.addBook("9780306406157", new Book("9780306406157", "Old Title", "Old Author"));
+
+        // Act
+        databaseService.addBooks(Arrays.asList(new Book("9780306406157", "New Title", "New Author")));
+
+        // Assert
+        Assertions.assertTrue(library.searchTitlePrefix("Old", 0, 10).isEmpty());
+        Assertions.assertTrue(library.findByAuthor("Old Author", 0, 10).isEmpty());
+        Assertions.assertEquals("New Title", library.findByAuthor("New Author", 0, 10).get(0).getTitle());
+        Assertions.assertEquals(1, databaseService.getIndex().size());
+    }
+
+    @Test
+    void givenMappedCatalogBookReplaced_whenSearched_thenOldVersionRemoved(@TempDir Path directory) {
+        // Arrange
+        MappedCatalogDatabaseService catalog = new MappedCatalogDatabaseService(directory, 16);
+        try {
+            IndexingDatabaseService indexing = new IndexingDatabaseService(catalog, new CatalogIndex());
+            SearchableLibrary mappedLibrary = new SearchableLibrary(indexing, Mockito.mock(ReviewService.class));
+            indexing.addBook("9780306406157", new Book("9780306406157", "Old Title", "Old Author"));
+
+            // Act
+            indexing.addBook("9780306406157", new Book("9780306406157", "New Title", "New Author"));
+
+            // Assert
+            Assertions.assertTrue(mappedLibrary.searchTitlePrefix("Old", 0, 10).isEmpty());
+            Assertions.assertTrue(mappedLibrary.findByAuthor("Old Author", 0, 10).isEmpty());
+            Assertions.assertEquals(1, indexing.getIndex().size());
+        } finally {
+            catalog.close();
+        }
+    }
+
+    @Test
+    void givenSameISBNTwiceInBatch_whenAddBooks_thenOnlyLastVersionIndexed() {
+        // Act
+        databaseService.addBooks(Arrays.asList(new Book("978-0-306-40615-7", "First Title", "First Author"),
+                new Book("9780306406157", "Second Title", "Second Author")));
+
+        // Assert
+        Assertions.assertEquals(1, databaseService.getIndex().size());
+        Assertions.assertTrue(library.findByAuthor("First Author", 0, 10).isEmpty());
+        Assertions.assertEquals(1, library.findByAuthor("Second Author", 0, 10).size());
+    }
+}
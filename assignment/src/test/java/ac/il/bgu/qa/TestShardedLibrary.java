@@ -0,0 +1,140 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.impl.ShardedDatabaseService;
+import ac.il.bgu.qa.utils.UserIdValidator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestShardedLibrary {
+
+    static final int BOOKS = 2_000;
+
+    List<InMemoryDatabaseService> shards;
+    ShardedLibrary library;
+
+    @BeforeEach
+    void init() {
+        shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new InMemoryDatabaseService());
+        }
+        ReviewService reviewService = Mockito.mock(ReviewService.class);
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString())).thenReturn(List.of("Review"));
+        library = new ShardedLibrary(shards, reviewService);
+        for (int i = 0; i < BOOKS; i++) {
+            library.addBook(new Book(isbn(i), "Title", "Author"));
+            library.registerUser(new User("Name", UserIdValidator.unpack(i), (userId, message) -> { }));
+        }
+    }
+
+    // Builds the n-th valid ISBN-13 with a 978 prefix.
+    static String isbn(long n) {
+        long prefix = 978_000_000_000L + n;
+        int sum = 0;
+        long rest = prefix;
+        for (int i = 0; i < 12; i++) {
+            int digit = (int) (rest % 10);
+            sum += (i & 1) == 0 ? digit * 3 : digit;
+            rest /= 10;
+        }
+        return Long.toString(prefix * 10 + (10 - sum % 10) % 10);
+    }
+
+    @Test
+    void givenBookAndUserOnDifferentShards_whenBorrowedAndReturned_thenLoanRecordedOnBookShard() {
+        // Arrange
+        ShardedDatabaseService router = new ShardedDatabaseService(shards);
+        String ISBN = isbn(0);
+        String userId = UserIdValidator.unpack(0);
+        for (int i = 1; router.shardOfBook(ISBN) == router.shardOfUser(userId); i++) {
+            userId = UserIdValidator.unpack(i);
+        }
+        InMemoryDatabaseService bookShard = shards.get(router.shardOfBook(ISBN));
+
+        // Act
+        library.borrowBook(ISBN, userId);
+        boolean borrowed = bookShard.isBorrowed(ISBN);
+        library.returnBook(ISBN);
+
+        // Assert
+        Assertions.assertTrue(borrowed);
+        Assertions.assertFalse(bookShard.isBorrowed(ISBN));
+        Assertions.assertNull(shards.get(router.shardOfUser(userId)).getBookByISBN(ISBN));
+    }
+
+    @Test
+    void givenNewShard_whenAdded_thenOnlyItsShareMovesAndLoansSurvive() {
+        // Arrange
+        for (int i = 0; i < BOOKS; i += 10) {
+            library.borrowBook(isbn(i), UserIdValidator.unpack(i));
+        }
+        InMemoryDatabaseService newShard = new InMemoryDatabaseService();
+
+        // Act
+        int moved = library.addShard(newShard);
+
+        // Assert
+        Assertions.assertEquals(5, library.getShardCount());
+        Assertions.assertEquals(2 * BOOKS / 5.0, moved, 2 * BOOKS / 5.0 * 0.3);
+        Assertions.assertEquals(moved, newShard.bookCount() + newShard.userCount());
+        for (int i = 0; i < BOOKS; i += 10) {
+            library.returnBook(isbn(i));
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            Assertions.assertNotNull(library.getBookByISBN(isbn(i), UserIdValidator.unpack(i)));
+        }
+    }
+
+    @Test
+    void givenBatchAcrossShards_whenBorrowed_thenEveryBookBorrowed() {
+        // Arrange
+        List<String> ISBNs = Arrays.asList(isbn(1), isbn(2), isbn(3), isbn(4), isbn(5), isbn(6));
+
+        // Act
+        BatchResult result = library.borrowBooks(ISBNs, UserIdValidator.unpack(7));
+
+        // Assert
+        Assertions.assertTrue(result.isSuccessful());
+        Assertions.assertEquals(ISBNs, result.getSucceeded());
+    }
+
+    @Test
+    void givenLoansOnSeveralShards_whenShardAdded_thenLoansAndBorrowersKept() {
+        // Arrange
+        String userId = UserIdValidator.unpack(7);
+        List<String> ISBNs = Arrays.asList(isbn(1), isbn(2), isbn(3), isbn(4), isbn(5), isbn(6));
+        for (String ISBN : ISBNs) {
+            library.borrowBook(ISBN, userId);
+        }
+        library.returnBook(isbn(3));
+
+        // Act
+        library.addShard(new InMemoryDatabaseService());
+
+        // Assert
+        List<String> loaned = new ArrayList<>();
+        for (Book book : library.getLoans(userId)) {
+            loaned.add(book.getISBN());
+        }
+        Assertions.assertEquals(5, loaned.size());
+        Assertions.assertTrue(loaned.containsAll(Arrays.asList(isbn(1), isbn(2), isbn(4), isbn(5), isbn(6))));
+        Assertions.assertEquals(userId, library.getBorrower(isbn(6)).getId());
+        Assertions.assertNull(library.getBorrower(isbn(3)));
+    }
+
+    @Test
+    void givenNoShards_whenConstructed_thenThrowsIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ShardedLibrary(new ArrayList<InMemoryDatabaseService>(), Mockito.mock(ReviewService.class)));
+        Assertions.assertEquals("Invalid shard list.", exception.getMessage());
+    }
+}
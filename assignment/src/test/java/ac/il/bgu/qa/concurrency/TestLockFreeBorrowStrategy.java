@@ -0,0 +1,154 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLockFreeBorrowStrategy {
+
+    static final String ISBN = "978-3-16-148410-0";
+    static final int THREADS = 8;
+
+    InMemoryDatabaseService databaseService;
+    Library library;
+
+    @BeforeEach
+    void init() {
+        databaseService = new InMemoryDatabaseService();
+        library = new Library(databaseService, Mockito.mock(ReviewService.class), new LockFreeBorrowStrategy());
+        library.addBook(new Book(ISBN, "Title", "Author"));
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser(new User("Name", String.format("%012d", i), Mockito.mock(NotificationService.class)));
+        }
+    }
+
+    @Test
+    void givenConcurrentBorrowersOfSameBook_whenBorrowBook_thenExactlyOneSucceeds() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            // Arrange
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            // Act
+            runConcurrently(i -> {
+                try {
+                    library.borrowBook(ISBN, String.format("%012d", i));
+                    succeeded.incrementAndGet();
+                } catch (BookAlreadyBorrowedException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+
+            // Assert
+            Assertions.assertEquals(1, succeeded.get());
+            Assertions.assertEquals(THREADS - 1, rejected.get());
+            Assertions.assertTrue(databaseService.isBorrowed(ISBN));
+            library.returnBook(ISBN);
+        }
+    }
+
+    @Test
+    void givenConcurrentReturnsOfSameBook_whenReturnBook_thenExactlyOneSucceeds() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            // Arrange
+            library.borrowBook(ISBN, "000000000000");
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            // Act
+            runConcurrently(i -> {
+                try {
+                    library.returnBook(ISBN);
+                    succeeded.incrementAndGet();
+                } catch (BookNotBorrowedException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+
+            // Assert
+            Assertions.assertEquals(1, succeeded.get());
+            Assertions.assertEquals(THREADS - 1, rejected.get());
+            Assertions.assertFalse(databaseService.isBorrowed(ISBN));
+        }
+    }
+
+    @Test
+    void givenDifferentBooksPerThread_whenBorrowAndReturnRepeatedly_thenStateConsistent() throws Exception {
+        // Arrange
+        String[] isbns = {"9783161484100", "9780306406157", "9780131103627", "9780201633610",
+                "9780596520687", "9781491950357", "9780134685991", "9780262033848"};
+        for (int i = 1; i < THREADS; i++) {
+            library.addBook(new Book(isbns[i], "Title", "Author"));
+        }
+
+        // Act
+        runConcurrently(i -> {
+            for (int n = 0; n < 10_000; n++) {
+                library.borrowBook(isbns[i], String.format("%012d", i));
+                library.returnBook(isbns[i]);
+            }
+        });
+
+        // Assert
+        for (String isbn : isbns) {
+            Assertions.assertFalse(databaseService.getBookByISBN(isbn).isBorrowed());
+            Assertions.assertFalse(databaseService.isBorrowed(isbn));
+        }
+    }
+
+    @Test
+    void givenFailingDatabaseWrite_whenBorrowBook_thenBorrowStateRolledBack() {
+        // Arrange
+        Book book = new Book(ISBN, "Title", "Author");
+        DatabaseService failingDatabase = Mockito.mock(DatabaseService.class);
+        Mockito.when(failingDatabase.getBookByISBN(ISBN)).thenReturn(book);
+        Mockito.when(failingDatabase.getUserById("123456789012")).thenReturn(Mockito.mock(User.class));
+        Mockito.doThrow(new IllegalStateException("Database down")).when(failingDatabase).borrowBook(ISBN, "123456789012");
+        Library failingLibrary = new Library(failingDatabase, Mockito.mock(ReviewService.class), new LockFreeBorrowStrategy());
+
+        // Act and Assert
+        Assertions.assertThrows(IllegalStateException.class, () -> failingLibrary.borrowBook(ISBN, "123456789012"));
+        Assertions.assertFalse(book.isBorrowed());
+    }
+
+    // Starts one task per thread at the same instant and waits for all of them.
+    private static void runConcurrently(IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(index);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface IntConsumer {
+        void accept(int value);
+    }
+}
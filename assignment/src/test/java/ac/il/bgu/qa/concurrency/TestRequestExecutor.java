@@ -0,0 +1,119 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+public class TestRequestExecutor {
+
+    @Test
+    void givenRunningJdk_whenCreate_thenVirtualOnlyIfSupported() throws Exception {
+        // Act
+        RequestExecutor executor = RequestExecutor.create(2, 16);
+        try {
+            // Assert
+            Assertions.assertEquals(Threads.virtualThreadsAvailable(), executor.isVirtual());
+            Assertions.assertEquals("Book", executor.submit(() -> "Book").get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void givenFailingRequest_whenSubmit_thenFutureFailsWithItsException() {
+        RequestExecutor executor = RequestExecutor.bounded(1, 1);
+        try {
+            // Act
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> executor.run(() -> {
+                        throw new BookNotFoundException("Book not found!");
+                    }).get(5, TimeUnit.SECONDS));
+
+            // Assert
+            Assertions.assertInstanceOf(BookNotFoundException.class, exception.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void givenFullQueue_whenSubmit_thenRejected() throws Exception {
+        // Arrange
+        RequestExecutor executor = RequestExecutor.bounded(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = executor.run(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<Void> queued = executor.run(() -> { });
+
+            // Act
+            CompletableFuture<Void> rejected = executor.run(() -> { });
+
+            // Assert
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> rejected.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+            Assertions.assertEquals(1, executor.getRejected());
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void givenShutdown_whenSubmit_thenRejectedButNotCounted() {
+        // Arrange
+        RequestExecutor executor = RequestExecutor.bounded(1, 1);
+        executor.shutdown();
+
+        // Act
+        CompletableFuture<Void> refused = executor.run(() -> { });
+
+        // Assert
+        Assertions.assertTrue(refused.isCompletedExceptionally());
+        Assertions.assertEquals(0, executor.getRejected());
+    }
+
+    @Test
+    void givenPerTaskExecutorAtCapacity_whenSubmit_thenRejectedAndCounted() throws Exception {
+        // Arrange - a thread per task stands in for virtual threads, bounded to one request in progress.
+        RequestExecutor executor = new RequestExecutor(Executors.newCachedThreadPool(), true, new Semaphore(1));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = executor.run(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            // Act
+            CompletableFuture<Void> rejected = executor.run(() -> { });
+
+            // Assert
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> rejected.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+            Assertions.assertEquals(1, executor.getRejected());
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void givenInvalidThreadCount_whenCreate_thenThrowIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RequestExecutor.create(0, 16));
+    }
+}
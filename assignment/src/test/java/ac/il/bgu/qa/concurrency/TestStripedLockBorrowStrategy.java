@@ -0,0 +1,263 @@
+package ac.il.bgu.qa.concurrency;
+
+import ac.il.bgu.qa.BatchResult;
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.impl.InMemoryDatabaseService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestStripedLockBorrowStrategy {
+
+    static final String ISBN = "978-3-16-148410-0";
+    static final int THREADS = 8;
+
+    InMemoryDatabaseService databaseService;
+    StripedLockBorrowStrategy strategy;
+    Library library;
+
+    @BeforeEach
+    void init() {
+        databaseService = new InMemoryDatabaseService();
+        strategy = new StripedLockBorrowStrategy(16);
+        library = new Library(databaseService, Mockito.mock(ReviewService.class), strategy);
+        library.addBook(new Book(ISBN, "Title", "Author"));
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser(new User("Name", String.format("%012d", i), Mockito.mock(NotificationService.class)));
+        }
+    }
+
+    @Test
+    void givenConcurrentBorrowersOfSameBook_whenBorrowBook_thenExactlyOneSucceeds() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            // Arrange
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+
+            // Act
+            for (int i = 0; i < THREADS; i++) {
+                String userId = String.format("%012d", i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        library.borrowBook(ISBN, userId);
+                        succeeded.incrementAndGet();
+                    } catch (BookAlreadyBorrowedException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // Assert
+            Assertions.assertEquals(1, succeeded.get());
+            Assertions.assertEquals(THREADS - 1, rejected.get());
+            Assertions.assertTrue(databaseService.isBorrowed(ISBN));
+            library.returnBook(ISBN);
+        }
+    }
+
+    @Test
+    void givenDatabaseReturningNewBookPerLookup_whenConcurrentBorrowBook_thenExactlyOneSucceeds() throws Exception {
+        // Arrange
+        CopyingDatabaseService copyingDatabase = new CopyingDatabaseService();
+        Library copyingLibrary = new Library(copyingDatabase, Mockito.mock(ReviewService.class), strategy);
+        copyingLibrary.addBook(new Book(ISBN, "Title", "Author"));
+        for (int i = 0; i < THREADS; i++) {
+            copyingLibrary.registerUser(new User("Name", String.format("%012d", i),
+                    Mockito.mock(NotificationService.class)));
+        }
+
+        for (int round = 0; round < 200; round++) {
+            AtomicInteger succeeded = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+
+            // Act
+            for (int i = 0; i < THREADS; i++) {
+                String userId = String.format("%012d", i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        copyingLibrary.borrowBook(ISBN, userId);
+                        succeeded.incrementAndGet();
+                    } catch (BookAlreadyBorrowedException e) {
+                        // Another borrower got the book first.
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // Assert
+            Assertions.assertEquals(1, succeeded.get());
+            Assertions.assertTrue(copyingDatabase.isBorrowed(ISBN));
+            copyingLibrary.returnBook(ISBN);
+        }
+    }
+
+    @Test
+    void givenOverlappingBatchesInOppositeOrder_whenConcurrentBorrowBooks_thenEachBookBorrowedOnce() throws Exception {
+        // Arrange
+        CopyingDatabaseService copyingDatabase = new CopyingDatabaseService();
+        Library copyingLibrary = new Library(copyingDatabase, Mockito.mock(ReviewService.class), strategy);
+        List<String> basket = Arrays.asList(ISBN, "9780306406157", "9780131103627", "9780201633610");
+        for (String bookISBN : basket) {
+            copyingLibrary.addBook(new Book(bookISBN, "Title", "Author"));
+        }
+        List<String> reversed = new ArrayList<>(basket);
+        Collections.reverse(reversed);
+        for (int i = 0; i < THREADS; i++) {
+            copyingLibrary.registerUser(new User("Name", String.format("%012d", i),
+                    Mockito.mock(NotificationService.class)));
+        }
+
+        for (int round = 0; round < 100; round++) {
+            AtomicInteger borrowed = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+
+            // Act
+            for (int i = 0; i < THREADS; i++) {
+                String userId = String.format("%012d", i);
+                List<String> books = i % 2 == 0 ? basket : reversed;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    BatchResult result = copyingLibrary.borrowBooks(books, userId);
+                    borrowed.addAndGet(result.getSucceeded().size());
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // Assert
+            Assertions.assertEquals(basket.size(), borrowed.get());
+            copyingLibrary.returnBooks(basket);
+        }
+    }
+
+    @Test
+    void givenBothSpellingsOfAnISBN_whenStripeOf_thenSameStripe() {
+        Assertions.assertEquals(strategy.stripeOf("978-3-16-148410-0"), strategy.stripeOf("9783161484100"));
+    }
+
+    @Test
+    void givenStripeHeldDuringCommit_whenOtherBookOnSameStripe_thenWaitIsCounted() throws Exception {
+        // Arrange
+        StripedLockBorrowStrategy globalLock = new StripedLockBorrowStrategy(1);
+        Book first = new Book(ISBN, "Title", "Author");
+        Book second = new Book("9780306406157", "Title", "Author");
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> globalLock.borrow(ISBN, first, () -> {
+                committing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            committing.await();
+            Thread waiter = new Thread(() -> globalLock.borrow(second.getISBN(), second, () -> { }));
+
+            // Act
+            waiter.start();
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            waiter.join(5_000);
+
+            // Assert
+            Assertions.assertTrue(first.isBorrowed());
+            Assertions.assertTrue(second.isBorrowed());
+            Assertions.assertEquals(2, globalLock.getAcquisitions());
+            Assertions.assertEquals(1, globalLock.getContended());
+            Assertions.assertTrue(globalLock.getWaitNanos() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenFailingCommit_whenBorrow_thenBorrowStateRolledBack() {
+        // Arrange
+        Book book = new Book(ISBN, "Title", "Author");
+
+        // Act
+        Assertions.assertThrows(IllegalStateException.class, () -> strategy.borrow(ISBN, book, () -> {
+            throw new IllegalStateException("Database down");
+        }));
+
+        // Assert
+        Assertions.assertFalse(book.isBorrowed());
+    }
+
+    @Test
+    void givenNoStripes_whenConstructed_thenThrowIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StripedLockBorrowStrategy(0));
+    }
+
+    // Returns a new book for every lookup, carrying only the borrow state persisted in the database.
+    // Each lookup yields, widening the window between reading the state and changing it.
+    static class CopyingDatabaseService extends InMemoryDatabaseService {
+
+        @Override
+        public Book getBookByISBN(String ISBN) {
+            Book stored = super.getBookByISBN(ISBN);
+            return stored == null ? null : copy(stored);
+        }
+
+        @Override
+        public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+            Map<String, Book> copies = new HashMap<>();
+            for (Map.Entry<String, Book> entry : super.getBooksByISBN(ISBNs).entrySet()) {
+                copies.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return copies;
+        }
+
+        private Book copy(Book stored) {
+            Thread.yield();
+            Book copy = new Book(stored.getISBN(), stored.getTitle(), stored.getAuthor());
+            if (isBorrowed(stored.getISBN())) {
+                copy.borrow();
+            }
+            return copy;
+        }
+    }
+}
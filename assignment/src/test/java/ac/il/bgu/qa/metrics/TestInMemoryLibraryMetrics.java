@@ -0,0 +1,102 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestInMemoryLibraryMetrics {
+
+    static final String ISBN = "978-3-16-148410-0";
+    static final String USER_ID = "123456789012";
+
+    DatabaseService mockDatabaseService;
+    ReviewService mockReviewService;
+    InMemoryLibraryMetrics metrics;
+    Library library;
+
+    @BeforeEach
+    void init() {
+        mockDatabaseService = Mockito.mock(DatabaseService.class);
+        mockReviewService = Mockito.mock(ReviewService.class);
+        metrics = new InMemoryLibraryMetrics();
+        library = new Library(mockDatabaseService, mockReviewService, new SequentialBorrowStrategy(), null, metrics);
+    }
+
+    @Test
+    void givenRecordedLatencies_whenPercentilesRead_thenWithinBucketPrecision() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        // Act
+        long p50 = histogram.getValueAtPercentile(50, TimeUnit.NANOSECONDS);
+        long p99 = histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS);
+
+        // Assert
+        Assertions.assertEquals(100_000, histogram.getCount());
+        Assertions.assertEquals(50_000, p50, 50_000 * 0.04);
+        Assertions.assertEquals(99_000, p99, 99_000 * 0.04);
+        Assertions.assertEquals(100_000, histogram.getValueAtPercentile(100, TimeUnit.NANOSECONDS));
+        Assertions.assertEquals(100, histogram.getMax(TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    void givenAnyValue_whenBucketed_thenBucketCoversIt() {
+        // Act & Assert
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(value <= LatencyHistogram.highestValueOf(bucket));
+            Assertions.assertTrue(bucket == 0 || value > LatencyHistogram.highestValueOf(bucket - 1));
+        }
+    }
+
+    @Test
+    void givenMissingBook_whenBorrowed_thenFailureAndLatencyRecorded() {
+        // Arrange
+        Mockito.when(mockDatabaseService.getBookByISBN(ISBN)).thenReturn(null);
+
+        // Act
+        Assertions.assertThrows(BookNotFoundException.class, () -> library.borrowBook(ISBN, USER_ID));
+
+        // Assert
+        Assertions.assertEquals(1, metrics.getFailures(Operation.BORROW_BOOK, BookNotFoundException.class));
+        Assertions.assertEquals(1, metrics.getLatency(Operation.BORROW_BOOK).getCount());
+        Assertions.assertEquals(1, metrics.getDownstreamLatency(DownstreamCall.DATABASE_GET_BOOK).getCount());
+        Assertions.assertEquals(0, metrics.getDownstreamLatency(DownstreamCall.DATABASE_GET_USER).getCount());
+        Assertions.assertTrue(metrics.export().contains("failure BORROW_BOOK BookNotFoundException count=1"));
+    }
+
+    @Test
+    void givenFailingNotification_whenUserNotified_thenRetriesRecorded() {
+        // Arrange
+        Book book = new Book(ISBN, "Title", "Author");
+        User user = Mockito.mock(User.class);
+        Mockito.when(mockDatabaseService.getBookByISBN(ISBN)).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById(USER_ID)).thenReturn(user);
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenReturn(List.of("Review"));
+        Mockito.doThrow(new NotificationException("Down")).doNothing().when(user).sendNotification(Mockito.anyString());
+
+        // Act
+        library.notifyUserWithBookReviews(ISBN, USER_ID);
+
+        // Assert
+        Assertions.assertEquals(1, metrics.getRetries(Operation.NOTIFY_USER_WITH_BOOK_REVIEWS));
+        Assertions.assertEquals(2, metrics.getDownstreamLatency(DownstreamCall.NOTIFICATION_SEND).getCount());
+        Assertions.assertEquals(1, metrics.getDownstreamLatency(DownstreamCall.REVIEW_GET_REVIEWS).getCount());
+        Assertions.assertEquals(1, metrics.getDownstreamLatency(DownstreamCall.REVIEW_CLOSE).getCount());
+    }
+}
@@ -0,0 +1,289 @@
+package ac.il.bgu.qa.notification;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.BookLookup;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.SequentialBorrowStrategy;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.metrics.InMemoryLibraryMetrics;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestNotificationDispatcher {
+
+    User mockUser;
+    NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    void init() {
+        mockUser = Mockito.mock(User.class);
+        dispatcher = newDispatcher(4);
+    }
+
+    @AfterEach
+    void cleanup() {
+        dispatcher.shutdown();
+    }
+
+    private static NotificationDispatcher newDispatcher(int maxPending) {
+        return new NotificationDispatcher(Executors.newFixedThreadPool(2), Executors.newSingleThreadScheduledExecutor(),
+                new RetryPolicy(5, 1, 4, TimeUnit.MILLISECONDS), maxPending, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private static void await(CompletableFuture<Void> future) throws Exception {
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void givenWorkingService_whenSend_thenDeliveredOnce() throws Exception {
+        // Act
+        await(dispatcher.send(new Notification(mockUser, "Hello")));
+
+        // Assert
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Hello");
+        Assertions.assertEquals(1, dispatcher.getDelivered());
+    }
+
+    @Test
+    void given2FailuresThenSuccess_whenSend_thenRetriedAndDelivered() throws Exception {
+        // Arrange
+        Mockito.doThrow(new NotificationException("Notification failed!"))
+                .doThrow(new NotificationException("Notification failed!"))
+                .doNothing().when(mockUser).sendNotification(Mockito.anyString());
+
+        // Act
+        await(dispatcher.send(new Notification(mockUser, "Hello")));
+
+        // Assert
+        Mockito.verify(mockUser, Mockito.times(3)).sendNotification("Hello");
+        Assertions.assertEquals(2, dispatcher.getRetries());
+    }
+
+    @Test
+    void givenAlwaysFailingService_whenSend_thenFailsAfterMaxAttempts() {
+        // Arrange
+        Mockito.doThrow(new NotificationException("Notification failed!"))
+                .when(mockUser).sendNotification(Mockito.anyString());
+
+        // Act
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                () -> await(dispatcher.send(new Notification(mockUser, "Hello"))));
+
+        // Assert
+        Assertions.assertInstanceOf(NotificationException.class, exception.getCause());
+        Assertions.assertInstanceOf(NotificationException.class, exception.getCause().getCause());
+        Mockito.verify(mockUser, Mockito.times(5)).sendNotification("Hello");
+        Assertions.assertEquals(1, dispatcher.getFailed());
+    }
+
+    @Test
+    void givenServiceThrowingOtherException_whenSend_thenFailsWithItWithoutRetries() {
+        // Arrange
+        NullPointerException bug = new NullPointerException("No address");
+        Mockito.doThrow(bug).when(mockUser).sendNotification(Mockito.anyString());
+
+        // Act
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                () -> await(dispatcher.send(new Notification(mockUser, "Hello"))));
+
+        // Assert
+        Assertions.assertSame(bug, exception.getCause());
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Hello");
+        Assertions.assertEquals(0, dispatcher.getRetries());
+        Assertions.assertEquals(1, dispatcher.getFailed());
+    }
+
+    @Test
+    void givenFullQueue_whenDispatch_thenRejected() throws Exception {
+        // Arrange
+        NotificationDispatcher small = newDispatcher(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(mockUser).sendNotification(Mockito.anyString());
+        try {
+            CompletableFuture<Void> first = small.send(new Notification(mockUser, "First"));
+
+            // Act
+            CompletableFuture<Void> second = small.send(new Notification(mockUser, "Second"));
+
+            // Assert
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> await(second));
+            Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+            Assertions.assertEquals(1, small.getRejected());
+            release.countDown();
+            await(first);
+            await(small.send(new Notification(mockUser, "Third")));
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void givenBackoffBounds_whenDelayNanos_thenWithinExponentialBound() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1_000, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(policy.delayNanos(1) <= 100);
+            Assertions.assertTrue(policy.delayNanos(2) <= 200);
+            Assertions.assertTrue(policy.delayNanos(10) <= 1_000);
+        }
+    }
+
+    @Test
+    void givenLibrary_whenNotifyUserWithBookReviewsAsync_thenUserNotifiedInBackground() throws Exception {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        ReviewService mockReviewService = Mockito.mock(ReviewService.class);
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(book.getISBN())).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(mockUser);
+        Mockito.when(mockReviewService.getReviewsForBook(book.getISBN())).thenReturn(List.of("Review A"));
+        Library library = new Library(mockDatabaseService, mockReviewService, new SequentialBorrowStrategy(), dispatcher);
+
+        // Act
+        await(library.notifyUserWithBookReviewsAsync(book.getISBN(), "123456789012"));
+
+        // Assert
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Reviews for 'Title':\nReview A");
+        Mockito.verify(mockReviewService, Mockito.times(1)).close();
+    }
+
+    @Test
+    void givenMissingBook_whenNotifyUserWithBookReviewsAsync_thenFutureFailsWithBookNotFound() {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        Library library = new Library(mockDatabaseService, Mockito.mock(ReviewService.class),
+                new SequentialBorrowStrategy(), dispatcher);
+
+        // Act
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                () -> await(library.notifyUserWithBookReviewsAsync("978-3-16-148410-0", "123456789012")));
+
+        // Assert
+        Assertions.assertInstanceOf(BookNotFoundException.class, exception.getCause());
+    }
+
+    @Test
+    void givenInvalidISBN_whenNotifyUserWithBookReviewsAsync_thenThrowImmediately() {
+        Library library = new Library(Mockito.mock(DatabaseService.class), Mockito.mock(ReviewService.class),
+                new SequentialBorrowStrategy(), dispatcher);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> library.notifyUserWithBookReviewsAsync("978-3-16-148410-5", "123456789012"));
+    }
+
+    @Test
+    void givenLibrary_whenLookupBook_thenBookReturnedAndNotificationObservable() throws Exception {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        ReviewService mockReviewService = Mockito.mock(ReviewService.class);
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(book.getISBN())).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(mockUser);
+        Mockito.when(mockReviewService.getReviewsForBook(book.getISBN())).thenReturn(List.of("Review A"));
+        Library library = new Library(mockDatabaseService, mockReviewService, new SequentialBorrowStrategy(), dispatcher);
+
+        // Act
+        BookLookup lookup = library.lookupBook(book.getISBN(), "123456789012");
+        await(lookup.getNotification());
+
+        // Assert
+        Assertions.assertSame(book, lookup.getBook());
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(book.getISBN());
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Reviews for 'Title':\nReview A");
+    }
+
+    @Test
+    void givenFullQueue_whenLookupBook_thenBookReturnedAndNotificationDropped() throws Exception {
+        // Arrange
+        NotificationDispatcher small = newDispatcher(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(mockUser).sendNotification(Mockito.anyString());
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(book.getISBN())).thenReturn(book);
+        InMemoryLibraryMetrics metrics = new InMemoryLibraryMetrics();
+        Library library = new Library(mockDatabaseService, Mockito.mock(ReviewService.class),
+                new SequentialBorrowStrategy(), small, metrics);
+        try {
+            CompletableFuture<Void> first = small.send(new Notification(mockUser, "First"));
+
+            // Act
+            BookLookup lookup = library.lookupBook(book.getISBN(), "123456789012");
+
+            // Assert
+            Assertions.assertSame(book, lookup.getBook());
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> await(lookup.getNotification()));
+            Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+            Assertions.assertEquals(1, metrics.getEvents("notification:dropped"));
+            release.countDown();
+            await(first);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void givenTwoLookupsOnOneLibrary_whenReviewsFetchedOnWorkers_thenFetchAndCloseNeverOverlap() throws Exception {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        ReviewService mockReviewService = Mockito.mock(ReviewService.class);
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(book.getISBN())).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(mockUser);
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        Mockito.when(mockReviewService.getReviewsForBook(book.getISBN())).thenAnswer(invocation -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            return List.of("Review A");
+        });
+        Mockito.doAnswer(invocation -> open.decrementAndGet()).when(mockReviewService).close();
+        Library library = new Library(mockDatabaseService, mockReviewService, new SequentialBorrowStrategy(), dispatcher);
+
+        // Act
+        BookLookup first = library.lookupBook(book.getISBN(), "123456789012");
+        BookLookup second = library.lookupBook(book.getISBN(), "123456789012");
+        await(first.getNotification());
+        await(second.getNotification());
+
+        // Assert
+        Assertions.assertEquals(1, maxOpen.get());
+        Mockito.verify(mockReviewService, Mockito.times(2)).close();
+    }
+
+    @Test
+    void givenLibraryWithoutDispatcher_whenLookupBook_thenSharedDispatcherUnused() throws Exception {
+        // Arrange
+        DatabaseService mockDatabaseService = Mockito.mock(DatabaseService.class);
+        ReviewService mockReviewService = Mockito.mock(ReviewService.class);
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN(book.getISBN())).thenReturn(book);
+        Mockito.when(mockDatabaseService.getUserById("123456789012")).thenReturn(mockUser);
+        Mockito.when(mockReviewService.getReviewsForBook(book.getISBN())).thenReturn(List.of("Review A"));
+        Library library = new Library(mockDatabaseService, mockReviewService);
+        long sharedDelivered = NotificationDispatcher.shared().getDelivered();
+
+        // Act
+        await(library.lookupBook(book.getISBN(), "123456789012").getNotification());
+
+        // Assert
+        Mockito.verify(mockUser, Mockito.times(1)).sendNotification("Reviews for 'Title':\nReview A");
+        Assertions.assertEquals(sharedDelivered, NotificationDispatcher.shared().getDelivered());
+    }
+}
@@ -0,0 +1,113 @@
+package ac.il.bgu.qa.search;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class TestCatalogIndex {
+
+    CatalogIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new CatalogIndex();
+    }
+
+    // Builds the n-th valid ISBN-13 with a 978 prefix.
+    static String isbn(long n) {
+        long prefix = 978_000_000_000L + n;
+        int sum = 0;
+        long rest = prefix;
+        for (int i = 0; i < 12; i++) {
+            int digit = (int) (rest % 10);
+            sum += (i & 1) == 0 ? digit * 3 : digit;
+            rest /= 10;
+        }
+        return Long.toString(prefix * 10 + (10 - sum % 10) % 10);
+    }
+
+    @Test
+    void givenAuthorSpellings_whenNormalized_thenSameAuthor() {
+        Assertions.assertEquals("j.r.r.tolkien", CatalogIndex.normalizeAuthor("J. R. R. Tolkien"));
+        Assertions.assertEquals("j.r.r.tolkien", CatalogIndex.normalizeAuthor("J.R.R.  Tolkien"));
+        Assertions.assertEquals("mary-ann o'neil", CatalogIndex.normalizeAuthor("Mary-Ann   O'Neil"));
+        Assertions.assertNull(CatalogIndex.normalizeAuthor(" Tolkien"));
+        Assertions.assertNull(CatalogIndex.normalizeAuthor("Mary--Ann"));
+        Assertions.assertNull(CatalogIndex.normalizeAuthor(null));
+    }
+
+    @Test
+    void givenBooksByAuthor_whenFindByAuthorPaged_thenPagesInInsertionOrder() {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            index.add(new Book(isbn(i), "Title " + i, i % 2 == 0 ? "J. R. R. Tolkien" : "Other Author"));
+        }
+
+        // Act
+        List<String> first = index.findByAuthor("j.r.r. tolkien", 0, 2);
+        List<String> second = index.findByAuthor("J.R.R. Tolkien", 2, 2);
+
+        // Assert
+        Assertions.assertEquals(Arrays.asList(isbn(0), isbn(2)), first);
+        Assertions.assertEquals(Collections.singletonList(isbn(4)), second);
+        Assertions.assertEquals(3, index.countByAuthor("J.R.R.Tolkien"));
+        Assertions.assertTrue(index.findByAuthor("Nobody", 0, 10).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.findByAuthor("Other Author", -1, 1));
+    }
+
+    @Test
+    void givenRandomTitlesAddedAndRemoved_whenSearchTitlePrefix_thenMatchesSortedScan() {
+        // Arrange
+        Random random = new Random(17);
+        String[] words = {"the", "theory", "of", "java", "Java", "concurrency", "in", "practice", "art"};
+        TreeMap<String, String> expected = new TreeMap<>();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String title = words[random.nextInt(words.length)] + "  " + words[random.nextInt(words.length)];
+            Book book = new Book(isbn(i), title, "Author");
+            index.add(book);
+            books.add(book);
+            expected.put(CatalogIndex.normalizeTitle(title) + "\u0000" + Isbn.pack(isbn(i)), isbn(i));
+        }
+        for (int i = 0; i < books.size(); i += 3) {
+            Book book = books.get(i);
+            index.remove(book);
+            expected.remove(CatalogIndex.normalizeTitle(book.getTitle()) + "\u0000" + Isbn.pack(book.getISBN()));
+        }
+
+        for (String prefix : new String[]{"the ", "the", "JAVA c", "art in", "x"}) {
+            // Act
+            List<String> page = index.searchTitlePrefix(prefix, 100, 50);
+
+            // Assert
+            String normalized = prefix.toLowerCase();
+            List<String> all = new ArrayList<>();
+            expected.forEach((key, ISBN) -> {
+                if (key.startsWith(normalized)) {
+                    all.add(ISBN);
+                }
+            });
+            Assertions.assertEquals(all.subList(Math.min(100, all.size()), Math.min(150, all.size())), page, prefix);
+        }
+        Assertions.assertEquals(expected.size(), index.size());
+    }
+
+    @Test
+    void givenBookWithoutAuthorOrTitle_whenAdded_thenNotIndexed() {
+        // Act
+        index.add(new Book(isbn(0), "  ", "--"));
+
+        // Assert
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.add(new Book("123", "Title", "Author")));
+    }
+}
@@ -0,0 +1,126 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.services.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TestBatchingNotificationService {
+
+    static final String USER_A = "123456789012";
+    static final String USER_B = "210987654321";
+
+    NotificationService mockNotificationService;
+    ScheduledExecutorService scheduler;
+    BatchingNotificationService batchingNotificationService;
+
+    @BeforeEach
+    void init() {
+        mockNotificationService = Mockito.mock(NotificationService.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        // A long window so only flushAll or the size limit trigger a flush.
+        batchingNotificationService = new BatchingNotificationService(mockNotificationService, 1, TimeUnit.HOURS, 3,
+                2, scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void givenMessagesForTwoUsers_whenFlushed_thenOneDigestPerUser() {
+        // Arrange
+        batchingNotificationService.notifyUser(USER_A, "first");
+        batchingNotificationService.notifyUser(USER_B, "other");
+        batchingNotificationService.notifyUser(USER_A, "second");
+
+        // Act
+        batchingNotificationService.flushAll();
+
+        // Assert
+        Mockito.verify(mockNotificationService).notifyUser(USER_A, "first\n\nsecond");
+        Mockito.verify(mockNotificationService).notifyUser(USER_B, "other");
+        Mockito.verifyNoMoreInteractions(mockNotificationService);
+        Assertions.assertEquals(2, batchingNotificationService.getFlushes());
+        Assertions.assertEquals(3, batchingNotificationService.getFlushedMessages());
+        Assertions.assertEquals(2, batchingNotificationService.getMaxBatchSize());
+        Assertions.assertEquals(1.5, batchingNotificationService.getAverageBatchSize());
+    }
+
+    @Test
+    void givenFullBatch_whenMessageAdded_thenFlushedWithoutWaitingForWindow() {
+        // Act
+        batchingNotificationService.notifyUser(USER_A, "1");
+        batchingNotificationService.notifyUser(USER_A, "2");
+        batchingNotificationService.notifyUser(USER_A, "3");
+
+        // Assert
+        Mockito.verify(mockNotificationService, Mockito.timeout(5000)).notifyUser(USER_A, "1\n\n2\n\n3");
+    }
+
+    @Test
+    void givenFailingService_whenFlushed_thenRetriedThenDropped() {
+        // Arrange
+        Mockito.doThrow(new NotificationException("Down"))
+                .when(mockNotificationService).notifyUser(Mockito.anyString(), Mockito.anyString());
+        batchingNotificationService.notifyUser(USER_A, "message");
+
+        // Act
+        batchingNotificationService.flushAll();
+        batchingNotificationService.notifyUser(USER_A, "newer");
+        batchingNotificationService.flushAll();
+
+        // Assert
+        Mockito.verify(mockNotificationService).notifyUser(USER_A, "message");
+        Mockito.verify(mockNotificationService).notifyUser(USER_A, "message\n\nnewer");
+        Assertions.assertEquals(2, batchingNotificationService.getFailedFlushes());
+        Assertions.assertEquals(2, batchingNotificationService.getDroppedMessages());
+        Assertions.assertEquals(0, batchingNotificationService.getFlushes());
+    }
+
+    @Test
+    void givenWindowTimeoutAlreadyStarted_whenItRunsAfterFlush_thenNewBatchKeepsItsWindow() {
+        // Arrange
+        ScheduledExecutorService manualScheduler = Mockito.mock(ScheduledExecutorService.class);
+        List<Runnable> scheduled = new ArrayList<>();
+        Mockito.when(manualScheduler.schedule(Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    scheduled.add(invocation.getArgument(0));
+                    // Cancelling does nothing, as for a timeout that has already started running.
+                    return Mockito.mock(ScheduledFuture.class);
+                });
+        BatchingNotificationService service = new BatchingNotificationService(mockNotificationService, 1,
+                TimeUnit.HOURS, 3, 2, manualScheduler);
+        service.notifyUser(USER_A, "first");
+        service.flushAll();
+        service.notifyUser(USER_A, "second");
+
+        // Act
+        scheduled.get(0).run();
+
+        // Assert
+        Mockito.verify(mockNotificationService).notifyUser(USER_A, "first");
+        Mockito.verify(mockNotificationService, Mockito.never()).notifyUser(USER_A, "second");
+        scheduled.get(1).run();
+        Mockito.verify(mockNotificationService).notifyUser(USER_A, "second");
+    }
+
+    @Test
+    void givenInvalidBatchSize_whenConstructed_thenThrowsIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new BatchingNotificationService(mockNotificationService, 1, TimeUnit.SECONDS, 0));
+        Assertions.assertEquals("Invalid batch size.", exception.getMessage());
+    }
+}
@@ -0,0 +1,197 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCachingDatabaseService {
+
+    DatabaseService mockDatabaseService;
+    CachingDatabaseService cachingDatabaseService;
+
+    @BeforeEach
+    void init() {
+        mockDatabaseService = Mockito.mock(DatabaseService.class);
+        cachingDatabaseService = new CachingDatabaseService(mockDatabaseService, 2, 2);
+    }
+
+    @Test
+    void givenCachedBook_whenGetBookByISBNWithOtherSpelling_thenServedFromCache() {
+        // Arrange
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        Mockito.when(mockDatabaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(book);
+
+        // Act
+        Book first = cachingDatabaseService.getBookByISBN("978-3-16-148410-0");
+        Book second = cachingDatabaseService.getBookByISBN("9783161484100");
+
+        // Assert
+        Assertions.assertSame(book, first);
+        Assertions.assertSame(book, second);
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(Mockito.anyString());
+        Assertions.assertEquals(1, cachingDatabaseService.getBookStats().getHits());
+        Assertions.assertEquals(1, cachingDatabaseService.getBookStats().getMisses());
+    }
+
+    @Test
+    void givenMissingBook_whenGetBookByISBNTwice_thenNotCached() {
+        // Act
+        cachingDatabaseService.getBookByISBN("9783161484100");
+        cachingDatabaseService.getBookByISBN("9783161484100");
+
+        // Assert
+        Mockito.verify(mockDatabaseService, Mockito.times(2)).getBookByISBN("9783161484100");
+        Assertions.assertEquals(0, cachingDatabaseService.getBookStats().getSize());
+    }
+
+    @Test
+    void givenFullRegion_whenAddBook_thenLeastRecentlyUsedEvicted() {
+        // Arrange
+        Book first = new Book("9783161484100", "First", "Author");
+        Book second = new Book("9780306406157", "Second", "Author");
+        Book third = new Book("9780131103627", "Third", "Author");
+        cachingDatabaseService.addBook(first.getISBN(), first);
+        cachingDatabaseService.addBook(second.getISBN(), second);
+        cachingDatabaseService.getBookByISBN(first.getISBN());
+
+        // Act
+        cachingDatabaseService.addBook(third.getISBN(), third);
+
+        // Assert
+        Assertions.assertEquals(1, cachingDatabaseService.getBookStats().getEvictions());
+        Assertions.assertSame(first, cachingDatabaseService.getBookByISBN(first.getISBN()));
+        Assertions.assertNull(cachingDatabaseService.getBookByISBN(second.getISBN()));
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBookByISBN(second.getISBN());
+    }
+
+    @Test
+    void givenRegisteredUser_whenGetUserById_thenWrittenThroughAndServedFromCache() {
+        // Arrange
+        User user = new User("Name", "123456789012", Mockito.mock(NotificationService.class));
+
+        // Act
+        cachingDatabaseService.registerUser(user.getId(), user);
+        User cached = cachingDatabaseService.getUserById("123456789012");
+
+        // Assert
+        Assertions.assertSame(user, cached);
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).registerUser(user.getId(), user);
+        Mockito.verify(mockDatabaseService, Mockito.never()).getUserById(Mockito.anyString());
+        Assertions.assertEquals(1, cachingDatabaseService.getUserStats().getHits());
+    }
+
+    @Test
+    void givenCachedBook_whenBorrowAndReturnDirectly_thenCachedCopyFollows() {
+        // Arrange
+        Book book = new Book("9783161484100", "Title", "Author");
+        cachingDatabaseService.addBook(book.getISBN(), book);
+
+        // Act and Assert
+        cachingDatabaseService.borrowBook("978-3-16-148410-0", "123456789012");
+        Assertions.assertTrue(cachingDatabaseService.getBookByISBN(book.getISBN()).isBorrowed());
+        cachingDatabaseService.returnBook(book.getISBN());
+        Assertions.assertFalse(cachingDatabaseService.getBookByISBN(book.getISBN()).isBorrowed());
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).borrowBook("978-3-16-148410-0", "123456789012");
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).returnBook(book.getISBN());
+    }
+
+    @Test
+    void givenFailingWrite_whenBorrowBook_thenCachedCopyUnchanged() {
+        // Arrange
+        Book book = new Book("9783161484100", "Title", "Author");
+        cachingDatabaseService.addBook(book.getISBN(), book);
+        Mockito.doThrow(new IllegalStateException("Database down"))
+                .when(mockDatabaseService).borrowBook(book.getISBN(), "123456789012");
+
+        // Act and Assert
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> cachingDatabaseService.borrowBook(book.getISBN(), "123456789012"));
+        Assertions.assertFalse(book.isBorrowed());
+    }
+
+    @Test
+    void givenPartlyCachedBatch_whenGetBooksByISBN_thenOnlyMissesFetched() {
+        // Arrange
+        Book cached = new Book("9783161484100", "Cached", "Author");
+        Book fetched = new Book("9780306406157", "Fetched", "Author");
+        cachingDatabaseService.addBook(cached.getISBN(), cached);
+        Mockito.when(mockDatabaseService.getBooksByISBN(List.of(fetched.getISBN())))
+                .thenReturn(Map.of(fetched.getISBN(), fetched));
+
+        // Act
+        Map<String, Book> books = cachingDatabaseService.getBooksByISBN(Arrays.asList(cached.getISBN(), fetched.getISBN()));
+
+        // Assert
+        Assertions.assertSame(cached, books.get(cached.getISBN()));
+        Assertions.assertSame(fetched, books.get(fetched.getISBN()));
+        Mockito.verify(mockDatabaseService, Mockito.times(1)).getBooksByISBN(List.of(fetched.getISBN()));
+    }
+
+    @Test
+    void givenLibraryOverCache_whenBorrowBook_thenBackendReadOnce() {
+        // Arrange
+        InMemoryDatabaseService backend = Mockito.spy(new InMemoryDatabaseService());
+        CachingDatabaseService cache = new CachingDatabaseService(backend, 10, 10);
+        Library library = new Library(cache, Mockito.mock(ReviewService.class));
+        library.registerUser(new User("Name", "123456789012", Mockito.mock(NotificationService.class)));
+        library.addBook(new Book("978-3-16-148410-0", "Title", "Author"));
+
+        // Act
+        library.borrowBook("978-3-16-148410-0", "123456789012");
+        library.returnBook("9783161484100");
+
+        // Assert
+        Mockito.verify(backend, Mockito.times(1)).getBookByISBN("978-3-16-148410-0");
+        Mockito.verify(backend, Mockito.times(1)).getUserById("123456789012");
+        Assertions.assertFalse(backend.isBorrowed("9783161484100"));
+    }
+
+    @Test
+    void givenConcurrentMissOnCopyingDelegate_whenBookBorrowedBeforeSlowerFill_thenBorrowedCopyKept() throws Exception {
+        // Arrange
+        String ISBN = "9783161484100";
+        AtomicInteger lookups = new AtomicInteger();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockDatabaseService.getBookByISBN(ISBN)).thenAnswer(invocation -> {
+            // The first lookup stalls after reading, so a second lookup fills the cache first.
+            Book copy = new Book(ISBN, "Title", "Author");
+            if (lookups.incrementAndGet() == 1) {
+                fetching.countDown();
+                release.await();
+            }
+            return copy;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Book> slow = executor.submit(() -> cachingDatabaseService.getBookByISBN(ISBN));
+            fetching.await();
+            Book fast = cachingDatabaseService.getBookByISBN(ISBN);
+            cachingDatabaseService.borrowBook(ISBN, "123456789012");
+
+            // Act
+            release.countDown();
+            Book filled = slow.get(5, TimeUnit.SECONDS);
+
+            // Assert
+            Assertions.assertSame(fast, filled);
+            Assertions.assertTrue(filled.isBorrowed());
+            Assertions.assertTrue(cachingDatabaseService.getBookByISBN(ISBN).isBorrowed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCachingReviewService {
+
+    static final String ISBN = "978-3-16-148410-0";
+
+    ReviewService mockReviewService;
+    AtomicLong now;
+    CachingReviewService cachingReviewService;
+
+    @BeforeEach
+    void init() {
+        mockReviewService = Mockito.mock(ReviewService.class);
+        now = new AtomicLong();
+        // Refreshes run inline so the tests stay deterministic.
+        cachingReviewService = new CachingReviewService(mockReviewService, 10, TimeUnit.SECONDS, 2,
+                Runnable::run, false, now::get);
+    }
+
+    @Test
+    void givenCachedReviews_whenClosedAndRequestedAgain_thenServedFromCache() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenReturn(List.of("Review A"));
+
+        // Act
+        List<String> first = cachingReviewService.getReviewsForBook(ISBN);
+        cachingReviewService.close();
+        List<String> second = cachingReviewService.getReviewsForBook("9783161484100");
+
+        // Assert
+        Assertions.assertEquals(List.of("Review A"), first);
+        Assertions.assertEquals(first, second);
+        Mockito.verify(mockReviewService, Mockito.times(1)).getReviewsForBook(Mockito.anyString());
+        Mockito.verify(mockReviewService, Mockito.times(1)).close();
+        Assertions.assertEquals(1, cachingReviewService.getStats().getHits());
+        Assertions.assertEquals(1, cachingReviewService.getStats().getMisses());
+    }
+
+    @Test
+    void givenStaleEntry_whenRequested_thenStaleServedAndRefreshed() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN))
+                .thenReturn(List.of("Old review"))
+                .thenReturn(List.of("New review"));
+        cachingReviewService.getReviewsForBook(ISBN);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        // Act
+        List<String> stale = cachingReviewService.getReviewsForBook(ISBN);
+        List<String> refreshed = cachingReviewService.getReviewsForBook(ISBN);
+
+        // Assert
+        Assertions.assertEquals(List.of("Old review"), stale);
+        Assertions.assertEquals(List.of("New review"), refreshed);
+        Mockito.verify(mockReviewService, Mockito.times(2)).getReviewsForBook(ISBN);
+    }
+
+    @Test
+    void givenFailingRefresh_whenRequested_thenStaleKeptAndRetriedNextTime() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN))
+                .thenReturn(List.of("Old review"))
+                .thenThrow(new ReviewException("Down"))
+                .thenReturn(List.of("New review"));
+        cachingReviewService.getReviewsForBook(ISBN);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        // Act and Assert
+        Assertions.assertEquals(List.of("Old review"), cachingReviewService.getReviewsForBook(ISBN));
+        Assertions.assertEquals(List.of("Old review"), cachingReviewService.getReviewsForBook(ISBN));
+        Assertions.assertEquals(List.of("New review"), cachingReviewService.getReviewsForBook(ISBN));
+    }
+
+    @Test
+    void givenFailingFetch_whenRequested_thenExceptionPropagatedAndNotCached() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN))
+                .thenThrow(new ReviewException("Down"))
+                .thenReturn(List.of("Review A"));
+
+        // Act and Assert
+        Assertions.assertThrows(ReviewException.class, () -> cachingReviewService.getReviewsForBook(ISBN));
+        Assertions.assertEquals(List.of("Review A"), cachingReviewService.getReviewsForBook(ISBN));
+        Mockito.verify(mockReviewService, Mockito.times(2)).close();
+    }
+
+    @Test
+    void givenFullCache_whenNewBookRequested_thenLeastRecentlyUsedEvicted() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(Mockito.anyString())).thenReturn(List.of("Review"));
+        cachingReviewService.getReviewsForBook("9783161484100");
+        cachingReviewService.getReviewsForBook("9780306406157");
+
+        // Act
+        cachingReviewService.getReviewsForBook("9780131103627");
+
+        // Assert
+        Assertions.assertEquals(1, cachingReviewService.getStats().getEvictions());
+        Assertions.assertEquals(2, cachingReviewService.getStats().getSize());
+    }
+
+    @Test
+    void givenConcurrentMisses_whenRequested_thenSingleUpstreamFetch() throws Exception {
+        // Arrange
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            release.await();
+            return List.of("Review A");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // Act
+            Future<List<String>> leader = executor.submit(() -> cachingReviewService.getReviewsForBook(ISBN));
+            fetchStarted.await();
+            Future<List<String>> follower1 = executor.submit(() -> cachingReviewService.getReviewsForBook(ISBN));
+            Future<List<String>> follower2 = executor.submit(() -> cachingReviewService.getReviewsForBook(ISBN));
+            // Give the followers time to join the in-flight fetch before it completes.
+            Thread.sleep(100);
+            release.countDown();
+
+            // Assert
+            Assertions.assertEquals(List.of("Review A"), leader.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of("Review A"), follower1.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of("Review A"), follower2.get(5, TimeUnit.SECONDS));
+            Mockito.verify(mockReviewService, Mockito.times(1)).getReviewsForBook(ISBN);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenConcurrentMissesForDifferentBooks_whenRequested_thenFetchAndCloseNeverOverlap() throws Exception {
+        // Arrange
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        Mockito.when(mockReviewService.getReviewsForBook(Mockito.anyString())).thenAnswer(invocation -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            return List.of("Review A");
+        });
+        Mockito.doAnswer(invocation -> open.decrementAndGet()).when(mockReviewService).close();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Act
+            Future<List<String>> first = executor.submit(() -> cachingReviewService.getReviewsForBook(ISBN));
+            Future<List<String>> second =
+                    executor.submit(() -> cachingReviewService.getReviewsForBook("9780306406157"));
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+
+            // Assert
+            Assertions.assertEquals(1, maxOpen.get());
+            Mockito.verify(mockReviewService, Mockito.times(2)).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
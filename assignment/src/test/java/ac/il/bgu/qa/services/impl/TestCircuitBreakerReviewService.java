@@ -0,0 +1,145 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.errors.ReviewCallRejectedException;
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCircuitBreakerReviewService {
+
+    static final String ISBN = "978-3-16-148410-0";
+
+    ReviewService mockReviewService;
+    AtomicLong now;
+    List<String> transitions;
+    CircuitBreakerReviewService circuitBreaker;
+
+    @BeforeEach
+    void init() {
+        mockReviewService = Mockito.mock(ReviewService.class);
+        now = new AtomicLong();
+        transitions = new ArrayList<>();
+        // Opens once half of at least 4 of the last 10 calls failed; probes once after 1 second.
+        circuitBreaker = new CircuitBreakerReviewService(mockReviewService, 10, 4, 0.5, 1, TimeUnit.SECONDS,
+                1, 2, now::get);
+        circuitBreaker.addStateListener((from, to) -> transitions.add(from + "->" + to));
+    }
+
+    private void failCalls(int count) {
+        for (int i = 0; i < count; i++) {
+            Assertions.assertThrows(ReviewException.class, () -> circuitBreaker.getReviewsForBook(ISBN));
+        }
+    }
+
+    @Test
+    void givenFailureRateReached_whenCalled_thenRejectedWithoutCallingService() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN))
+                .thenReturn(List.of("Review"))
+                .thenReturn(List.of("Review"))
+                .thenThrow(new ReviewException("Down"));
+        circuitBreaker.getReviewsForBook(ISBN);
+        circuitBreaker.getReviewsForBook(ISBN);
+        failCalls(2);
+
+        // Act
+        ReviewCallRejectedException exception = Assertions.assertThrows(ReviewCallRejectedException.class,
+                () -> circuitBreaker.getReviewsForBook(ISBN));
+
+        // Assert
+        Assertions.assertEquals("Review circuit is open!", exception.getMessage());
+        Assertions.assertEquals(CircuitBreakerReviewService.State.OPEN, circuitBreaker.getState());
+        Mockito.verify(mockReviewService, Mockito.times(4)).getReviewsForBook(ISBN);
+        Assertions.assertEquals(1, circuitBreaker.getRejectedByCircuit());
+        Assertions.assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    void givenFewerCallsThanMinimum_whenAllFail_thenCircuitStaysClosed() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenThrow(new ReviewException("Down"));
+
+        // Act
+        failCalls(3);
+
+        // Assert
+        Assertions.assertEquals(CircuitBreakerReviewService.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(3, circuitBreaker.getFailedCalls());
+    }
+
+    @Test
+    void givenOpenCircuit_whenProbeSucceeds_thenCircuitCloses() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN))
+                .thenThrow(new ReviewException("Down"))
+                .thenThrow(new ReviewException("Down"))
+                .thenThrow(new ReviewException("Down"))
+                .thenThrow(new ReviewException("Down"))
+                .thenReturn(List.of("Review"));
+        failCalls(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // Act
+        List<String> reviews = circuitBreaker.getReviewsForBook(ISBN);
+
+        // Assert
+        Assertions.assertEquals(List.of("Review"), reviews);
+        Assertions.assertEquals(CircuitBreakerReviewService.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    void givenOpenCircuit_whenProbeFails_thenCircuitReopens() {
+        // Arrange
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenThrow(new ReviewException("Down"));
+        failCalls(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // Act
+        failCalls(1);
+
+        // Assert
+        Assertions.assertEquals(CircuitBreakerReviewService.State.OPEN, circuitBreaker.getState());
+        Assertions.assertThrows(ReviewCallRejectedException.class, () -> circuitBreaker.getReviewsForBook(ISBN));
+        Mockito.verify(mockReviewService, Mockito.times(5)).getReviewsForBook(ISBN);
+        Assertions.assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), transitions);
+    }
+
+    @Test
+    void givenSaturatedBulkhead_whenCalled_thenRejectedImmediately() throws InterruptedException {
+        // Arrange
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockReviewService.getReviewsForBook(ISBN)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return List.of("Review");
+        });
+        Thread first = new Thread(() -> circuitBreaker.getReviewsForBook(ISBN));
+        Thread second = new Thread(() -> circuitBreaker.getReviewsForBook(ISBN));
+        first.start();
+        second.start();
+        Assertions.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Act
+        ReviewCallRejectedException exception = Assertions.assertThrows(ReviewCallRejectedException.class,
+                () -> circuitBreaker.getReviewsForBook(ISBN));
+        release.countDown();
+        first.join();
+        second.join();
+
+        // Assert
+        Assertions.assertEquals("Review service is saturated!", exception.getMessage());
+        Assertions.assertEquals(1, circuitBreaker.getRejectedByBulkhead());
+        Assertions.assertEquals(2, circuitBreaker.getSuccessfulCalls());
+    }
+}
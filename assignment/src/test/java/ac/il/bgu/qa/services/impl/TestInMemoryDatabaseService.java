@@ -0,0 +1,125 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Isbn;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class TestInMemoryDatabaseService {
+
+    InMemoryDatabaseService databaseService;
+
+    @BeforeEach
+    void init() {
+        databaseService = new InMemoryDatabaseService();
+    }
+
+    @Test
+    void givenBookAddedHyphenated_whenGetBookByPlainISBN_thenSameBook() {
+        // Arrange
+        Book book = new Book("978-0-306-40615-7", "Title", "Author");
+        databaseService.addBook(book.getISBN(), book);
+
+        // Act and Assert
+        Assertions.assertSame(book, databaseService.getBookByISBN("9780306406157"));
+        Assertions.assertSame(book, databaseService.getBookByISBN(Isbn.pack("978-0306406157")));
+    }
+
+    @Test
+    void givenUnknownOrInvalidISBN_whenGetBookByISBN_thenReturnNull() {
+        Assertions.assertNull(databaseService.getBookByISBN("9780306406157"));
+        Assertions.assertNull(databaseService.getBookByISBN("not an isbn"));
+        Assertions.assertNull(databaseService.getBookByISBN((String) null));
+    }
+
+    @Test
+    void givenInvalidISBN_whenAddBook_thenThrowIllegalArgumentException() {
+        Book book = new Book("978-3-16-148410-5", "Title", "Author");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> databaseService.addBook(book.getISBN(), book));
+    }
+
+    @Test
+    void givenRegisteredUser_whenGetUserById_thenSameUser() {
+        // Arrange
+        User user = new User("Name", "000000000042", Mockito.mock(NotificationService.class));
+        databaseService.registerUser(user.getId(), user);
+
+        // Act and Assert
+        Assertions.assertSame(user, databaseService.getUserById("000000000042"));
+        Assertions.assertSame(user, databaseService.getUserById(42L));
+        Assertions.assertNull(databaseService.getUserById("000000000043"));
+        Assertions.assertEquals(1, databaseService.userCount());
+    }
+
+    @Test
+    void givenBook_whenBorrowAndReturn_thenBorrowStateTracked() {
+        // Arrange
+        Book book = new Book("978-3-16-148410-0", "Title", "Author");
+        databaseService.addBook(book.getISBN(), book);
+
+        // Act and Assert
+        databaseService.borrowBook("9783161484100", "123456789012");
+        Assertions.assertTrue(databaseService.isBorrowed(book.getISBN()));
+        databaseService.returnBook(book.getISBN());
+        Assertions.assertFalse(databaseService.isBorrowed(book.getISBN()));
+    }
+
+    @Test
+    void givenUnknownBook_whenBorrowBook_thenThrowBookNotFoundException() {
+        Assertions.assertThrows(BookNotFoundException.class,
+                () -> databaseService.borrowBook("9783161484100", "123456789012"));
+        Assertions.assertThrows(BookNotFoundException.class, () -> databaseService.isBorrowed("9783161484100"));
+    }
+
+    @Test
+    void givenManyBooks_whenAdded_thenBorrowStateSurvivesGrowth() {
+        // Arrange
+        Book first = new Book("978-3-16-148410-0", "Title", "Author");
+        databaseService.addBook(first.getISBN(), first);
+        databaseService.borrowBook(first.getISBN(), "123456789012");
+
+        // Act
+        for (long i = 0; i < 1_000; i++) {
+            String isbn = isbn(9_790_000_000_000L + i * 10);
+            databaseService.addBook(isbn, new Book(isbn, "Title", "Author"));
+        }
+
+        // Assert
+        Assertions.assertEquals(1_001, databaseService.bookCount());
+        Assertions.assertTrue(databaseService.isBorrowed(first.getISBN()));
+        Assertions.assertFalse(databaseService.isBorrowed(isbn(9_790_000_000_000L + 9_990)));
+    }
+
+    @Test
+    void givenLibraryOverInMemoryDatabase_whenBorrowBook_thenBookBorrowed() {
+        // Arrange
+        Library library = new Library(databaseService, Mockito.mock(ReviewService.class));
+        library.addBook(new Book("978-3-16-148410-0", "Title", "Author"));
+        library.registerUser(new User("Name", "123456789012", Mockito.mock(NotificationService.class)));
+
+        // Act
+        library.borrowBook("978-3-16-148410-0", "123456789012");
+
+        // Assert
+        Assertions.assertTrue(databaseService.getBookByISBN("9783161484100").isBorrowed());
+        Assertions.assertTrue(databaseService.isBorrowed("9783161484100"));
+    }
+
+    // Completes a 12-digit prefix (with a trailing zero) to a valid ISBN-13.
+    private static String isbn(long prefixTimesTen) {
+        for (int check = 0; check < 10; check++) {
+            long candidate = prefixTimesTen + check;
+            if (Isbn.pack(Isbn.toString(candidate)) == candidate) {
+                return Isbn.toString(candidate);
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
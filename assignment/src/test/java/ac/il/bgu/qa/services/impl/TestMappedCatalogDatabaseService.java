@@ -0,0 +1,138 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.concurrency.LockFreeBorrowStrategy;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TestMappedCatalogDatabaseService {
+
+    static final String ISBN = "9780306406157";
+    static final String OTHER_ISBN = "9780262033848";
+    static final String USER_ID = "123456789012";
+
+    @TempDir
+    Path directory;
+
+    MappedCatalogDatabaseService databaseService;
+
+    @AfterEach
+    void close() {
+        if (databaseService != null) {
+            databaseService.close();
+        }
+    }
+
+    @Test
+    void givenBookAdded_whenGetBookByISBN_thenViewDecodesStoredFields() {
+        // Arrange
+        databaseService = new MappedCatalogDatabaseService(directory, 16);
+        databaseService.addBook("978-0-306-40615-7", new Book("978-0-306-40615-7", "Titl\u00e9", "Author"));
+        databaseService.addBooks(Arrays.asList(new Book(OTHER_ISBN, null, "")));
+
+        // Act
+        Book book = databaseService.getBookByISBN(ISBN);
+        Book other = databaseService.getBookByISBN(OTHER_ISBN);
+
+        // Assert
+        Assertions.assertEquals(ISBN, book.getISBN());
+        Assertions.assertEquals("Titl\u00e9", book.getTitle());
+        Assertions.assertEquals("Author", book.getAuthor());
+        Assertions.assertFalse(book.isBorrowed());
+        Assertions.assertNull(other.getTitle());
+        Assertions.assertEquals("", other.getAuthor());
+        Assertions.assertNull(databaseService.getBookByISBN("9780470059029"));
+        Assertions.assertNull(databaseService.getBookByISBN("not an isbn"));
+        Assertions.assertEquals(2, databaseService.bookCount());
+    }
+
+    @Test
+    void givenTwoViewsOfBook_whenBorrowedThroughOne_thenOtherSeesIt() {
+        // Arrange
+        databaseService = new MappedCatalogDatabaseService(directory, 16);
+        databaseService.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+        Book first = databaseService.getBookByISBN(ISBN);
+        Book second = databaseService.getBookByISBN(ISBN);
+
+        // Act
+        boolean borrowed = first.tryBorrow();
+
+        // Assert
+        Assertions.assertTrue(borrowed);
+        Assertions.assertTrue(second.isBorrowed());
+        Assertions.assertFalse(second.tryBorrow());
+        Assertions.assertTrue(databaseService.isBorrowed(ISBN));
+        Assertions.assertTrue(second.tryReturn());
+        Assertions.assertFalse(first.isBorrowed());
+    }
+
+    @Test
+    void givenCatalogWithBorrowedBook_whenReopened_thenBooksAndStateRestored() {
+        // Arrange
+        databaseService = new MappedCatalogDatabaseService(directory, 16);
+        databaseService.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+        databaseService.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Old", "Author"));
+        databaseService.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "New", "Author"));
+        databaseService.borrowBook(ISBN, USER_ID);
+        databaseService.close();
+
+        // Act
+        databaseService = new MappedCatalogDatabaseService(directory, 1);
+
+        // Assert
+        Assertions.assertEquals(2, databaseService.bookCount());
+        Assertions.assertTrue(databaseService.getBookByISBN(ISBN).isBorrowed());
+        Assertions.assertEquals("New", databaseService.getBookByISBN(OTHER_ISBN).getTitle());
+        databaseService.returnBook(ISBN);
+        Assertions.assertFalse(databaseService.isBorrowed(ISBN));
+    }
+
+    @Test
+    void givenFullCatalogOrInvalidInput_whenAddBook_thenThrow() {
+        // Arrange
+        databaseService = new MappedCatalogDatabaseService(directory, 1);
+        databaseService.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+        char[] longTitle = new char[Short.MAX_VALUE + 1];
+        Arrays.fill(longTitle, 'a');
+
+        // Act and Assert
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> databaseService.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author")));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> databaseService.addBook(ISBN, new Book(ISBN, new String(longTitle), "Author")));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> databaseService.addBook("978-3-16-148410-5", new Book(ISBN, "Title", "Author")));
+        Assertions.assertThrows(BookNotFoundException.class, () -> databaseService.borrowBook(OTHER_ISBN, USER_ID));
+        Assertions.assertDoesNotThrow(() -> databaseService.addBook(ISBN, new Book(ISBN, "Replaced", "Author")));
+    }
+
+    @Test
+    void givenLibraryOnMappedCatalog_whenBookBorrowedTwice_thenSecondBorrowRejected() {
+        // Arrange
+        databaseService = new MappedCatalogDatabaseService(directory, 16);
+        Library library = new Library(databaseService, Mockito.mock(ReviewService.class),
+                new LockFreeBorrowStrategy());
+        library.addBook(new Book(ISBN, "Title", "Author"));
+        library.registerUser(new User("Name", USER_ID, (userId, message) -> { }));
+
+        // Act
+        library.borrowBook(ISBN, USER_ID);
+
+        // Assert
+        Assertions.assertTrue(databaseService.isBorrowed(ISBN));
+        Assertions.assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook(ISBN, USER_ID));
+        library.returnBook(ISBN);
+        Assertions.assertFalse(databaseService.isBorrowed(ISBN));
+    }
+}
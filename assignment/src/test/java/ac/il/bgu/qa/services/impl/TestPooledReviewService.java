@@ -0,0 +1,140 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestPooledReviewService {
+
+    static final String ISBN = "978-3-16-148410-0";
+
+    List<ReviewService> sessions;
+    AtomicLong now;
+    PooledReviewService pooledReviewService;
+
+    @BeforeEach
+    void init() {
+        sessions = new ArrayList<>();
+        now = new AtomicLong();
+        // Two sessions, no waiting, 10 s idle timeout, 60 s lifetime, 5 s leak threshold.
+        pooledReviewService = new PooledReviewService(this::newSession, 2, 0, 10, 60, 5, TimeUnit.SECONDS,
+                now::get, null);
+    }
+
+    private ReviewService newSession() {
+        ReviewService session = Mockito.mock(ReviewService.class);
+        Mockito.when(session.getReviewsForBook(ISBN)).thenReturn(List.of("Review"));
+        sessions.add(session);
+        return session;
+    }
+
+    @Test
+    void givenReturnedSession_whenReviewsFetchedAgain_thenSessionReused() {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        pooledReviewService.close();
+
+        // Act
+        List<String> reviews = pooledReviewService.getReviewsForBook(ISBN);
+        pooledReviewService.close();
+
+        // Assert
+        Assertions.assertEquals(List.of("Review"), reviews);
+        Assertions.assertEquals(1, sessions.size());
+        Mockito.verify(sessions.get(0), Mockito.times(2)).getReviewsForBook(ISBN);
+        Mockito.verify(sessions.get(0), Mockito.never()).close();
+        Assertions.assertEquals(2, pooledReviewService.getLeases());
+        Assertions.assertEquals(1, pooledReviewService.getIdle());
+    }
+
+    @Test
+    void givenSessionPastMaxLifetime_whenReturned_thenTornDown() {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        // Act
+        pooledReviewService.close();
+
+        // Assert
+        Mockito.verify(sessions.get(0)).close();
+        Assertions.assertEquals(0, pooledReviewService.getSize());
+        Assertions.assertEquals(1, pooledReviewService.getDestroyed());
+    }
+
+    @Test
+    void givenIdleSession_whenIdleTimeoutPasses_thenEvictedByMaintenance() {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        pooledReviewService.close();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        // Act
+        pooledReviewService.maintain();
+
+        // Assert
+        Mockito.verify(sessions.get(0)).close();
+        Assertions.assertEquals(0, pooledReviewService.getIdle());
+    }
+
+    @Test
+    void givenSessionNeverReturned_whenLeakThresholdPasses_thenReportedOnce() {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+        // Act
+        pooledReviewService.maintain();
+        pooledReviewService.maintain();
+
+        // Assert
+        Assertions.assertEquals(1, pooledReviewService.getLeaks());
+        pooledReviewService.close();
+    }
+
+    @Test
+    void givenAllSessionsLeased_whenAnotherThreadFetches_thenThrowsReviewException() throws InterruptedException {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        Thread other = new Thread(() -> pooledReviewService.getReviewsForBook(ISBN));
+        other.start();
+        other.join();
+
+        // Act
+        ReviewException[] thrown = new ReviewException[1];
+        Thread third = new Thread(() -> thrown[0] = Assertions.assertThrows(ReviewException.class,
+                () -> pooledReviewService.getReviewsForBook(ISBN)));
+        third.start();
+        third.join();
+
+        // Assert
+        Assertions.assertNotNull(thrown[0]);
+        Assertions.assertEquals("Review session pool exhausted!", thrown[0].getMessage());
+        Assertions.assertEquals(2, sessions.size());
+    }
+
+    @Test
+    void givenFailingSession_whenReturned_thenTornDownAndReplaced() {
+        // Arrange
+        pooledReviewService.getReviewsForBook(ISBN);
+        Mockito.when(sessions.get(0).getReviewsForBook(ISBN)).thenThrow(new ReviewException("Broken"));
+        Assertions.assertThrows(ReviewException.class, () -> pooledReviewService.getReviewsForBook(ISBN));
+
+        // Act
+        pooledReviewService.close();
+        pooledReviewService.getReviewsForBook(ISBN);
+        pooledReviewService.close();
+
+        // Assert
+        Mockito.verify(sessions.get(0)).close();
+        Assertions.assertEquals(2, sessions.size());
+    }
+}
@@ -0,0 +1,231 @@
+package ac.il.bgu.qa.services.impl;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class TestWalDatabaseService {
+
+    static final String ISBN = "9780306406157";
+    static final String OTHER_ISBN = "9780262033848";
+    static final String USER_ID = "123456789012";
+    static final NotificationService NOTIFICATIONS = (userId, message) -> { };
+
+    @TempDir
+    Path directory;
+
+    WalDatabaseService databaseService;
+
+    @AfterEach
+    void close() {
+        if (databaseService != null) {
+            databaseService.close();
+        }
+    }
+
+    WalDatabaseService open(long snapshotInterval) {
+        return new WalDatabaseService(directory, userId -> NOTIFICATIONS, 1 << 16, snapshotInterval);
+    }
+
+    @Test
+    void givenWrittenState_whenReopened_thenStateRecoveredFromLog() {
+        // Arrange
+        databaseService = open(0);
+        Book book = new Book("978-0-306-40615-7", "Title", "Author");
+        databaseService.addBook(book.getISBN(), book);
+        databaseService.addBooks(Arrays.asList(new Book(OTHER_ISBN, "Other", null)));
+        databaseService.registerUser(USER_ID, new User("Name", USER_ID, NOTIFICATIONS));
+        Assertions.assertTrue(book.tryBorrow());
+        databaseService.borrowBook(book.getISBN(), USER_ID);
+        databaseService.close();
+
+        // Act
+        databaseService = open(0);
+
+        // Assert
+        Book recovered = databaseService.getBookByISBN(ISBN);
+        Assertions.assertEquals(ISBN, recovered.getISBN());
+        Assertions.assertEquals("Title", recovered.getTitle());
+        Assertions.assertEquals("Author", recovered.getAuthor());
+        Assertions.assertTrue(recovered.isBorrowed());
+        Assertions.assertEquals(USER_ID, databaseService.getBorrowerId(ISBN));
+        Assertions.assertNull(databaseService.getBookByISBN(OTHER_ISBN).getAuthor());
+        Assertions.assertFalse(databaseService.getBookByISBN(OTHER_ISBN).isBorrowed());
+        Assertions.assertEquals("Name", databaseService.getUserById(USER_ID).getName());
+        Assertions.assertSame(NOTIFICATIONS, databaseService.getUserById(USER_ID).getNotificationService());
+        Assertions.assertEquals(4, databaseService.getRecoveredRecords());
+    }
+
+    @Test
+    void givenSnapshotAndLaterChanges_whenReopened_thenOnlyTailReplayed() throws IOException {
+        // Arrange
+        databaseService = open(0);
+        Book book = new Book(ISBN, "Title", "Author");
+        databaseService.addBook(ISBN, book);
+        book.tryBorrow();
+        databaseService.borrowBook(ISBN, USER_ID);
+        databaseService.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Other", "Author"));
+        databaseService.borrowBook(OTHER_ISBN, USER_ID);
+        databaseService.snapshot();
+        book.tryReturn();
+        databaseService.returnBook(ISBN);
+        databaseService.close();
+
+        // Act
+        databaseService = open(0);
+
+        // Assert
+        Assertions.assertEquals(4, databaseService.getLastSnapshotLsn());
+        Assertions.assertEquals(1, databaseService.getRecoveredRecords());
+        Assertions.assertFalse(databaseService.getBookByISBN(ISBN).isBorrowed());
+        Assertions.assertEquals(Arrays.asList(OTHER_ISBN), databaseService.getLoansByUserId(USER_ID));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.noneMatch(path -> path.getFileName().toString().equals(
+                    String.format("wal-%020d.log", 0))));
+        }
+    }
+
+    @Test
+    void givenTornLastRecord_whenReopened_thenRecordDiscardedAndLogStillWritable() throws IOException {
+        // Arrange
+        databaseService = open(0);
+        Book book = new Book(ISBN, "Title", "Author");
+        databaseService.addBook(ISBN, book);
+        book.tryBorrow();
+        databaseService.borrowBook(ISBN, USER_ID);
+        databaseService.close();
+        // Segment header (12) + add record (8 + 29), then the last byte of the borrow record (8 + 17).
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("wal-%020d.log", 0)),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 12 + 37 + 24);
+        }
+
+        // Act
+        databaseService = open(0);
+        databaseService.registerUser(USER_ID, new User("Name", USER_ID, NOTIFICATIONS));
+        databaseService.close();
+        databaseService = open(0);
+
+        // Assert
+        Assertions.assertFalse(databaseService.getBookByISBN(ISBN).isBorrowed());
+        Assertions.assertNotNull(databaseService.getUserById(USER_ID));
+        Assertions.assertEquals(2, databaseService.getRecoveredRecords());
+    }
+
+    @Test
+    void givenSnapshotInterval_whenManyChanges_thenSnapshotTakenAutomatically() throws InterruptedException {
+        // Arrange
+        databaseService = open(100);
+        Book book = new Book(ISBN, "Title", "Author");
+        databaseService.addBook(ISBN, book);
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            databaseService.borrowBook(ISBN, USER_ID);
+            databaseService.returnBook(ISBN);
+        }
+        for (int i = 0; i < 100 && databaseService.getLastSnapshotLsn() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        Assertions.assertTrue(databaseService.getLastSnapshotLsn() >= 100);
+    }
+
+    @Test
+    void givenUnwritableSnapshot_whenSnapshotDue_thenFailureCountedAndKept() throws Exception {
+        // Arrange: a directory in place of each temporary snapshot file makes writing it fail.
+        databaseService = open(1);
+        for (int lsn = 0; lsn < 4; lsn++) {
+            Files.createDirectory(directory.resolve(String.format("snapshot-%020d.tmp", lsn)));
+        }
+
+        // Act
+        databaseService.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+        for (int i = 0; i < 100 && databaseService.getSnapshotFailures() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        Assertions.assertEquals(1, databaseService.getSnapshotFailures());
+        Assertions.assertNotNull(databaseService.getLastSnapshotFailure());
+        Assertions.assertEquals(0, databaseService.getLastSnapshotLsn());
+        Assertions.assertNotNull(databaseService.getBookByISBN(ISBN));
+    }
+
+    @Test
+    void givenUnknownBook_whenBorrowBook_thenNothingLogged() {
+        // Arrange
+        databaseService = open(0);
+
+        // Act
+        Assertions.assertThrows(RuntimeException.class, () -> databaseService.borrowBook(ISBN, USER_ID));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> databaseService.addBook(ISBN, null));
+        databaseService.close();
+        databaseService = open(0);
+
+        // Assert
+        Assertions.assertEquals(0, databaseService.getRecoveredRecords());
+    }
+
+    @Test
+    void givenRecordTooLarge_whenAddBook_thenBookNotVisibleOrRecovered() {
+        // Arrange
+        databaseService = open(0);
+        char[] title = new char[1 << 17];
+        Arrays.fill(title, 'T');
+
+        // Act
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> databaseService.addBook(ISBN, new Book(ISBN, new String(title), "Author")));
+
+        // Assert
+        Assertions.assertNull(databaseService.getBookByISBN(ISBN));
+        databaseService.close();
+        databaseService = open(0);
+        Assertions.assertNull(databaseService.getBookByISBN(ISBN));
+        Assertions.assertEquals(0, databaseService.getRecoveredRecords());
+    }
+
+    @Test
+    void givenMissingBook_whenBorrowBook_thenNothingLogged() {
+        // Arrange
+        databaseService = open(0);
+
+        // Act
+        Assertions.assertThrows(BookNotFoundException.class, () -> databaseService.borrowBook(ISBN, USER_ID));
+
+        // Assert
+        databaseService.close();
+        databaseService = open(0);
+        Assertions.assertEquals(0, databaseService.getRecoveredRecords());
+    }
+
+    @Test
+    void givenClosedDatabase_whenWriteOrSnapshot_thenThrowIllegalStateException() {
+        // Arrange
+        databaseService = open(0);
+        databaseService.close();
+
+        // Act and Assert
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> databaseService.addBook(ISBN, new Book(ISBN, "Title", "Author")));
+        Assertions.assertThrows(IllegalStateException.class, () -> databaseService.snapshot());
+        Assertions.assertNull(databaseService.getBookByISBN(ISBN));
+        Assertions.assertEquals(0, databaseService.getSnapshotFailures());
+    }
+}
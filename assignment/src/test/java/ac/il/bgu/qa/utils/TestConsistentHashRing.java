@@ -0,0 +1,62 @@
+package ac.il.bgu.qa.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestConsistentHashRing {
+
+    static final int KEYS = 100_000;
+
+    @Test
+    void givenFourNodes_whenKeysRouted_thenSharesAreBalanced() {
+        // Arrange
+        ConsistentHashRing ring = new ConsistentHashRing(128).withNode(0).withNode(1).withNode(2).withNode(3);
+        int[] counts = new int[4];
+
+        // Act
+        for (long key = 0; key < KEYS; key++) {
+            counts[ring.nodeFor(9_780_000_000_000L + key)]++;
+        }
+
+        // Assert
+        for (int count : counts) {
+            Assertions.assertEquals(KEYS / 4.0, count, KEYS / 4.0 * 0.2);
+        }
+    }
+
+    @Test
+    void givenNodeAdded_whenKeysRouted_thenOnlyKeysOfNewNodeMove() {
+        // Arrange
+        ConsistentHashRing before = new ConsistentHashRing(128).withNode(0).withNode(1).withNode(2).withNode(3);
+        ConsistentHashRing after = before.withNode(4);
+        int moved = 0;
+
+        // Act
+        for (long key = 0; key < KEYS; key++) {
+            int oldNode = before.nodeFor(key);
+            int newNode = after.nodeFor(key);
+            if (oldNode != newNode) {
+                Assertions.assertEquals(4, newNode);
+                moved++;
+            }
+        }
+
+        // Assert
+        Assertions.assertEquals(KEYS / 5.0, moved, KEYS / 5.0 * 0.25);
+        Assertions.assertEquals(5, after.size());
+        Assertions.assertEquals(4, before.size());
+    }
+
+    @Test
+    void givenEmptyRing_whenKeyRouted_thenThrowsIllegalStateException() {
+        // Act & Assert
+        Assertions.assertThrows(IllegalStateException.class, () -> new ConsistentHashRing(16).nodeFor(1));
+    }
+
+    @Test
+    void givenExistingNode_whenAddedAgain_thenThrowsIllegalArgumentException() {
+        // Act & Assert
+        ConsistentHashRing ring = new ConsistentHashRing(16).withNode(0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ring.withNode(0));
+    }
+}
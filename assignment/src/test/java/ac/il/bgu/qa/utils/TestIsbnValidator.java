@@ -0,0 +1,48 @@
+package ac.il.bgu.qa.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestIsbnValidator {
+
+    @Test
+    void givenHyphenatedValidISBN_whenIsValid_thenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("978-3-16-148410-0"));
+    }
+
+    @Test
+    void givenPlainValidISBN_whenIsValid_thenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("9780306406157"));
+    }
+
+    @Test
+    void givenValidISBNWithLeadingAndTrailingHyphens_whenIsValid_thenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("--978-0306-40615-7-"));
+    }
+
+    @Test
+    void givenWrongCheckDigit_whenIsValid_thenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("978-3-16-148410-5"));
+    }
+
+    @Test
+    void givenNull_whenIsValid_thenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid(null));
+    }
+
+    @Test
+    void givenWrongLength_whenIsValid_thenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("1234"));
+        Assertions.assertFalse(IsbnValidator.isValid("97803064061570"));
+        Assertions.assertFalse(IsbnValidator.isValid(""));
+        Assertions.assertFalse(IsbnValidator.isValid("---"));
+    }
+
+    @Test
+    void givenNonDigitCharacters_whenIsValid_thenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("AAAAAAAAAAAAA"));
+        Assertions.assertFalse(IsbnValidator.isValid("978 0306406157"));
+        // Non-ASCII digits are rejected, like the "\\d" pattern used before.
+        Assertions.assertFalse(IsbnValidator.isValid("978030640615\u0667"));
+    }
+}
@@ -0,0 +1,76 @@
+package ac.il.bgu.qa.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestLoanIndex {
+
+    @Test
+    void givenLoans_whenListedByUser_thenInBorrowOrder() {
+        // Arrange
+        LoanIndex index = new LoanIndex();
+        index.borrow(30, 1);
+        index.borrow(10, 1);
+        index.borrow(20, 2);
+        index.borrow(40, 1);
+
+        // Act
+        index.returnBook(10);
+        long previous = index.borrow(20, 1);
+
+        // Assert
+        Assertions.assertEquals(2, previous);
+        Assertions.assertArrayEquals(new long[]{30, 40, 20}, index.loansOf(1));
+        Assertions.assertArrayEquals(new long[0], index.loansOf(2));
+        Assertions.assertEquals(1, index.borrowerOf(20));
+        Assertions.assertEquals(LoanIndex.NONE, index.borrowerOf(10));
+        Assertions.assertEquals(LoanIndex.NONE, index.returnBook(10));
+        Assertions.assertEquals(3, index.size());
+    }
+
+    @Test
+    void givenRandomBorrowsAndReturns_whenQueried_thenMatchesReferenceMaps() {
+        // Arrange
+        LoanIndex index = new LoanIndex(4);
+        Map<Long, Long> borrowers = new HashMap<>();
+        Map<Long, List<Long>> loans = new HashMap<>();
+        Random random = new Random(20);
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            long ISBN = random.nextInt(2_000);
+            Long previous = borrowers.remove(ISBN);
+            if (previous != null) {
+                loans.get(previous).remove(ISBN);
+            }
+            if (random.nextBoolean()) {
+                long userId = random.nextInt(100);
+                Assertions.assertEquals(previous == null ? LoanIndex.NONE : previous, index.borrow(ISBN, userId));
+                borrowers.put(ISBN, userId);
+                loans.computeIfAbsent(userId, key -> new ArrayList<>()).add(ISBN);
+            } else {
+                Assertions.assertEquals(previous == null ? LoanIndex.NONE : previous, index.returnBook(ISBN));
+            }
+        }
+
+        // Assert
+        Assertions.assertEquals(borrowers.size(), index.size());
+        for (long userId = 0; userId < 100; userId++) {
+            List<Long> expected = loans.getOrDefault(userId, new ArrayList<>());
+            long[] actual = index.loansOf(userId);
+            Assertions.assertEquals(expected.size(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                Assertions.assertEquals(expected.get(i), actual[i]);
+            }
+        }
+        for (long ISBN = 0; ISBN < 2_000; ISBN++) {
+            Assertions.assertEquals(borrowers.getOrDefault(ISBN, LoanIndex.NONE), index.borrowerOf(ISBN));
+        }
+    }
+}
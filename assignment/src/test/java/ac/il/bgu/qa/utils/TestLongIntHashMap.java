@@ -0,0 +1,93 @@
+package ac.il.bgu.qa.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TestLongIntHashMap {
+
+    @Test
+    void givenEmptyMap_whenGet_thenReturnMissing() {
+        LongIntHashMap map = new LongIntHashMap();
+        Assertions.assertEquals(LongIntHashMap.MISSING, map.get(42L));
+        Assertions.assertFalse(map.containsKey(42L));
+    }
+
+    @Test
+    void givenExistingKey_whenPut_thenReplaceAndReturnPrevious() {
+        // Arrange
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(9780306406157L, 1);
+
+        // Act
+        int previous = map.put(9780306406157L, 2);
+
+        // Assert
+        Assertions.assertEquals(1, previous);
+        Assertions.assertEquals(2, map.get(9780306406157L));
+        Assertions.assertEquals(1, map.size());
+    }
+
+    @Test
+    void givenManyKeys_whenPutBeyondInitialCapacity_thenAllRetrievable() {
+        // Arrange
+        LongIntHashMap map = new LongIntHashMap(2);
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            map.put(9_780_000_000_000L + i, i);
+        }
+
+        // Assert
+        Assertions.assertEquals(100_000, map.size());
+        for (int i = 0; i < 100_000; i++) {
+            Assertions.assertEquals(i, map.get(9_780_000_000_000L + i));
+        }
+        Assertions.assertEquals(LongIntHashMap.MISSING, map.get(9_780_000_100_000L));
+    }
+
+    @Test
+    void givenNegativeKeyOrValue_whenPut_thenThrowIllegalArgumentException() {
+        LongIntHashMap map = new LongIntHashMap();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(-1L, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(0L, -1));
+    }
+
+    @Test
+    void givenKeys_whenClear_thenEmpty() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(1L, 1);
+        map.clear();
+        Assertions.assertEquals(0, map.size());
+        Assertions.assertEquals(LongIntHashMap.MISSING, map.get(1L));
+    }
+
+    @Test
+    void givenRandomPutsAndRemoves_whenCompared_thenMatchesHashMap() {
+        // Arrange
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                Assertions.assertEquals(expected.getOrDefault(key, LongIntHashMap.MISSING), map.put(key, i));
+                expected.put(key, i);
+            } else {
+                Integer removed = expected.remove(key);
+                Assertions.assertEquals(removed == null ? LongIntHashMap.MISSING : removed, map.remove(key));
+            }
+        }
+
+        // Assert
+        Assertions.assertEquals(expected.size(), map.size());
+        Map<Long, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        Assertions.assertEquals(expected, actual);
+    }
+}
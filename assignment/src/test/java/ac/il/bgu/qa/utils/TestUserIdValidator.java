@@ -0,0 +1,46 @@
+package ac.il.bgu.qa.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestUserIdValidator {
+
+    @Test
+    void given12Digits_whenIsValid_thenTrue() {
+        Assertions.assertTrue(UserIdValidator.isValid("123456789012"));
+    }
+
+    @Test
+    void givenInvalidIds_whenIsValid_thenFalse() {
+        Assertions.assertFalse(UserIdValidator.isValid(null));
+        Assertions.assertFalse(UserIdValidator.isValid("12345678901"));
+        Assertions.assertFalse(UserIdValidator.isValid("1234567890123"));
+        Assertions.assertFalse(UserIdValidator.isValid("12345678901a"));
+        Assertions.assertFalse(UserIdValidator.isValid("1234-5678901"));
+    }
+
+    @Test
+    void givenValidId_whenPackAndUnpack_thenRoundTrips() {
+        // Arrange
+        String userId = "000000000042";
+
+        // Act
+        long packed = UserIdValidator.pack(userId);
+
+        // Assert
+        Assertions.assertEquals(42L, packed);
+        Assertions.assertEquals(userId, UserIdValidator.unpack(packed));
+    }
+
+    @Test
+    void givenInvalidId_whenPack_thenReturnInvalid() {
+        Assertions.assertEquals(UserIdValidator.INVALID, UserIdValidator.pack("12345678901a"));
+        Assertions.assertEquals(UserIdValidator.INVALID, UserIdValidator.pack(null));
+    }
+
+    @Test
+    void givenOutOfRangeValue_whenUnpack_thenThrowIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UserIdValidator.unpack(-1L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UserIdValidator.unpack(1_000_000_000_000L));
+    }
+}